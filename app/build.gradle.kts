@@ -80,6 +80,14 @@ android {
     }
     ndkVersion = "28.0.13004108"
 
+    androidResources {
+        // store the dictionary for the default locale uncompressed, so it can be used directly from
+        // the APK instead of being extracted on first use
+        // not done for all dictionaries: it costs only 0.8 MB for en-US, but 14.4 MB for all of them
+        // (28.5 MB instead of 14.1 MB), while other dictionaries are only extracted when used
+        noCompress += "main_en-US.dict"
+    }
+
     packaging {
         jniLibs {
             // shrinks APK by 3 MB, zipped size unchanged
@@ -90,6 +98,16 @@ android {
     testOptions {
         unitTests {
             isIncludeAndroidResources = true
+            // benchmarks only run with -Pbenchmark, using the library built by tools/build-host-jni.sh
+            all { test ->
+                if (project.hasProperty("benchmark")) {
+                    test.systemProperty("benchmark", "true")
+                    test.systemProperty("java.library.path", layout.buildDirectory.dir("host-jni").get().asFile.absolutePath)
+                    project.findProperty("benchmark.baseline")?.let { test.systemProperty("benchmark.baseline", file(it).absolutePath) }
+                    project.findProperty("benchmark.tolerance")?.let { test.systemProperty("benchmark.tolerance", it) }
+                    project.findProperty("benchmark.gestureData")?.let { test.systemProperty("benchmark.gestureData", file(it).absolutePath) }
+                }
+            }
         }
     }
 
@@ -10,6 +10,7 @@ import android.graphics.Rect;
 import helium314.keyboard.latin.utils.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import helium314.keyboard.keyboard.Key;
 import helium314.keyboard.keyboard.internal.TouchPositionCorrection;
@@ -19,6 +20,7 @@ import helium314.keyboard.latin.utils.JniUtils;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 
@@ -79,10 +81,55 @@ public class ProximityInfo {
     }
 
     private long mNativeProximityInfo;
+    @Nullable
+    private NativeProximityInfoEntry mNativeProximityInfoEntry;
     static {
         JniUtils.loadNativeLibrary();
     }
 
+    // The native proximity info only depends on the data passed to setProximityInfoNative, and is
+    // not modified after creation. Keyboards with the same key geometry and codes (e.g. the
+    // different shift states, or the same layout rebuilt after a theme change) share one instance,
+    // which is released when the last ProximityInfo using it is finalized.
+    @NonNull
+    private static final HashMap<NativeProximityInfoKey, NativeProximityInfoEntry> sNativeProximityInfos =
+            new HashMap<>();
+
+    private static final class NativeProximityInfoKey {
+        private final int[][] mInts;
+        private final float[][] mFloats;
+        private final int mHashCode;
+
+        NativeProximityInfoKey(@NonNull final int[][] ints, @NonNull final float[][] floats) {
+            mInts = ints;
+            mFloats = floats;
+            mHashCode = 31 * Arrays.deepHashCode(ints) + Arrays.deepHashCode(floats);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof NativeProximityInfoKey other)) return false;
+            return mHashCode == other.mHashCode && Arrays.deepEquals(mInts, other.mInts)
+                    && Arrays.deepEquals(mFloats, other.mFloats);
+        }
+    }
+
+    private static final class NativeProximityInfoEntry {
+        @NonNull final NativeProximityInfoKey mKey;
+        final long mNativeProximityInfo;
+        int mReferenceCount; // guarded by sNativeProximityInfos
+
+        NativeProximityInfoEntry(@NonNull final NativeProximityInfoKey key, final long nativeProximityInfo) {
+            mKey = key;
+            mNativeProximityInfo = nativeProximityInfo;
+        }
+    }
+
     // TODO: Stop passing proximityCharsArray
     private static native long setProximityInfoNative(int displayWidth, int displayHeight,
             int gridWidth, int gridHeight, int mostCommonKeyWidth, int mostCommonKeyHeight,
@@ -213,11 +260,37 @@ public class ProximityInfo {
             }
         }
 
-        // TODO: Stop passing proximityCharsArray
-        return setProximityInfoNative(mKeyboardMinWidth, mKeyboardHeight, mGridWidth, mGridHeight,
-                mMostCommonKeyWidth, mMostCommonKeyHeight, proximityCharsArray, keyCount,
-                keyXCoordinates, keyYCoordinates, keyWidths, keyHeights, keyCharCodes,
-                sweetSpotCenterXs, sweetSpotCenterYs, sweetSpotRadii);
+        final NativeProximityInfoKey key = new NativeProximityInfoKey(new int[][] {
+                new int[] { mKeyboardMinWidth, mKeyboardHeight, mGridWidth, mGridHeight,
+                        mMostCommonKeyWidth, mMostCommonKeyHeight },
+                proximityCharsArray, keyXCoordinates, keyYCoordinates, keyWidths, keyHeights,
+                keyCharCodes }, new float[][] { sweetSpotCenterXs, sweetSpotCenterYs, sweetSpotRadii });
+        synchronized (sNativeProximityInfos) {
+            NativeProximityInfoEntry entry = sNativeProximityInfos.get(key);
+            if (entry == null) {
+                // TODO: Stop passing proximityCharsArray
+                final long nativeProximityInfo = setProximityInfoNative(mKeyboardMinWidth,
+                        mKeyboardHeight, mGridWidth, mGridHeight, mMostCommonKeyWidth,
+                        mMostCommonKeyHeight, proximityCharsArray, keyCount, keyXCoordinates,
+                        keyYCoordinates, keyWidths, keyHeights, keyCharCodes, sweetSpotCenterXs,
+                        sweetSpotCenterYs, sweetSpotRadii);
+                entry = new NativeProximityInfoEntry(key, nativeProximityInfo);
+                sNativeProximityInfos.put(key, entry);
+            }
+            entry.mReferenceCount++;
+            mNativeProximityInfoEntry = entry;
+            return entry.mNativeProximityInfo;
+        }
+    }
+
+    private static void releaseNativeProximityInfo(@NonNull final NativeProximityInfoEntry entry) {
+        synchronized (sNativeProximityInfos) {
+            if (--entry.mReferenceCount > 0) {
+                return;
+            }
+            sNativeProximityInfos.remove(entry.mKey);
+        }
+        releaseProximityInfoNative(entry.mNativeProximityInfo);
     }
 
     public long getNativeProximityInfo() {
@@ -227,8 +300,9 @@ public class ProximityInfo {
     @Override
     protected void finalize() throws Throwable {
         try {
-            if (mNativeProximityInfo != 0) {
-                releaseProximityInfoNative(mNativeProximityInfo);
+            if (mNativeProximityInfoEntry != null) {
+                releaseNativeProximityInfo(mNativeProximityInfoEntry);
+                mNativeProximityInfoEntry = null;
                 mNativeProximityInfo = 0;
             }
         } finally {
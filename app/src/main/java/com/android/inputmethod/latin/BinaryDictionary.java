@@ -8,6 +8,7 @@ package com.android.inputmethod.latin;
 
 import android.text.TextUtils;
 import helium314.keyboard.latin.utils.ChecksumCalculator;
+import helium314.keyboard.latin.utils.LatencyTracer;
 import helium314.keyboard.latin.utils.Log;
 import android.util.SparseArray;
 
@@ -288,6 +289,7 @@ public final class BinaryDictionary extends Dictionary {
                     Dictionary.NOT_A_WEIGHT_OF_LANG_MODEL_VS_SPATIAL_MODEL;
         }
         // TOOD: Pass multiple previous words information for n-gram.
+        final long traceStart = LatencyTracer.begin();
         getSuggestionsNative(mNativeDict, proximityInfoHandle,
                 getTraverseSession(sessionId).getSession(), inputPointers.getXCoordinates(),
                 inputPointers.getYCoordinates(), inputPointers.getTimes(),
@@ -298,12 +300,13 @@ public final class BinaryDictionary extends Dictionary {
                 session.mSpaceIndices, session.mOutputTypes,
                 session.mOutputAutoCommitFirstWordConfidence,
                 session.mInputOutputWeightOfLangModelVsSpatialModel);
+        LatencyTracer.end(LatencyTracer.STAGE_NATIVE_SUGGEST, traceStart);
         if (inOutWeightOfLangModelVsSpatialModel != null) {
             inOutWeightOfLangModelVsSpatialModel[0] =
                     session.mInputOutputWeightOfLangModelVsSpatialModel[0];
         }
         final int count = session.mOutputSuggestionCount[0];
-        final ArrayList<SuggestedWordInfo> suggestions = new ArrayList<>();
+        final ArrayList<SuggestedWordInfo> suggestions = new ArrayList<>(count);
         for (int j = 0; j < count; ++j) {
             final int start = j * DICTIONARY_MAX_WORD_LENGTH;
             int len = 0;
@@ -314,6 +317,7 @@ public final class BinaryDictionary extends Dictionary {
             if (len > 0) {
                 suggestions.add(new SuggestedWordInfo(
                         new String(session.mOutputCodePoints, start, len),
+                        len /* codePointCount */,
                         "" /* prevWordsContext */,
                         (int)(session.mOutputScores[j] * weightForLocale),
                         session.mOutputTypes[j],
@@ -427,6 +431,16 @@ public final class BinaryDictionary extends Dictionary {
                 getWordProperty(word, isBeginningOfSentence[0]), nextToken);
     }
 
+    /**
+     * Like {@link #getNextWordProperty(int)}, but only returns the word in outCodePoints, without
+     * reading its properties. The word is not null-terminated.
+     * outCodePoints must have a length of {@link #DICTIONARY_MAX_WORD_LENGTH}.
+     */
+    public int getNextWord(final int token, final int[] outCodePoints,
+            final boolean[] outIsBeginningOfSentence) {
+        return getNextWordNative(mNativeDict, token, outCodePoints, outIsBeginningOfSentence);
+    }
+
     // Add a unigram entry to binary dictionary with unigram attributes in native code.
     public boolean addUnigramEntry(final String word, final int probability,
             final String shortcutTarget, final int shortcutProbability,
@@ -538,6 +552,21 @@ public final class BinaryDictionary extends Dictionary {
         return true;
     }
 
+    public boolean hasUpdated() {
+        return mHasUpdated;
+    }
+
+    /**
+     * Writes the dictionary to the dict file. Unlike {@link #flush()} this does not reopen the
+     * dictionary and only reads it, so lookups can be done concurrently.
+     */
+    public boolean flushWithoutReopening() {
+        if (!isValidDictionary()) {
+            return false;
+        }
+        return flushNative(mNativeDict, mDictFilePath);
+    }
+
     // Run GC and flush to dict file if the dictionary has been updated.
     public boolean flushWithGCIfHasUpdated() {
         if (mHasUpdated) {
@@ -622,6 +651,28 @@ public final class BinaryDictionary extends Dictionary {
         return candidate.mAutoCommitFirstWordConfidence > CONFIDENCE_TO_AUTO_COMMIT;
     }
 
+    @Override
+    public void cancelSuggestions() {
+        setTraverseSessionsCancelled(true);
+    }
+
+    @Override
+    public void resetSuggestionsCancellation() {
+        setTraverseSessionsCancelled(false);
+    }
+
+    private void setTraverseSessionsCancelled(final boolean isCancelled) {
+        synchronized (mDicTraverseSessions) {
+            final int sessionsSize = mDicTraverseSessions.size();
+            for (int index = 0; index < sessionsSize; ++index) {
+                final DicTraverseSession traverseSession = mDicTraverseSessions.valueAt(index);
+                if (traverseSession != null) {
+                    traverseSession.setCancelled(isCancelled);
+                }
+            }
+        }
+    }
+
     @Override
     public void close() {
         synchronized (mDicTraverseSessions) {
@@ -40,6 +40,11 @@ public final class DicTraverseSession {
     private static native void initDicTraverseSessionNative(long nativeDicTraverseSession,
             long dictionary, int[] previousWord, int previousWordLength);
     private static native void releaseDicTraverseSessionNative(long nativeDicTraverseSession);
+    private static native void setDicTraverseSessionCancelledNative(long nativeDicTraverseSession,
+            boolean isCancelled);
+
+    // user-provided libraries may not have the cancel method
+    private static volatile boolean sIsCancelSupported = true;
 
     private long mNativeDicTraverseSession;
 
@@ -62,6 +67,20 @@ public final class DicTraverseSession {
                 mNativeDicTraverseSession, dictionary, previousWord, previousWordLength);
     }
 
+    /**
+     * Makes a search running in this session stop early with incomplete results if isCancelled
+     * is true. The flag stays set until it's reset, also for searches started afterwards.
+     * Callers must make sure the session is not closed concurrently.
+     */
+    public void setCancelled(final boolean isCancelled) {
+        if (!sIsCancelSupported || mNativeDicTraverseSession == 0) return;
+        try {
+            setDicTraverseSessionCancelledNative(mNativeDicTraverseSession, isCancelled);
+        } catch (UnsatisfiedLinkError e) {
+            sIsCancelSupported = false;
+        }
+    }
+
     private static long createNativeDicTraverseSession(String locale, long dictSize) {
         return setDicTraverseSessionNative(locale, dictSize);
     }
@@ -22,6 +22,7 @@ import helium314.keyboard.latin.RichInputMethodManager;
 import helium314.keyboard.latin.RichInputMethodSubtype;
 import helium314.keyboard.latin.settings.Settings;
 import helium314.keyboard.latin.utils.DictionaryInfoUtils;
+import helium314.keyboard.latin.utils.ExecutorUtils;
 import helium314.keyboard.latin.utils.InputTypeUtils;
 import helium314.keyboard.latin.utils.Log;
 import helium314.keyboard.latin.utils.ResourceUtils;
@@ -29,7 +30,9 @@ import helium314.keyboard.latin.utils.ScriptUtils;
 import helium314.keyboard.latin.utils.SubtypeLocaleUtils;
 
 import java.lang.ref.SoftReference;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -58,9 +61,30 @@ public final class KeyboardLayoutSet {
     // will stay in the cache. So we forcibly keep some references in an array to prevent
     // them from disappearing from sKeyboardCache.
     private static final Keyboard[] sForcibleKeyboardCache = new Keyboard[FORCIBLE_CACHE_SIZE];
+    // Guards all keyboard caches, and clearing the caches used while building keyboards.
+    // Keyboards are built outside the lock, so the UI thread never waits for a keyboard that is
+    // prebuilt in background. If a keyboard is built twice at the same time, the first one is kept.
     private static final HashMap<KeyboardId, SoftReference<Keyboard>> sKeyboardCache = new HashMap<>();
+    // Increased when the caches are cleared, so keyboards started before are not cached.
+    private static int sCacheGeneration;
+    // Keyboards built by prebuildKeyboards, kept until the next layout set is prebuilt.
+    private static final ArrayList<Keyboard> sPrebuiltKeyboards = new ArrayList<>();
+    private static final AtomicInteger sPrebuildGeneration = new AtomicInteger();
+    // Likely next keyboards after loading a layout set, most likely first. Depending on mode,
+    // some of them resolve to the same keyboard.
+    private static final int[] PREBUILD_ELEMENT_IDS = new int[] {
+            KeyboardId.ELEMENT_SYMBOLS,
+            KeyboardId.ELEMENT_ALPHABET_AUTOMATIC_SHIFTED,
+            KeyboardId.ELEMENT_ALPHABET_MANUAL_SHIFTED,
+            KeyboardId.ELEMENT_SYMBOLS_SHIFTED,
+            KeyboardId.ELEMENT_NUMPAD,
+            KeyboardId.ELEMENT_ALPHABET_SHIFT_LOCKED,
+    };
     @NonNull
     private static final UniqueKeysCache sUniqueKeysCache = UniqueKeysCache.newInstance();
+    static {
+        sUniqueKeysCache.setEnabled(true);
+    }
 
     public static final class KeyboardLayoutSetException extends RuntimeException {
         public final KeyboardId mKeyboardId;
@@ -104,17 +128,24 @@ public final class KeyboardLayoutSet {
     }
 
     public static void onSystemLocaleChanged() {
-        clearKeyboardCache();
-        LocaleKeyboardInfosKt.clearCache();
+        synchronized (sKeyboardCache) {
+            clearKeyboardCacheLocked();
+            LocaleKeyboardInfosKt.clearCache();
+        }
         SubtypeLocaleUtils.clearSubtypeDisplayNameCache();
     }
 
     public static void onKeyboardThemeChanged() {
-        clearKeyboardCache();
+        synchronized (sKeyboardCache) {
+            clearKeyboardCacheLocked();
+        }
     }
 
-    private static void clearKeyboardCache() {
+    private static void clearKeyboardCacheLocked() {
+        sPrebuildGeneration.incrementAndGet();
+        sCacheGeneration++;
         sKeyboardCache.clear();
+        sPrebuiltKeyboards.clear();
         sUniqueKeysCache.clear();
         LayoutParser.INSTANCE.clearCache();
         KeyboardIconsSet.Companion.setNeedsReload(true);
@@ -157,25 +188,80 @@ public final class KeyboardLayoutSet {
         }
     }
 
+    /**
+     * Builds up to {@code maxKeyboards} keyboards the user is likely to switch to next in
+     * background, so switching to them does not need to wait for building the keyboard.
+     * Prebuilt keyboards of the previous layout set are released when the new ones are done.
+     */
+    public void prebuildKeyboards(final int maxKeyboards) {
+        final int generation = sPrebuildGeneration.incrementAndGet();
+        if (maxKeyboards <= 0 || mParams.mIsSpellChecker) return;
+        // icons are used for drawing, so they are only (re)loaded on the main thread
+        KeyboardIconsSet.Companion.getInstance().loadIcons(mContext);
+        ExecutorUtils.getBackgroundExecutor(ExecutorUtils.KEYBOARD).execute(() -> {
+            final ArrayList<Keyboard> keyboards = new ArrayList<>();
+            try {
+                for (final int elementId : PREBUILD_ELEMENT_IDS) {
+                    if (keyboards.size() >= maxKeyboards) break;
+                    if (sPrebuildGeneration.get() != generation) return; // outdated
+                    final Keyboard keyboard = getKeyboard(elementId);
+                    if (!keyboards.contains(keyboard)) keyboards.add(keyboard);
+                }
+                if (keyboards.size() < maxKeyboards && sPrebuildGeneration.get() == generation && mParams.mMode == KeyboardId.MODE_TEXT) {
+                    keyboards.add(Builder.buildEmojiClipBottomRow(mContext, mParams.mEditorInfo)
+                            .getKeyboard(KeyboardId.ELEMENT_EMOJI_BOTTOM_ROW));
+                }
+            } catch (final KeyboardLayoutSetException e) {
+                // already logged, and will fail again once the keyboard is actually needed
+            }
+            synchronized (sKeyboardCache) {
+                if (sPrebuildGeneration.get() != generation) return;
+                sPrebuiltKeyboards.clear();
+                sPrebuiltKeyboards.addAll(keyboards);
+            }
+        });
+    }
+
     @NonNull
     private Keyboard getKeyboard(final KeyboardId id) {
-        final SoftReference<Keyboard> ref = sKeyboardCache.get(id);
-        final Keyboard cachedKeyboard = (ref == null) ? null : ref.get();
-        if (cachedKeyboard != null) {
-            if (DEBUG_CACHE) {
-                Log.d(TAG, "keyboard cache size=" + sKeyboardCache.size() + ": HIT  id=" + id);
+        final int cacheGeneration;
+        synchronized (sKeyboardCache) {
+            final Keyboard cachedKeyboard = getCachedKeyboardLocked(id);
+            if (cachedKeyboard != null) {
+                if (DEBUG_CACHE) {
+                    Log.d(TAG, "keyboard cache size=" + sKeyboardCache.size() + ": HIT  id=" + id);
+                }
+                return cachedKeyboard;
             }
-            return cachedKeyboard;
+            cacheGeneration = sCacheGeneration;
         }
 
-        final KeyboardBuilder<KeyboardParams> builder =
-                new KeyboardBuilder<>(mContext, new KeyboardParams(sUniqueKeysCache));
-        sUniqueKeysCache.setEnabled(id.isAlphabetKeyboard());
+        final KeyboardBuilder<KeyboardParams> builder = new KeyboardBuilder<>(mContext,
+                new KeyboardParams(id.isAlphabetKeyboard() ? sUniqueKeysCache : UniqueKeysCache.NO_CACHE));
         builder.load(id);
         if (mParams.mDisableTouchPositionCorrectionDataForTest) {
             builder.disableTouchPositionCorrectionDataForTest();
         }
         final Keyboard keyboard = builder.build();
+
+        synchronized (sKeyboardCache) {
+            // don't cache keyboards built from cleared caches, e.g. with the old theme
+            if (cacheGeneration != sCacheGeneration) return keyboard;
+            final Keyboard cachedKeyboard = getCachedKeyboardLocked(id);
+            if (cachedKeyboard != null) return cachedKeyboard; // built on another thread in the meantime
+            cacheKeyboardLocked(id, keyboard);
+        }
+        return keyboard;
+    }
+
+    @Nullable
+    private static Keyboard getCachedKeyboardLocked(final KeyboardId id) {
+        final SoftReference<Keyboard> ref = sKeyboardCache.get(id);
+        return (ref == null) ? null : ref.get();
+    }
+
+    private void cacheKeyboardLocked(final KeyboardId id, final Keyboard keyboard) {
+        final boolean gced = sKeyboardCache.containsKey(id);
         sKeyboardCache.put(id, new SoftReference<>(keyboard));
         if ((id.mElementId == KeyboardId.ELEMENT_ALPHABET
                 || id.mElementId == KeyboardId.ELEMENT_ALPHABET_AUTOMATIC_SHIFTED)
@@ -191,9 +277,8 @@ public final class KeyboardLayoutSet {
         }
         if (DEBUG_CACHE) {
             Log.d(TAG, "keyboard cache size=" + sKeyboardCache.size() + ": "
-                    + ((ref == null) ? "LOAD" : "GCed") + " id=" + id);
+                    + (gced ? "GCed" : "LOAD") + " id=" + id);
         }
-        return keyboard;
     }
 
     public String getScript() {
@@ -33,6 +33,7 @@ import helium314.keyboard.event.Event;
 import helium314.keyboard.keyboard.KeyboardLayoutSet.KeyboardLayoutSetException;
 import helium314.keyboard.keyboard.clipboard.ClipboardHistoryView;
 import helium314.keyboard.keyboard.emoji.EmojiPalettesView;
+import helium314.keyboard.keyboard.internal.KeyLabelAtlas;
 import helium314.keyboard.keyboard.internal.KeyboardState;
 import helium314.keyboard.latin.InputView;
 import helium314.keyboard.latin.KeyboardWrapperView;
@@ -51,6 +52,7 @@ import helium314.keyboard.latin.utils.Log;
 import helium314.keyboard.latin.utils.RecapitalizeMode;
 import helium314.keyboard.latin.utils.ResourceUtils;
 import helium314.keyboard.latin.utils.ScriptUtils;
+import helium314.keyboard.latin.utils.StartupTracer;
 import helium314.keyboard.latin.utils.SubtypeUtilsAdditional;
 import helium314.keyboard.latin.utils.ToolbarMode;
 
@@ -110,8 +112,10 @@ public final class KeyboardSwitcher implements KeyboardState.SwitchActions {
         final boolean themeUpdated = updateKeyboardThemeAndContextThemeWrapper(
                 displayContext, KeyboardTheme.getKeyboardTheme(displayContext));
         if (themeUpdated) {
-            Settings settings = Settings.getInstance();
-            settings.loadSettings(displayContext, settings.getCurrent().mLocale, settings.getCurrent().mInputAttributes);
+            final Settings settings = Settings.getInstance();
+            final SettingsValues current = settings.getCurrent();
+            settings.invalidate();
+            settings.loadSettings(displayContext, current.mLocale, current.mInputAttributes);
             if (mKeyboardView != null)
                 mLatinIME.setInputView(onCreateInputView(displayContext, mIsHardwareAcceleratedDrawingEnabled));
         } else if (mCurrentInputView != null && mLatinIME.hasSuggestionStripView()
@@ -137,6 +141,7 @@ public final class KeyboardSwitcher implements KeyboardState.SwitchActions {
             mCurrentOrientation = res.getConfiguration().orientation;
             mCurrentDpi = res.getDisplayMetrics().densityDpi;
             KeyboardLayoutSet.onKeyboardThemeChanged();
+            KeyLabelAtlas.clear();
             return true;
         }
         return false;
@@ -145,6 +150,7 @@ public final class KeyboardSwitcher implements KeyboardState.SwitchActions {
     public void loadKeyboard(final EditorInfo editorInfo, final SettingsValues settingsValues,
             final int currentAutoCapsState, @Nullable final RecapitalizeMode currentRecapitalizeState,
             KeyboardLayoutSet.InternalAction internalAction) {
+        final long startNanos = StartupTracer.begin();
         final KeyboardLayoutSet.Builder builder = new KeyboardLayoutSet.Builder(
                 mThemeContext, editorInfo);
         final int keyboardWidth = ResourceUtils.getKeyboardWidth(mThemeContext, settingsValues);
@@ -163,6 +169,7 @@ public final class KeyboardSwitcher implements KeyboardState.SwitchActions {
                 .build();
         try {
             mState.onLoadKeyboard(currentAutoCapsState, currentRecapitalizeState, oneHandedModeEnabled);
+            mKeyboardLayoutSet.prebuildKeyboards(settingsValues.mPrebuiltKeyboards);
         } catch (KeyboardLayoutSetException e) {
             Log.e(TAG, "loading keyboard failed: " + e.mKeyboardId, e.getCause());
             try {
@@ -183,6 +190,7 @@ public final class KeyboardSwitcher implements KeyboardState.SwitchActions {
                 Log.e(TAG, "even fallback to defaults failed: " + e2.mKeyboardId, e2.getCause());
             }
         }
+        StartupTracer.end("KeyboardSwitcher.loadKeyboard", startNanos);
     }
 
     public void saveKeyboardState() {
@@ -687,6 +695,7 @@ public final class KeyboardSwitcher implements KeyboardState.SwitchActions {
     }
 
     public void trimMemory() {
+        KeyLabelAtlas.clear();
         if (mEmojiPalettesView != null) {
             mEmojiPalettesView.clearKeyboardCache();
         }
@@ -703,8 +712,11 @@ public final class KeyboardSwitcher implements KeyboardState.SwitchActions {
             prefs.unregisterOnSharedPreferenceChangeListener(mSuggestionStripView);
         if (mClipboardHistoryView != null)
             prefs.unregisterOnSharedPreferenceChangeListener(mClipboardHistoryView);
-        if (mThemeNeedsReload) // necessary in some cases (e.g. theme switch) when mThemeNeedsReload is set before first keyboard load
-            Settings.getInstance().loadSettings(displayContext, Settings.getValues().mLocale, Settings.getValues().mInputAttributes);
+        if (mThemeNeedsReload) { // necessary in some cases (e.g. theme switch) when mThemeNeedsReload is set before first keyboard load
+            final SettingsValues current = Settings.getValues();
+            Settings.getInstance().invalidate();
+            Settings.getInstance().loadSettings(displayContext, current.mLocale, current.mInputAttributes);
+        }
 
         updateKeyboardThemeAndContextThemeWrapper(displayContext, KeyboardTheme.getKeyboardTheme(displayContext));
         mCurrentInputView = (InputView)LayoutInflater.from(mThemeContext).inflate(R.layout.input_view, null);
@@ -16,19 +16,24 @@ import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Paint.Align;
 import android.graphics.PorterDuff;
+import android.graphics.RecordingCanvas;
 import android.graphics.Rect;
+import android.graphics.RenderNode;
 import android.graphics.Typeface;
 import android.graphics.drawable.Drawable;
 import android.graphics.drawable.NinePatchDrawable;
+import android.os.Build;
 import android.text.TextUtils;
 import android.util.AttributeSet;
 import android.view.View;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
 
 import helium314.keyboard.keyboard.emoji.EmojiPageKeyboardView;
 import helium314.keyboard.keyboard.internal.KeyDrawParams;
+import helium314.keyboard.keyboard.internal.KeyLabelAtlas;
 import helium314.keyboard.keyboard.internal.KeyVisualAttributes;
 import helium314.keyboard.keyboard.internal.keyboard_parser.floris.KeyCode;
 import helium314.keyboard.latin.R;
@@ -36,12 +41,18 @@ import helium314.keyboard.latin.common.ColorType;
 import helium314.keyboard.latin.common.Colors;
 import helium314.keyboard.latin.common.Constants;
 import helium314.keyboard.latin.common.StringUtilsKt;
+import helium314.keyboard.latin.settings.DebugSettings;
+import helium314.keyboard.latin.settings.Defaults;
 import helium314.keyboard.latin.settings.Settings;
 import helium314.keyboard.latin.suggestions.MoreSuggestions;
 import helium314.keyboard.latin.suggestions.MoreSuggestionsView;
+import helium314.keyboard.latin.utils.KtxKt;
 import helium314.keyboard.latin.utils.TypefaceUtils;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 
 /** A view that renders a virtual {@link Keyboard}. */
 // todo: this ThemeStyle-dependent stuff really should not be in here!
@@ -94,6 +105,10 @@ public class KeyboardView extends View {
     /** The canvas for the above mutable keyboard bitmap */
     @NonNull
     private final Canvas mOffscreenCanvas = new Canvas();
+    /** Whether keys are recorded into {@link #mKeyRenderNodes} when drawing with hardware acceleration */
+    private final boolean mUseKeyRenderNodes;
+    /** Recorded drawing of each key, so only invalidated keys need to be drawn again */
+    private final HashMap<Key, RenderNode> mKeyRenderNodes = new HashMap<>();
     @NonNull
     private final Paint mPaint = new Paint();
     private final Paint.FontMetrics mFontMetrics = new Paint.FontMetrics();
@@ -150,6 +165,8 @@ public class KeyboardView extends View {
         mPaint.setAntiAlias(true);
         mTypeface = Settings.getInstance().getCustomTypeface();
         mEmojiTypeface = Settings.getInstance().getCustomEmojiTypeface();
+        mUseKeyRenderNodes = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q
+                && KtxKt.prefs(context).getBoolean(DebugSettings.PREF_KEY_RENDER_NODES, Defaults.PREF_KEY_RENDER_NODES);
         setFitsSystemWindows(true);
     }
 
@@ -166,6 +183,8 @@ public class KeyboardView extends View {
 
     public void setHardwareAcceleratedDrawingEnabled(final boolean enabled) {
         if (!enabled) return;
+        // keys are already cached in their render nodes, a keyboard sized layer is not necessary
+        if (mUseKeyRenderNodes) return;
         // TODO: Should use LAYER_TYPE_SOFTWARE when hardware acceleration is off?
         setLayerType(LAYER_TYPE_HARDWARE, null);
     }
@@ -187,12 +206,17 @@ public class KeyboardView extends View {
             setBackgroundColor(Color.TRANSPARENT);
         }
 
+        final Keyboard oldKeyboard = mKeyboard;
         mKeyboard = keyboard;
         mKeyScaleForText = (float) Math.sqrt(1 / Settings.getValues().mKeyboardHeightScale);
         final int scaledKeyHeight = (int) ((keyboard.mMostCommonKeyHeight - keyboard.mVerticalGap) * mKeyScaleForText);
         mKeyDrawParams.updateParams(scaledKeyHeight, mKeyVisualAttributes);
         mKeyDrawParams.updateParams(scaledKeyHeight, keyboard.mKeyVisualAttributes);
-        invalidateAllKeys();
+        if (oldKeyboard != null && oldKeyboard != keyboard && isShiftStateChange(oldKeyboard, keyboard)) {
+            invalidateChangedKeys(oldKeyboard, keyboard);
+        } else {
+            invalidateAllKeys();
+        }
         requestLayout();
         mFontSizeMultiplier = mKeyboard.mId.isEmojiKeyboard()
                 // In the case of EmojiKeyFit, the size of emojis is taken care of by the size of the keys
@@ -200,6 +224,36 @@ public class KeyboardView extends View {
                 : Settings.getValues().mFontSizeMultiplier;
     }
 
+    // Alphabet keyboards that only differ in shift state have the same keys at the same positions,
+    // so only keys with different label or state need to be drawn again.
+    private static boolean isShiftStateChange(@NonNull final Keyboard oldKeyboard, @NonNull final Keyboard newKeyboard) {
+        return oldKeyboard.mId.isAlphabetKeyboard() && newKeyboard.mId.isAlphabetKeyboard()
+                && oldKeyboard.mId.mSubtype.equals(newKeyboard.mId.mSubtype)
+                && oldKeyboard.mOccupiedWidth == newKeyboard.mOccupiedWidth
+                && oldKeyboard.mOccupiedHeight == newKeyboard.mOccupiedHeight
+                && oldKeyboard.getSortedKeys().size() == newKeyboard.getSortedKeys().size();
+    }
+
+    private void invalidateChangedKeys(@NonNull final Keyboard oldKeyboard, @NonNull final Keyboard newKeyboard) {
+        final List<Key> oldKeys = oldKeyboard.getSortedKeys();
+        final List<Key> newKeys = newKeyboard.getSortedKeys();
+        final ArrayList<Key> changedKeys = new ArrayList<>();
+        for (int i = 0; i < newKeys.size(); i++) {
+            final Key oldKey = oldKeys.get(i);
+            final Key newKey = newKeys.get(i);
+            // shift key icon color depends on the keyboard, not on the key
+            if (newKey.isShift() || !newKey.equals(oldKey) || newKey.isPressed() != oldKey.isPressed()
+                    || newKey.isEnabled() != oldKey.isEnabled() || mInvalidatedKeys.contains(oldKey)) {
+                changedKeys.add(newKey);
+            }
+        }
+        // keys of the old keyboard that were not drawn yet are replaced by the new keys
+        mInvalidatedKeys.clear();
+        for (final Key key : changedKeys) {
+            invalidateKey(key);
+        }
+    }
+
     /**
      * Returns the current keyboard being displayed by this view.
      * @return the currently attached keyboard
@@ -240,7 +294,10 @@ public class KeyboardView extends View {
     protected void onDraw(@NonNull final Canvas canvas) {
         super.onDraw(canvas);
         if (canvas.isHardwareAccelerated()) {
-            onDrawKeyboard(canvas);
+            if (mUseKeyRenderNodes && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q)
+                onDrawKeyboardWithRenderNodes(canvas);
+            else
+                onDrawKeyboard(canvas);
             return;
         }
 
@@ -280,15 +337,19 @@ public class KeyboardView extends View {
         }
     }
 
+    private void updateDrawSettings() {
+        mShowsHints = Settings.getValues().mShowsHints;
+        final float scale = Settings.getValues().mKeyboardHeightScale;
+        mIconScaleFactor = scale < 0.8f ? scale + 0.2f : 1f;
+    }
+
     private void onDrawKeyboard(@NonNull final Canvas canvas) {
         final Keyboard keyboard = getKeyboard();
         if (keyboard == null) {
             return;
         }
 
-        mShowsHints = Settings.getValues().mShowsHints;
-        final float scale = Settings.getValues().mKeyboardHeightScale;
-        mIconScaleFactor = scale < 0.8f ? scale + 0.2f : 1f;
+        updateDrawSettings();
         final Paint paint = mPaint;
         final Drawable background = getBackground();
         // Calculate clip region and set.
@@ -329,12 +390,69 @@ public class KeyboardView extends View {
         mInvalidateAllKeys = false;
     }
 
+    @RequiresApi(Build.VERSION_CODES.Q)
+    private void onDrawKeyboardWithRenderNodes(@NonNull final Canvas canvas) {
+        final Keyboard keyboard = getKeyboard();
+        if (keyboard == null) {
+            return;
+        }
+
+        updateDrawSettings();
+        final List<Key> keys = keyboard.getSortedKeys();
+        // nodes of keys from previous keyboards are not needed any more
+        if (mKeyRenderNodes.size() > keys.size() * 2) {
+            discardKeyRenderNodes();
+        }
+        for (final Key key : keys) {
+            RenderNode node = mKeyRenderNodes.get(key);
+            if (node == null) {
+                node = new RenderNode(null);
+                node.setClipToBounds(false); // backgrounds may be larger than the key
+                mKeyRenderNodes.put(key, node);
+                recordKeyRenderNode(key, node);
+            } else if (mInvalidateAllKeys || mInvalidatedKeys.contains(key) || !node.hasDisplayList()) {
+                recordKeyRenderNode(key, node);
+            }
+            canvas.drawRenderNode(node);
+        }
+
+        mInvalidatedKeys.clear();
+        mInvalidateAllKeys = false;
+    }
+
+    @RequiresApi(Build.VERSION_CODES.Q)
+    private void recordKeyRenderNode(@NonNull final Key key, @NonNull final RenderNode node) {
+        final int keyDrawX = key.getDrawX() + getPaddingLeft();
+        final int keyDrawY = key.getY() + getPaddingTop();
+        node.setPosition(keyDrawX, keyDrawY, keyDrawX + key.getDrawWidth(), keyDrawY + key.getHeight());
+        final RecordingCanvas canvas = node.beginRecording();
+        try {
+            drawKey(key, canvas, mPaint);
+        } finally {
+            node.endRecording();
+        }
+    }
+
+    private void discardKeyRenderNodes() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            for (final RenderNode node : mKeyRenderNodes.values()) {
+                node.discardDisplayList();
+            }
+        }
+        mKeyRenderNodes.clear();
+    }
+
     private void onDrawKey(@NonNull final Key key, @NonNull final Canvas canvas,
             @NonNull final Paint paint) {
         final int keyDrawX = key.getDrawX() + getPaddingLeft();
         final int keyDrawY = key.getY() + getPaddingTop();
         canvas.translate(keyDrawX, keyDrawY);
+        drawKey(key, canvas, paint);
+        canvas.translate(-keyDrawX, -keyDrawY);
+    }
 
+    // Draw key at the origin of the canvas.
+    private void drawKey(@NonNull final Key key, @NonNull final Canvas canvas, @NonNull final Paint paint) {
         final KeyVisualAttributes attr = key.getVisualAttributes();
         // don't use the raw key height, linear font scaling with height is too extreme
         final KeyDrawParams params = mKeyDrawParams.mayCloneAndUpdateParams((int) (key.getHeight() * mKeyScaleForText), attr);
@@ -346,8 +464,6 @@ public class KeyboardView extends View {
             onDrawKeyBackground(key, canvas, background);
         }
         onDrawKeyTopVisuals(key, canvas, paint, params);
-
-        canvas.translate(-keyDrawX, -keyDrawY);
     }
 
     // Draw key background.
@@ -451,7 +567,10 @@ public class KeyboardView extends View {
                 paint.clearShadowLayer();
             }
             blendAlpha(paint, params.mAnimAlpha);
-            canvas.drawText(label, 0, label.length(), labelX, labelBaseline, paint);
+            if (mKeyTextShadowRadius > 0.0f && key.isEnabled()) // the atlas doesn't have shadows
+                canvas.drawText(label, 0, label.length(), labelX, labelBaseline, paint);
+            else
+                drawKeyText(canvas, label, labelX, labelBaseline, paint);
             // Turn off drop shadow and reset x-scale.
             paint.clearShadowLayer();
             paint.setTextScaleX(1.0f);
@@ -504,7 +623,7 @@ public class KeyboardView extends View {
             final float adjustmentY = isFunctionalKeyAndRoundedStyle
                     ? hintBaseline * 0.5f
                     : params.mHintLabelVerticalAdjustment * labelCharHeight;
-            canvas.drawText(hintLabel, 0, hintLabel.length(), hintX, hintBaseline + adjustmentY, paint);
+            drawKeyText(canvas, hintLabel, hintX, hintBaseline + adjustmentY, paint);
         }
 
         // Draw key icon.
@@ -556,7 +675,14 @@ public class KeyboardView extends View {
             hintX = keyWidth - mKeyHintLetterPadding - TypefaceUtils.getReferenceCharWidth(paint) / 2.0f;
         }
         final float hintY = keyHeight - mKeyPopupHintLetterPadding;
-        canvas.drawText(mKeyPopupHintLetter, hintX, hintY, paint);
+        drawKeyText(canvas, mKeyPopupHintLetter, hintX, hintY, paint);
+    }
+
+    // Draw text from the label atlas when drawing in software, where rasterizing text on every redraw is slow.
+    private static void drawKeyText(@NonNull final Canvas canvas, @NonNull final String text,
+            final float x, final float y, @NonNull final Paint paint) {
+        if (canvas.isHardwareAccelerated() || !KeyLabelAtlas.getInstance().drawText(canvas, text, x, y, paint))
+            canvas.drawText(text, x, y, paint);
     }
 
     protected static void drawIcon(@NonNull final Canvas canvas,@NonNull final Drawable icon,
@@ -583,8 +709,8 @@ public class KeyboardView extends View {
 
     /**
      * Requests a redraw of the entire keyboard. Calling {@link #invalidate} is not sufficient
-     * because the keyboard renders the keys to an off-screen buffer and an invalidate() only
-     * draws the cached buffer.
+     * because the keyboard renders the keys to an off-screen buffer or to render nodes, and an
+     * invalidate() only draws the cached keys.
      * @see #invalidateKey(Key)
      */
     public void invalidateAllKeys() {
@@ -614,10 +740,12 @@ public class KeyboardView extends View {
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
         freeOffscreenBuffer();
+        discardKeyRenderNodes();
     }
 
     public void deallocateMemory() {
         freeOffscreenBuffer();
+        discardKeyRenderNodes();
     }
 
     private void setKeyIconColor(Key key, Drawable icon, Keyboard keyboard) {
@@ -199,7 +199,8 @@ public final class MainKeyboardView extends KeyboardView implements DrawingProxy
         mGestureFloatingTextDrawingPreview = new GestureFloatingTextDrawingPreview(mainKeyboardViewAttr);
         mGestureFloatingTextDrawingPreview.setDrawingView(drawingPreviewPlacerView);
 
-        mGestureTrailsDrawingPreview = new GestureTrailsDrawingPreview(mainKeyboardViewAttr);
+        mGestureTrailsDrawingPreview = new GestureTrailsDrawingPreview(mainKeyboardViewAttr, prefs.getBoolean(
+                DebugSettings.PREF_INCREMENTAL_GESTURE_TRAIL, Defaults.PREF_INCREMENTAL_GESTURE_TRAIL));
         mGestureTrailsDrawingPreview.setDrawingView(drawingPreviewPlacerView);
 
         mSlidingKeyInputDrawingPreview = new SlidingKeyInputDrawingPreview(mainKeyboardViewAttr);
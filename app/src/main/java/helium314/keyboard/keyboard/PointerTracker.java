@@ -37,6 +37,7 @@ import helium314.keyboard.latin.define.DebugFlags;
 import helium314.keyboard.latin.settings.Settings;
 import helium314.keyboard.latin.settings.SettingsValues;
 import helium314.keyboard.latin.utils.KtxKt;
+import helium314.keyboard.latin.utils.LatencyTracer;
 import helium314.keyboard.latin.utils.Log;
 
 import java.util.ArrayList;
@@ -629,7 +630,11 @@ public final class PointerTracker implements PointerTrackerQueue.Element,
         final int x = (int)me.getX(index);
         final int y = (int)me.getY(index);
         switch (action) {
-            case MotionEvent.ACTION_DOWN, MotionEvent.ACTION_POINTER_DOWN -> onDownEvent(x, y, eventTime, keyDetector);
+            case MotionEvent.ACTION_DOWN, MotionEvent.ACTION_POINTER_DOWN -> {
+                final long traceStart = LatencyTracer.begin();
+                onDownEvent(x, y, eventTime, keyDetector);
+                LatencyTracer.end(LatencyTracer.STAGE_TOUCH_DOWN, traceStart);
+            }
             case MotionEvent.ACTION_UP, MotionEvent.ACTION_POINTER_UP -> onUpEvent(x, y, eventTime);
             case MotionEvent.ACTION_CANCEL -> onCancelEvent(x, y, eventTime);
         }
@@ -5,6 +5,7 @@ import android.graphics.Paint
 import android.os.Build
 import androidx.core.content.edit
 import helium314.keyboard.latin.settings.Settings
+import helium314.keyboard.latin.utils.StartupSnapshot
 import helium314.keyboard.latin.utils.prefs
 
 object SupportedEmojis {
@@ -14,12 +15,18 @@ object SupportedEmojis {
         determineMaxSdk(context)
         val maxSdk = context.prefs().getInt(Settings.PREF_EMOJI_MAX_SDK, 0)
         unsupportedEmojis.clear()
+        unsupportedEmojis.addAll(StartupSnapshot.getUnsupportedEmojis { readUnsupportedEmojis(context, maxSdk) })
+    }
+
+    private fun readUnsupportedEmojis(context: Context, maxSdk: Int): List<String> {
+        val emojis = mutableListOf<String>()
         context.assets.open("emoji/minApi.txt").reader().readLines().forEach {
             val s = it.split(" ")
             val minApi = s.first().toInt()
             if (minApi > maxSdk)
-                unsupportedEmojis.addAll(s.drop(1))
+                emojis.addAll(s.drop(1))
         }
+        return emojis
     }
 
     private fun determineMaxSdk(context: Context) {
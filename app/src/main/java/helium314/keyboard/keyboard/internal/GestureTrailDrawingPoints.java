@@ -41,6 +41,8 @@ final class GestureTrailDrawingPoints {
     private long mCurrentTimeBase;
     private int mTrailStartIndex;
     private int mLastInterpolatedDrawIndex;
+    // The index of the last point that has been drawn by appendGestureTrail
+    private int mLastAppendedIndex;
 
     // Use this value as imaginary zero because x-coordinates may be zero.
     private static final int DOWN_EVENT_MARKER = -128;
@@ -162,22 +164,12 @@ final class GestureTrailDrawingPoints {
         final int[] eventTimes = mEventTimes.getPrimitiveArray();
         final int[] xCoords = mXCoordinates.getPrimitiveArray();
         final int[] yCoords = mYCoordinates.getPrimitiveArray();
-        final int[] pointTypes = mPointTypes.getPrimitiveArray();
         final int sinceDown = (int)(SystemClock.uptimeMillis() - mCurrentTimeBase);
-        int startIndex;
-        for (startIndex = mTrailStartIndex; startIndex < trailSize; startIndex++) {
-            final int elapsedTime = sinceDown - eventTimes[startIndex];
-            // Skip too old trail points.
-            if (elapsedTime < params.mTrailLingerDuration) {
-                break;
-            }
-        }
-        mTrailStartIndex = startIndex;
+        final int startIndex = skipOldPoints(sinceDown, params);
 
         if (startIndex < trailSize) {
             paint.setColor(params.mTrailColor);
             paint.setStyle(Paint.Style.FILL);
-            final RoundedLine roundedLine = mRoundedLine;
             int p1x = getXCoordValue(xCoords[startIndex]);
             int p1y = yCoords[startIndex];
             final int lastTime = sinceDown - eventTimes[startIndex];
@@ -189,23 +181,7 @@ final class GestureTrailDrawingPoints {
                 final float r2 = getWidth(elapsedTime, params) / 2.0f;
                 // Draw trail line only when the current point isn't a down point.
                 if (!isDownEventXCoord(xCoords[i])) {
-                    final float body1 = r1 * params.mTrailBodyRatio;
-                    final float body2 = r2 * params.mTrailBodyRatio;
-                    final Path path = roundedLine.makePath(p1x, p1y, body1, p2x, p2y, body2);
-                    if (!path.isEmpty()) {
-                        roundedLine.getBounds(mRoundedLineBounds);
-                        if (params.mTrailShadowEnabled) {
-                            final float shadow2 = r2 * params.mTrailShadowRatio;
-                            paint.setShadowLayer(shadow2, 0.0f, 0.0f, params.mTrailColor);
-                            final int shadowInset = -(int)Math.ceil(shadow2);
-                            mRoundedLineBounds.inset(shadowInset, shadowInset);
-                        }
-                        // Take union for the bounds.
-                        outBoundsRect.union(mRoundedLineBounds);
-                        final int alpha = getAlpha(elapsedTime, params);
-                        paint.setAlpha(alpha);
-                        canvas.drawPath(path, paint);
-                    }
+                    drawSegment(canvas, paint, p1x, p1y, r1, p2x, p2y, r2, elapsedTime, outBoundsRect, params);
                 }
                 p1x = p2x;
                 p1y = p2y;
@@ -215,7 +191,152 @@ final class GestureTrailDrawingPoints {
                 debugDrawPoints(canvas, startIndex, trailSize, paint);
             }
         }
+        return removeOldPoints(startIndex);
+    }
+
+    /**
+     * Draw the segments of the gesture trail that have been added since the last call and will not
+     * change any more, so the canvas needs to keep the previously drawn segments.
+     * Points closer to the last drawn point than the radius of the trail are skipped, because
+     * they are covered by the rounded end of the line anyway.
+     * @param canvas The canvas to draw the new segments
+     * @param paint The paint object to be used to draw the gesture trail
+     * @param outBoundsRect the bounding box of the new segments
+     * @param params The drawing parameters of gesture trail
+     * @return true if some gesture trails remain to be drawn
+     */
+    public boolean appendGestureTrail(final Canvas canvas, final Paint paint,
+            final Rect outBoundsRect, final GestureTrailDrawingParams params) {
+        synchronized (mEventTimes) {
+            return appendGestureTrailLocked(canvas, paint, outBoundsRect, params);
+        }
+    }
+
+    private boolean appendGestureTrailLocked(final Canvas canvas, final Paint paint,
+            final Rect outBoundsRect, final GestureTrailDrawingParams params) {
+        outBoundsRect.setEmpty();
+        final int trailSize = mEventTimes.getLength();
+        if (trailSize == 0) {
+            return false;
+        }
+
+        final int[] eventTimes = mEventTimes.getPrimitiveArray();
+        final int[] xCoords = mXCoordinates.getPrimitiveArray();
+        final int[] yCoords = mYCoordinates.getPrimitiveArray();
+        final int sinceDown = (int)(SystemClock.uptimeMillis() - mCurrentTimeBase);
+        final int startIndex = skipOldPoints(sinceDown, params);
+        // Points of the last segment of the stroke may still be changed by interpolation.
+        final int lastStableIndex = Math.min(mLastInterpolatedDrawIndex, trailSize - 1);
+        final float minDistance = getWidth(0, params) / 2.0f * params.mTrailBodyRatio;
+        paint.setColor(params.mTrailColor);
+        paint.setStyle(Paint.Style.FILL);
+        int lastIndex = Math.max(mLastAppendedIndex, startIndex);
+        for (int i = lastIndex + 1; i <= lastStableIndex; i++) {
+            final int p2x = getXCoordValue(xCoords[i]);
+            final int p2y = yCoords[i];
+            if (!isDownEventXCoord(xCoords[i])) {
+                final int p1x = getXCoordValue(xCoords[lastIndex]);
+                final int p1y = yCoords[lastIndex];
+                if (Math.hypot(p2x - p1x, p2y - p1y) < minDistance) {
+                    continue;
+                }
+                final float r1 = getWidth(sinceDown - eventTimes[lastIndex], params) / 2.0f;
+                final int elapsedTime = sinceDown - eventTimes[i];
+                final float r2 = getWidth(elapsedTime, params) / 2.0f;
+                drawSegment(canvas, paint, p1x, p1y, r1, p2x, p2y, r2, elapsedTime, outBoundsRect, params);
+            }
+            lastIndex = i;
+        }
+        mLastAppendedIndex = lastIndex;
+        return removeOldPoints(startIndex);
+    }
 
+    private final Rect mTailBoundsRect = new Rect();
+
+    /**
+     * Draw the segments of the gesture trail that have not been drawn by
+     * {@link #appendGestureTrail(Canvas, Paint, Rect, GestureTrailDrawingParams)} yet.
+     * @param canvas The canvas to draw the gesture trail
+     * @param paint The paint object to be used to draw the gesture trail
+     * @param params The drawing parameters of gesture trail
+     */
+    public void drawGestureTrailTail(final Canvas canvas, final Paint paint,
+            final GestureTrailDrawingParams params) {
+        synchronized (mEventTimes) {
+            final int trailSize = mEventTimes.getLength();
+            if (mLastAppendedIndex >= trailSize - 1) {
+                return;
+            }
+            final int[] eventTimes = mEventTimes.getPrimitiveArray();
+            final int[] xCoords = mXCoordinates.getPrimitiveArray();
+            final int[] yCoords = mYCoordinates.getPrimitiveArray();
+            final int sinceDown = (int)(SystemClock.uptimeMillis() - mCurrentTimeBase);
+            paint.setColor(params.mTrailColor);
+            paint.setStyle(Paint.Style.FILL);
+            int p1x = getXCoordValue(xCoords[mLastAppendedIndex]);
+            int p1y = yCoords[mLastAppendedIndex];
+            float r1 = getWidth(sinceDown - eventTimes[mLastAppendedIndex], params) / 2.0f;
+            for (int i = mLastAppendedIndex + 1; i < trailSize; i++) {
+                final int elapsedTime = sinceDown - eventTimes[i];
+                final int p2x = getXCoordValue(xCoords[i]);
+                final int p2y = yCoords[i];
+                final float r2 = getWidth(elapsedTime, params) / 2.0f;
+                if (!isDownEventXCoord(xCoords[i])) {
+                    drawSegment(canvas, paint, p1x, p1y, r1, p2x, p2y, r2, elapsedTime, mTailBoundsRect, params);
+                }
+                p1x = p2x;
+                p1y = p2y;
+                r1 = r2;
+            }
+        }
+    }
+
+    private void drawSegment(final Canvas canvas, final Paint paint, final int p1x, final int p1y,
+            final float r1, final int p2x, final int p2y, final float r2, final int elapsedTime,
+            final Rect outBoundsRect, final GestureTrailDrawingParams params) {
+        final float body1 = r1 * params.mTrailBodyRatio;
+        final float body2 = r2 * params.mTrailBodyRatio;
+        final Path path = mRoundedLine.makePath(p1x, p1y, body1, p2x, p2y, body2);
+        if (path.isEmpty()) {
+            return;
+        }
+        mRoundedLine.getBounds(mRoundedLineBounds);
+        if (params.mTrailShadowEnabled) {
+            final float shadow2 = r2 * params.mTrailShadowRatio;
+            paint.setShadowLayer(shadow2, 0.0f, 0.0f, params.mTrailColor);
+            final int shadowInset = -(int)Math.ceil(shadow2);
+            mRoundedLineBounds.inset(shadowInset, shadowInset);
+        }
+        // Take union for the bounds.
+        outBoundsRect.union(mRoundedLineBounds);
+        final int alpha = getAlpha(elapsedTime, params);
+        paint.setAlpha(alpha);
+        canvas.drawPath(path, paint);
+    }
+
+    // Returns the index of the first point that is recent enough to be drawn.
+    private int skipOldPoints(final int sinceDown, final GestureTrailDrawingParams params) {
+        final int trailSize = mEventTimes.getLength();
+        final int[] eventTimes = mEventTimes.getPrimitiveArray();
+        int startIndex;
+        for (startIndex = mTrailStartIndex; startIndex < trailSize; startIndex++) {
+            final int elapsedTime = sinceDown - eventTimes[startIndex];
+            // Skip too old trail points.
+            if (elapsedTime < params.mTrailLingerDuration) {
+                break;
+            }
+        }
+        mTrailStartIndex = startIndex;
+        return startIndex;
+    }
+
+    // Removes points before startIndex if they are the larger part of the arrays, returns whether points remain.
+    private boolean removeOldPoints(final int startIndex) {
+        final int trailSize = mEventTimes.getLength();
+        final int[] eventTimes = mEventTimes.getPrimitiveArray();
+        final int[] xCoords = mXCoordinates.getPrimitiveArray();
+        final int[] yCoords = mYCoordinates.getPrimitiveArray();
+        final int[] pointTypes = mPointTypes.getPrimitiveArray();
         final int newSize = trailSize - startIndex;
         if (newSize < startIndex) {
             mTrailStartIndex = 0;
@@ -237,6 +358,7 @@ final class GestureTrailDrawingPoints {
             // {@link mLastInterpolatedDrawIndex} should also be updated because all array
             // elements have just been shifted for compaction or been zeroed.
             mLastInterpolatedDrawIndex = Math.max(mLastInterpolatedDrawIndex - startIndex, 0);
+            mLastAppendedIndex = Math.max(mLastAppendedIndex - startIndex, 0);
         }
         return newSize > 0;
     }
@@ -15,6 +15,7 @@ import android.graphics.PorterDuff;
 import android.graphics.PorterDuffXfermode;
 import android.graphics.Rect;
 import android.os.Handler;
+import android.os.SystemClock;
 import android.util.SparseArray;
 
 import androidx.annotation.NonNull;
@@ -23,6 +24,9 @@ import helium314.keyboard.keyboard.PointerTracker;
 
 /**
  * Draw preview graphics of multiple gesture trails during gesture input.
+ * <p>
+ * In incremental mode, only new segments are drawn to the offscreen buffer, and the buffer content
+ * is faded out on each update instead of drawing the whole trail again.
  */
 public final class GestureTrailsDrawingPreview extends AbstractDrawingPreview implements Runnable {
     private final SparseArray<GestureTrailDrawingPoints> mGestureTrails = new SparseArray<>();
@@ -36,15 +40,29 @@ public final class GestureTrailsDrawingPreview extends AbstractDrawingPreview im
     private final Rect mOffscreenSrcRect = new Rect();
     private final Rect mDirtyRect = new Rect();
     private final Rect mGestureTrailBoundsRect = new Rect(); // per trail
+    private final boolean mIncremental;
+    private final Paint mFadePaint;
+    private final Paint mTailPaint;
+    private long mLastFadeTime;
+    // Alpha multiplier is exp(FADE_EXPONENT) after the trail linger duration, i.e. less than 1/255.
+    private static final double FADE_EXPONENT = Math.log(1.0 / 256);
 
     private final Handler mDrawingHandler = new Handler();
 
-    public GestureTrailsDrawingPreview(final TypedArray mainKeyboardViewAttr) {
+    public GestureTrailsDrawingPreview(final TypedArray mainKeyboardViewAttr, final boolean incremental) {
         mDrawingParams = new GestureTrailDrawingParams(mainKeyboardViewAttr);
         final Paint gesturePaint = new Paint();
         gesturePaint.setAntiAlias(true);
         gesturePaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC));
         mGesturePaint = gesturePaint;
+        mIncremental = incremental;
+        final Paint fadePaint = new Paint();
+        fadePaint.setStyle(Paint.Style.FILL);
+        fadePaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.DST_OUT));
+        mFadePaint = fadePaint;
+        final Paint tailPaint = new Paint();
+        tailPaint.setAntiAlias(true);
+        mTailPaint = tailPaint;
     }
 
     @Override
@@ -108,6 +126,58 @@ public final class GestureTrailsDrawingPreview extends AbstractDrawingPreview im
         return needsUpdatingGestureTrail;
     }
 
+    // Fades the trails in the buffer, which is then drawn to the canvas together with the parts of
+    // the trails that may still change. dirtyRect contains the bounds of all trails in the buffer.
+    private boolean appendGestureTrails(final Canvas canvas, final Canvas offscreenCanvas,
+            final Paint paint, final Rect dirtyRect) {
+        fadeGestureTrails(offscreenCanvas, dirtyRect);
+        boolean needsUpdatingGestureTrail = false;
+        synchronized (mGestureTrails) {
+            final int trailsCount = mGestureTrails.size();
+            for (int index = 0; index < trailsCount; index++) {
+                final GestureTrailDrawingPoints trail = mGestureTrails.valueAt(index);
+                needsUpdatingGestureTrail |= trail.appendGestureTrail(offscreenCanvas, paint,
+                        mGestureTrailBoundsRect, mDrawingParams);
+                dirtyRect.union(mGestureTrailBoundsRect);
+            }
+        }
+        if (!dirtyRect.isEmpty()) {
+            mOffscreenSrcRect.set(dirtyRect);
+            mOffscreenSrcRect.offset(0, mOffscreenOffsetY);
+            canvas.drawBitmap(mOffscreenBuffer, mOffscreenSrcRect, dirtyRect, null);
+        }
+        synchronized (mGestureTrails) {
+            final int trailsCount = mGestureTrails.size();
+            for (int index = 0; index < trailsCount; index++) {
+                mGestureTrails.valueAt(index).drawGestureTrailTail(canvas, mTailPaint, mDrawingParams);
+            }
+        }
+        if (!needsUpdatingGestureTrail && !dirtyRect.isEmpty()) {
+            // All trails have faded out, clear what remains of them.
+            paint.setColor(Color.TRANSPARENT);
+            paint.setStyle(Paint.Style.FILL);
+            offscreenCanvas.drawRect(dirtyRect, paint);
+            dirtyRect.setEmpty();
+        }
+        return needsUpdatingGestureTrail;
+    }
+
+    private void fadeGestureTrails(final Canvas offscreenCanvas, final Rect dirtyRect) {
+        final long now = SystemClock.uptimeMillis();
+        final long elapsedTime = Math.min(now - mLastFadeTime, mDrawingParams.mTrailLingerDuration);
+        mLastFadeTime = now;
+        if (dirtyRect.isEmpty()) {
+            return;
+        }
+        final double remaining = Math.exp(FADE_EXPONENT * elapsedTime / mDrawingParams.mTrailLingerDuration);
+        final int fadeAlpha = (int) Math.ceil(255 * (1 - remaining));
+        if (fadeAlpha <= 0) {
+            return;
+        }
+        mFadePaint.setAlpha(fadeAlpha);
+        offscreenCanvas.drawRect(dirtyRect, mFadePaint);
+    }
+
     @Override
     public void run() {
         // Update preview.
@@ -124,6 +194,13 @@ public final class GestureTrailsDrawingPreview extends AbstractDrawingPreview im
             return;
         }
         mayAllocateOffscreenBuffer();
+        if (mIncremental) {
+            if (appendGestureTrails(canvas, mOffscreenCanvas, mGesturePaint, mDirtyRect)) {
+                mDrawingHandler.removeCallbacks(this);
+                mDrawingHandler.postDelayed(this, mDrawingParams.mUpdateInterval);
+            }
+            return;
+        }
         // Draw gesture trails to offscreen buffer.
         final boolean needsUpdatingGestureTrail = drawGestureTrails(
                 mOffscreenCanvas, mGesturePaint, mDirtyRect);
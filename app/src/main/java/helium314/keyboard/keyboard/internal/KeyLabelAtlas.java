@@ -0,0 +1,127 @@
+// SPDX-License-Identifier: GPL-3.0-only
+package helium314.keyboard.keyboard.internal;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Typeface;
+
+import androidx.annotation.NonNull;
+
+import java.util.HashMap;
+
+/**
+ * Pre-rendered key labels, so drawing an unchanged label on a software canvas is a single bitmap copy
+ * instead of shaping and rasterizing the text again. Labels are packed into rows of one bitmap, which is
+ * cleared when full.
+ * Only for software rendering: hardware rendering has its own glyph cache, and recorded drawing
+ * would show wrong content after the atlas is cleared.
+ */
+public final class KeyLabelAtlas {
+    private static final int SIZE = 1024;
+    // space around the text bounds for anti-aliasing
+    private static final int PADDING = 2;
+
+    private static final KeyLabelAtlas sInstance = new KeyLabelAtlas();
+
+    private record LabelKey(String text, Typeface typeface, float textSize, float textScaleX, int color, int flags) {}
+
+    /** Position of a label in the atlas, origin is the start of the baseline relative to the top left of the bounds. */
+    private record Entry(Rect bounds, int originX, int originY, float advance) {}
+
+    private final HashMap<LabelKey, Entry> mEntries = new HashMap<>();
+    private final Canvas mCanvas = new Canvas();
+    private final Paint mPaint = new Paint();
+    private final Rect mTextBounds = new Rect();
+    private final Rect mDrawBounds = new Rect();
+    private Bitmap mBitmap;
+    private int mRowX;
+    private int mRowY;
+    private int mRowHeight;
+
+    private KeyLabelAtlas() {}
+
+    @NonNull
+    public static KeyLabelAtlas getInstance() {
+        return sInstance;
+    }
+
+    /** Removes all labels and frees the bitmap, to be called when fonts or theme change. */
+    public static void clear() {
+        sInstance.reset(true);
+    }
+
+    /**
+     * Draws the text like {@link Canvas#drawText(String, float, float, Paint)} does without shadow layer.
+     * Returns false if the text is too large for the atlas and was not drawn.
+     */
+    public boolean drawText(@NonNull final Canvas canvas, @NonNull final String text, final float x,
+            final float y, @NonNull final Paint paint) {
+        if (Color.alpha(paint.getColor()) == 0) return true;
+        final LabelKey key = new LabelKey(text, paint.getTypeface(), paint.getTextSize(),
+                paint.getTextScaleX(), paint.getColor(), paint.getFlags());
+        Entry entry = mEntries.get(key);
+        if (entry == null) {
+            entry = addEntry(key, paint);
+            if (entry == null) return false;
+        }
+        final float startX = switch (paint.getTextAlign()) {
+            case CENTER -> x - entry.advance() / 2;
+            case RIGHT -> x - entry.advance();
+            default -> x;
+        };
+        final int left = Math.round(startX) - entry.originX();
+        final int top = Math.round(y) - entry.originY();
+        mDrawBounds.set(left, top, left + entry.bounds().width(), top + entry.bounds().height());
+        canvas.drawBitmap(mBitmap, entry.bounds(), mDrawBounds, null);
+        return true;
+    }
+
+    private Entry addEntry(@NonNull final LabelKey key, @NonNull final Paint paint) {
+        mPaint.set(paint);
+        mPaint.setTextAlign(Paint.Align.LEFT);
+        mPaint.getTextBounds(key.text(), 0, key.text().length(), mTextBounds);
+        final int width = mTextBounds.width() + 2 * PADDING;
+        final int height = mTextBounds.height() + 2 * PADDING;
+        if (width > SIZE || height > SIZE) return null;
+
+        if (mBitmap == null) {
+            mBitmap = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+            mCanvas.setBitmap(mBitmap);
+        }
+        if (mRowX + width > SIZE) {
+            mRowX = 0;
+            mRowY += mRowHeight;
+            mRowHeight = 0;
+        }
+        if (mRowY + height > SIZE) {
+            reset(false);
+        }
+        final Rect bounds = new Rect(mRowX, mRowY, mRowX + width, mRowY + height);
+        final int originX = PADDING - mTextBounds.left;
+        final int originY = PADDING - mTextBounds.top;
+        mCanvas.drawText(key.text(), bounds.left + originX, bounds.top + originY, mPaint);
+        final Entry entry = new Entry(bounds, originX, originY, mPaint.measureText(key.text()));
+        mEntries.put(key, entry);
+        mRowX += width;
+        mRowHeight = Math.max(mRowHeight, height);
+        return entry;
+    }
+
+    private void reset(final boolean freeBitmap) {
+        mEntries.clear();
+        mRowX = 0;
+        mRowY = 0;
+        mRowHeight = 0;
+        if (mBitmap == null) return;
+        if (freeBitmap) {
+            mCanvas.setBitmap(null);
+            mBitmap.recycle();
+            mBitmap = null;
+        } else {
+            mBitmap.eraseColor(Color.TRANSPARENT);
+        }
+    }
+}
@@ -8,6 +8,7 @@ package helium314.keyboard.keyboard.internal;
 
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.os.Looper;
 import android.util.AttributeSet;
 import android.util.SparseIntArray;
 
@@ -273,7 +274,11 @@ public class KeyboardParams {
             mMaxPopupKeysKeyboardColumn = keyAttr.getInt(R.styleable.Keyboard_Key_maxPopupKeysColumn, 5);
 
             mThemeId = keyboardAttr.getInt(R.styleable.Keyboard_themeId, 0);
-            mIconsSet.loadIcons(context);
+            // icons are shared with keyboards that are currently drawn, so don't reload them while
+            // building in background, they are loaded on the main thread before prebuilding
+            // (the spell checker builds keyboards on binder threads, possibly before anything loaded icons)
+            if (Looper.myLooper() == Looper.getMainLooper() || mIconsSet.getIconIds().isEmpty())
+                mIconsSet.loadIcons(context);
 
             // touchPositionResId currently is 0 for popups, and touch_position_correction_data_holo for others
             final int touchPositionResId = keyboardAttr.getResourceId(R.styleable.Keyboard_touchPositionCorrectionData, 0);
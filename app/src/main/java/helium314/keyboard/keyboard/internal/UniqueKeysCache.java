@@ -10,7 +10,7 @@ import androidx.annotation.NonNull;
 
 import helium314.keyboard.keyboard.Key;
 
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 public abstract class UniqueKeysCache {
     public abstract void setEnabled(boolean enabled);
@@ -36,12 +36,13 @@ public abstract class UniqueKeysCache {
     }
 
     private static final class UniqueKeysCacheImpl extends UniqueKeysCache {
-        private final HashMap<Key, Key> mCache;
+        // keyboards may be built on several threads at the same time
+        private final ConcurrentHashMap<Key, Key> mCache;
 
-        private boolean mEnabled;
+        private volatile boolean mEnabled;
 
         UniqueKeysCacheImpl() {
-            mCache = new HashMap<>();
+            mCache = new ConcurrentHashMap<>();
         }
 
         @Override
@@ -60,13 +61,12 @@ public abstract class UniqueKeysCache {
             if (!mEnabled) {
                 return key;
             }
-            final Key existingKey = mCache.get(key);
+            final Key existingKey = mCache.putIfAbsent(key, key);
             if (existingKey != null) {
                 // Reuse the existing object that equals to "key" without adding "key" to
                 // the cache.
                 return existingKey;
             }
-            mCache.put(key, key);
             return key;
         }
     }
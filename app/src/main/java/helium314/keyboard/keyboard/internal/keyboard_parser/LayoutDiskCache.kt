@@ -0,0 +1,177 @@
+// SPDX-License-Identifier: GPL-3.0-only
+package helium314.keyboard.keyboard.internal.keyboard_parser
+
+import android.content.Context
+import helium314.keyboard.latin.BuildConfig
+import helium314.keyboard.latin.utils.Log
+import kotlinx.serialization.ExperimentalSerializationApi
+import kotlinx.serialization.KSerializer
+import kotlinx.serialization.descriptors.PolymorphicKind
+import kotlinx.serialization.descriptors.SerialDescriptor
+import kotlinx.serialization.descriptors.getPolymorphicDescriptors
+import kotlinx.serialization.encoding.AbstractDecoder
+import kotlinx.serialization.encoding.AbstractEncoder
+import kotlinx.serialization.encoding.CompositeDecoder
+import kotlinx.serialization.encoding.CompositeEncoder
+import kotlinx.serialization.modules.SerializersModule
+import java.io.ByteArrayOutputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.util.concurrent.ConcurrentHashMap
+import java.util.zip.CRC32
+
+/**
+ * Keeps parsed json layouts in the cache directory in a compact binary format, so they don't need
+ * to be parsed again when the IME process is restarted.
+ * An entry is only used if checksum of the source text, app version and the structure of the serialized
+ * classes match, files are memory-mapped for reading.
+ */
+object LayoutDiskCache {
+    private const val TAG = "LayoutDiskCache"
+    private const val FOLDER = "parsed_layouts"
+    // increase when changing the binary format, changes to serialized classes are detected by descriptorHash
+    private const val FORMAT_VERSION = 2
+    private val descriptorHashes = ConcurrentHashMap<SerialDescriptor, Int>()
+
+    /** Returns the cached result for [source], or the result of [parse], which is then stored in the cache. */
+    fun <T> getOrPut(context: Context, name: String, source: String, serializer: KSerializer<T>, parse: () -> T): T {
+        val checksum = CRC32().apply { update(source.toByteArray()) }.value
+        val file = File(File(context.cacheDir, FOLDER), fileName(name))
+        read(file, checksum, serializer)?.let { return it }
+        val parsed = parse()
+        write(file, checksum, serializer, parsed)
+        return parsed
+    }
+
+    /** Removes entries for [name], including names with a suffix like a "+" for layouts with extra keys. */
+    fun remove(context: Context, name: String) {
+        val prefix = sanitize(name)
+        File(context.cacheDir, FOLDER).listFiles()?.forEach {
+            if (it.name.startsWith(prefix)) it.delete()
+        }
+    }
+
+    internal fun <T> encode(serializer: KSerializer<T>, value: T): ByteArray {
+        val bytes = ByteArrayOutputStream()
+        DataOutputStream(bytes).use { BinaryEncoder(it).encodeSerializableValue(serializer, value) }
+        return bytes.toByteArray()
+    }
+
+    internal fun <T> decode(serializer: KSerializer<T>, buffer: ByteBuffer): T =
+        BinaryDecoder(buffer).decodeSerializableValue(serializer)
+
+    private fun <T> read(file: File, checksum: Long, serializer: KSerializer<T>): T? {
+        if (!file.isFile) return null
+        try {
+            val buffer = RandomAccessFile(file, "r").use { raf ->
+                raf.channel.use { it.map(FileChannel.MapMode.READ_ONLY, 0, it.size()) }
+            }
+            if (buffer.getInt() != FORMAT_VERSION || buffer.getInt() != BuildConfig.VERSION_CODE
+                    || buffer.getInt() != descriptorHash(serializer.descriptor) || buffer.getLong() != checksum)
+                return null
+            return decode(serializer, buffer)
+        } catch (e: Exception) {
+            Log.w(TAG, "could not read ${file.name}", e)
+            return null
+        }
+    }
+
+    private fun <T> write(file: File, checksum: Long, serializer: KSerializer<T>, value: T) {
+        try {
+            val data = encode(serializer, value)
+            file.parentFile?.mkdirs()
+            // write to a temporary file first, so a partially written file is never read
+            val tempFile = File.createTempFile(file.name, null, file.parentFile)
+            DataOutputStream(tempFile.outputStream().buffered()).use {
+                it.writeInt(FORMAT_VERSION)
+                it.writeInt(BuildConfig.VERSION_CODE)
+                it.writeInt(descriptorHash(serializer.descriptor))
+                it.writeLong(checksum)
+                it.write(data)
+            }
+            if (!tempFile.renameTo(file))
+                tempFile.delete()
+        } catch (e: Exception) {
+            Log.w(TAG, "could not write ${file.name}", e)
+        }
+    }
+
+    // descriptors of polymorphic classes don't contain the subclasses, so they are added from the serializers module
+    @OptIn(ExperimentalSerializationApi::class)
+    private fun descriptorHash(descriptor: SerialDescriptor): Int = descriptorHashes.getOrPut(descriptor) {
+        val descriptors = linkedSetOf<String>()
+        fun add(d: SerialDescriptor) {
+            if (!descriptors.add(d.toString())) return
+            for (i in 0 until d.elementsCount)
+                add(d.getElementDescriptor(i))
+            if (d.kind is PolymorphicKind)
+                LayoutParser.florisJsonConfig.serializersModule.getPolymorphicDescriptors(d).forEach { add(it) }
+        }
+        add(descriptor)
+        descriptors.joinToString().hashCode()
+    }
+
+    // names of custom layouts may contain any characters
+    private fun fileName(name: String) = sanitize(name) + "_" + Integer.toHexString(name.hashCode())
+
+    private fun sanitize(name: String) = name.replace("[^A-Za-z0-9_.+-]".toRegex(), "_")
+}
+
+/** Writes values in order without any names, with sizes in front of collections and strings. */
+@OptIn(ExperimentalSerializationApi::class)
+private class BinaryEncoder(private val output: DataOutputStream) : AbstractEncoder() {
+    override val serializersModule: SerializersModule = LayoutParser.florisJsonConfig.serializersModule
+
+    override fun encodeBoolean(value: Boolean) = output.writeBoolean(value)
+    override fun encodeByte(value: Byte) = output.writeByte(value.toInt())
+    override fun encodeShort(value: Short) = output.writeShort(value.toInt())
+    override fun encodeInt(value: Int) = output.writeInt(value)
+    override fun encodeLong(value: Long) = output.writeLong(value)
+    override fun encodeFloat(value: Float) = output.writeFloat(value)
+    override fun encodeDouble(value: Double) = output.writeDouble(value)
+    override fun encodeChar(value: Char) = output.writeChar(value.code)
+    override fun encodeString(value: String) {
+        val bytes = value.toByteArray()
+        output.writeInt(bytes.size)
+        output.write(bytes)
+    }
+    override fun encodeEnum(enumDescriptor: SerialDescriptor, index: Int) = output.writeInt(index)
+    override fun encodeNull() = encodeBoolean(false)
+    override fun encodeNotNullMark() = encodeBoolean(true)
+
+    override fun beginCollection(descriptor: SerialDescriptor, collectionSize: Int): CompositeEncoder {
+        encodeInt(collectionSize)
+        return this
+    }
+}
+
+@OptIn(ExperimentalSerializationApi::class)
+private class BinaryDecoder(private val buffer: ByteBuffer, private var elementsCount: Int = 0) : AbstractDecoder() {
+    private var elementIndex = 0
+    override val serializersModule: SerializersModule = LayoutParser.florisJsonConfig.serializersModule
+
+    override fun decodeBoolean() = buffer.get() != 0.toByte()
+    override fun decodeByte() = buffer.get()
+    override fun decodeShort() = buffer.getShort()
+    override fun decodeInt() = buffer.getInt()
+    override fun decodeLong() = buffer.getLong()
+    override fun decodeFloat() = buffer.getFloat()
+    override fun decodeDouble() = buffer.getDouble()
+    override fun decodeChar() = buffer.getChar()
+    override fun decodeString(): String {
+        val bytes = ByteArray(buffer.getInt())
+        buffer.get(bytes)
+        return String(bytes)
+    }
+    override fun decodeEnum(enumDescriptor: SerialDescriptor) = buffer.getInt()
+    override fun decodeNotNullMark() = decodeBoolean()
+
+    override fun decodeSequentially() = true
+    override fun decodeCollectionSize(descriptor: SerialDescriptor) = buffer.getInt().also { elementsCount = it }
+    override fun decodeElementIndex(descriptor: SerialDescriptor): Int =
+        if (elementIndex == elementsCount) CompositeDecoder.DECODE_DONE else elementIndex++
+    override fun beginStructure(descriptor: SerialDescriptor): CompositeDecoder = BinaryDecoder(buffer, descriptor.elementsCount)
+}
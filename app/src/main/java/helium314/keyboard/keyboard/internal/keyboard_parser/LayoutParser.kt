@@ -22,15 +22,20 @@ import helium314.keyboard.latin.utils.LayoutType
 import helium314.keyboard.latin.utils.LayoutUtils
 import helium314.keyboard.latin.utils.LayoutUtilsCustom
 import helium314.keyboard.latin.utils.Log
+import helium314.keyboard.latin.utils.StartupSnapshot
 import helium314.keyboard.latin.utils.prefs
 import kotlinx.serialization.ExperimentalSerializationApi
+import kotlinx.serialization.PolymorphicSerializer
+import kotlinx.serialization.builtins.ListSerializer
 import kotlinx.serialization.json.Json
 import kotlinx.serialization.modules.SerializersModule
 import kotlinx.serialization.modules.polymorphic
+import java.util.concurrent.ConcurrentHashMap
 
 object LayoutParser {
     private const val TAG = "LayoutParser"
-    private val layoutCache = hashMapOf<String, (KeyboardParams) -> MutableList<MutableList<KeyData>>>()
+    // keyboards may be built on several threads at the same time
+    private val layoutCache = ConcurrentHashMap<String, (KeyboardParams) -> MutableList<MutableList<KeyData>>>()
 
     fun clearCache() = layoutCache.clear()
 
@@ -40,10 +45,16 @@ object LayoutParser {
         val layoutName = if (layoutType == LayoutType.MAIN) params.mId.mSubtype.mainLayoutName
             else params.mId.mSubtype.layouts[layoutType] ?: Settings.readDefaultLayoutName(layoutType, context.prefs())
         return layoutCache.getOrPut(layoutType.name + layoutName) {
+            StartupSnapshot.layoutUsed(layoutType, layoutName)
             createCacheLambda(layoutType, layoutName, context)
         }(params)
     }
 
+    /** Parses the layout without creating keys, so it's already cached when the keyboard is created. */
+    fun preloadLayout(layoutType: LayoutType, layoutName: String, context: Context) {
+        layoutCache.getOrPut(layoutType.name + layoutName) { createCacheLambda(layoutType, layoutName, context) }
+    }
+
     /**
      *  Parse for json layout files as used in FlorisBoard, see floris directory for classes taken from FlorisBoard.
      *  Some differences to the FlorisBoard keys:
@@ -76,7 +87,8 @@ object LayoutParser {
         val layoutFileContent = getLayoutFileContent(layoutType, layoutName.substringBefore("+"), context).trimStart()
         if (layoutFileContent.startsWith("[") || (LayoutUtilsCustom.isCustomLayout(layoutName) && layoutFileContent.startsWith("//"))) {
             try {
-                val florisKeyData = parseJsonString(layoutFileContent, false)
+                val florisKeyData = LayoutDiskCache.getOrPut(context, diskCacheName(layoutType, layoutName), layoutFileContent,
+                    jsonLayoutSerializer) { parseJsonString(layoutFileContent, false) }
                 return { params ->
                     florisKeyData.mapTo(mutableListOf()) { row ->
                         row.mapNotNullTo(mutableListOf()) { it.compute(params) }
@@ -87,6 +99,7 @@ object LayoutParser {
             }
         }
         // not a json, or invalid json
+        // not stored in LayoutDiskCache, simple layouts are only split on whitespace
         val simpleKeyData = parseSimpleString(layoutFileContent)
         return { params ->
             simpleKeyData.mapIndexedTo(mutableListOf()) { i, row ->
@@ -98,6 +111,12 @@ object LayoutParser {
         }
     }
 
+    /** Removes the parsed layout from [LayoutDiskCache], to be called when a custom layout is deleted. */
+    fun removeFromDiskCache(layoutType: LayoutType, layoutName: String, context: Context) =
+        LayoutDiskCache.remove(context, diskCacheName(layoutType, layoutName))
+
+    private fun diskCacheName(layoutType: LayoutType, layoutName: String) = "json_${layoutType.name}_$layoutName"
+
     private fun getLayoutFileContent(layoutType: LayoutType, layoutName: String, context: Context): String {
         if (LayoutUtilsCustom.isCustomLayout(layoutName))
             LayoutUtilsCustom.getLayoutFiles(layoutType, context)
@@ -105,6 +124,8 @@ object LayoutParser {
         return LayoutUtils.getContent(layoutType, layoutName, context)
     }
 
+    private val jsonLayoutSerializer = ListSerializer(ListSerializer(PolymorphicSerializer(AbstractKeyData::class)))
+
     // allow commenting lines by starting them with "//"
     private fun String.stripCommentLines(): String =
         split("\n").filterNot { it.startsWith("//") }.joinToString("\n")
@@ -115,7 +136,7 @@ object LayoutParser {
      * SPDX-License-Identifier: Apache-2.0
      */
     @OptIn(ExperimentalSerializationApi::class)
-    private val florisJsonConfig = Json {
+    internal val florisJsonConfig = Json {
         allowTrailingComma = true
         classDiscriminator = "$"
         encodeDefaults = true
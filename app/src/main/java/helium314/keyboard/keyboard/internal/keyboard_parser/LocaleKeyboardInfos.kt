@@ -15,6 +15,7 @@ import helium314.keyboard.latin.utils.SpacedTokens
 import helium314.keyboard.latin.utils.SubtypeLocaleUtils
 import java.io.InputStream
 import java.util.Locale
+import java.util.concurrent.ConcurrentHashMap
 
 class LocaleKeyboardInfos(dataStream: InputStream?, locale: Locale) {
     private val popupKeys = hashMapOf<String, MutableCollection<String>>()
@@ -234,7 +235,8 @@ private fun getStreamForLocale(locale: Locale, context: Context) =
 fun clearCache() = localeKeyboardInfosCache.clear()
 
 // cache the texts, so they don't need to be read over and over
-private val localeKeyboardInfosCache = hashMapOf<String, LocaleKeyboardInfos>()
+// keyboards may be built on several threads at the same time
+private val localeKeyboardInfosCache = ConcurrentHashMap<String, LocaleKeyboardInfos>()
 
 private const val READER_MODE_NONE = 0
 private const val READER_MODE_POPUP_KEYS = 1
@@ -8,22 +8,31 @@ import helium314.keyboard.latin.settings.Defaults
 import helium314.keyboard.latin.settings.Settings
 import helium314.keyboard.latin.utils.LayoutUtilsCustom
 import helium314.keyboard.latin.utils.Log
+import helium314.keyboard.latin.utils.StartupSnapshot
+import helium314.keyboard.latin.utils.StartupTracer
 import helium314.keyboard.latin.utils.SubtypeSettings
 
 class App : Application() {
     override fun onCreate() {
         super.onCreate()
+        val start = StartupTracer.begin()
         DebugFlags.init(this)
-        Settings.init(this)
-        SubtypeSettings.init(this)
+        StartupTracer.trace("StartupSnapshot.restore") { StartupSnapshot.restore(this) }
+        StartupTracer.trace("Settings.init") { Settings.init(this) }
+        StartupTracer.trace("SubtypeSettings.init") { SubtypeSettings.init(this) }
         RichInputMethodManager.init(this)
 
-        AppUpgrade.checkVersionUpgrade(this)
-        AppUpgrade.transferOldPinnedClips(this) // todo: remove in a few months, maybe mid 2026
+        StartupTracer.trace("AppUpgrade") {
+            AppUpgrade.checkVersionUpgrade(this)
+            AppUpgrade.transferOldPinnedClips(this) // todo: remove in a few months, maybe mid 2026
+        }
         app = this
-        Defaults.initDynamicDefaults(this)
+        StartupTracer.trace("Defaults.initDynamicDefaults") { Defaults.initDynamicDefaults(this) }
         LayoutUtilsCustom.removeMissingLayouts(this) // only after version upgrade
-        SupportedEmojis.load(this)
+        StartupTracer.trace("SupportedEmojis.load") { SupportedEmojis.load(this) }
+        StartupSnapshot.preloadLayouts(this)
+        StartupSnapshot.finishRestore()
+        StartupTracer.end("App.onCreate", start)
 
         val packageInfo = packageManager.getPackageInfo(packageName, 0)
         @Suppress("DEPRECATION")
@@ -61,6 +61,19 @@ public interface DictionaryFacilitator {
         void onUpdateMainDictionaryAvailability(boolean isMainDictionaryAvailable);
     }
 
+    interface UserHistoryListener {
+        /** Called after a word following the ngramContext was learned or unlearned. */
+        void onUserHistoryChanged(@NonNull NgramContext ngramContext);
+    }
+
+    void setUserHistoryListener(@Nullable UserHistoryListener listener);
+
+    /**
+     * Changes whenever dictionaries are replaced or changed in a way that may affect suggestions
+     * for any context. Changes by learning are reported to the {@link UserHistoryListener} instead.
+     */
+    int getDictionariesGeneration();
+
     /**
      * Called every time {@link LatinIME} starts on a new text field.
      * <p>
@@ -140,6 +153,13 @@ public interface DictionaryFacilitator {
             final SettingsValuesForSuggestion settingsValuesForSuggestion, final int sessionId,
             final int inputStyle);
 
+    /**
+     * Asks running {@link #getSuggestionResults} calls to return as soon as possible.
+     * Results of cancelled calls are incomplete and should be discarded. Calls started after
+     * this method returned are not affected.
+     */
+    void cancelSuggestionResults();
+
     boolean isValidSpellingWord(final String word);
 
     boolean isValidSuggestionWord(final String word);
@@ -7,6 +7,7 @@ package helium314.keyboard.latin
 
 import android.Manifest
 import android.content.Context
+import android.os.SystemClock
 import android.provider.UserDictionary
 import android.util.LruCache
 import helium314.keyboard.keyboard.Keyboard
@@ -31,7 +32,9 @@ import helium314.keyboard.latin.permissions.PermissionsUtil
 import helium314.keyboard.latin.personalization.UserHistoryDictionary
 import helium314.keyboard.latin.settings.Settings
 import helium314.keyboard.latin.settings.SettingsValuesForSuggestion
+import helium314.keyboard.latin.utils.LatencyTracer
 import helium314.keyboard.latin.utils.Log
+import helium314.keyboard.latin.utils.StartupTracer
 import helium314.keyboard.latin.utils.SubtypeSettings
 import helium314.keyboard.latin.utils.SuggestionResults
 import helium314.keyboard.latin.utils.getSecondaryLocales
@@ -39,6 +42,7 @@ import helium314.keyboard.latin.utils.locale
 import helium314.keyboard.latin.utils.prefs
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.joinAll
 import kotlinx.coroutines.launch
 import java.io.File
 import java.io.IOException
@@ -46,6 +50,7 @@ import java.util.Locale
 import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.CountDownLatch
 import java.util.concurrent.TimeUnit
+import kotlin.math.max
 
 /**
  * Facilitates interaction with different kinds of dictionaries. Provides APIs
@@ -62,6 +67,14 @@ class DictionaryFacilitatorImpl : DictionaryFacilitator {
     @Volatile
     private var mLatchForWaitingLoadingMainDictionaries = CountDownLatch(0)
 
+    @Volatile
+    private var dictionaryGeneration = 0
+    private var userHistoryListener: DictionaryFacilitator.UserHistoryListener? = null
+
+    // incremented on cancelSuggestionResults, running getSuggestionResults calls stop when it changes
+    @Volatile
+    private var suggestionCancelGeneration = 0
+
     // The library does not deal well with ngram history for auto-capitalized words, so we adjust
     // the ngram context to store next word suggestions for such cases.
     // todo: this is awful, find a better solution / workaround
@@ -88,6 +101,12 @@ class DictionaryFacilitatorImpl : DictionaryFacilitator {
         mValidSpellingWordWriteCache = cache
     }
 
+    override fun setUserHistoryListener(listener: DictionaryFacilitator.UserHistoryListener?) {
+        userHistoryListener = listener
+    }
+
+    override fun getDictionariesGeneration() = dictionaryGeneration
+
     // judging by usage before adding multilingual typing, this should check primary group locale only
     override fun isForLocale(locale: Locale?): Boolean {
         return locale != null && locale == dictionaryGroups[0].locale
@@ -136,6 +155,7 @@ class DictionaryFacilitatorImpl : DictionaryFacilitator {
         listener: DictionaryInitializationListener?
     ) {
         Log.i(TAG, "resetDictionaries, force reloading main dictionary: $forceReloadMainDictionary")
+        val startNanos = StartupTracer.begin()
 
         val locales = getUsedLocales(newLocale, context)
 
@@ -170,8 +190,10 @@ class DictionaryFacilitatorImpl : DictionaryFacilitator {
             }
         }
 
+        dictionaryGeneration++
         mValidSpellingWordWriteCache?.evictAll()
         mValidSpellingWordReadCache?.evictAll()
+        StartupTracer.end("DictionaryFacilitatorImpl.resetDictionaries", startNanos)
     }
 
     /** creates dictionaryGroups for [newLocales] with given [newSubDictTypes], trying to re-use existing dictionaries.
@@ -238,22 +260,24 @@ class DictionaryFacilitatorImpl : DictionaryFacilitator {
         scope.launch {
             try {
                 val useEmojiDict = Settings.getValues().mSuggestEmojis
-                val dictGroupsWithNewMainDict = locales.mapNotNull {
+                val dictGroups = locales.mapNotNull {
                     val dictionaryGroup = findDictionaryGroupWithLocale(dictionaryGroups, it)
-                    if (dictionaryGroup == null) {
-                        Log.w(TAG, "Expected a dictionary group for $it but none found")
-                        return@mapNotNull null // This should never happen
-                    }
-                    if (dictionaryGroup.getDict(Dictionary.TYPE_MAIN)?.isInitialized == true) null
-                    else dictionaryGroup to DictionaryFactory.createMainDictionaryCollection(context, it, useEmojiDict)
+                    if (dictionaryGroup == null)
+                        Log.w(TAG, "Expected a dictionary group for $it but none found") // This should never happen
+                    dictionaryGroup
                 }
-                synchronized(this) {
-                    dictGroupsWithNewMainDict.forEach { (dictGroup, mainDict) ->
-                        dictGroup.setMainDict(mainDict)
-                    }
+                // The first group is the one for the current subtype and used for most suggestions, so it's
+                // loaded first, without competing with other dictionaries. Then the other main dictionaries
+                // are loaded in parallel, and the sub-dictionaries are loaded on the dictionary executor.
+                // Each dictionary is available as soon as it's loaded, so we can show suggestions early.
+                dictGroups.firstOrNull()?.let { loadMainDictionary(it, context, useEmojiDict, listener) }
+                for (dictGroup in dictGroups) {
+                    for (dictType in DictionaryFacilitator.DYNAMIC_DICTIONARY_TYPES)
+                        dictGroup.getSubDict(dictType)?.reloadDictionaryIfRequired()
                 }
-
-                listener?.onUpdateMainDictionaryAvailability(hasAtLeastOneInitializedMainDictionary())
+                dictGroups.drop(1).map {
+                    launch { loadMainDictionary(it, context, useEmojiDict, listener) }
+                }.joinAll()
                 latchForWaitingLoadingMainDictionary.countDown()
             } catch (e: Throwable) {
                 Log.e(TAG, "could not initialize main dictionaries for $locales", e)
@@ -261,12 +285,32 @@ class DictionaryFacilitatorImpl : DictionaryFacilitator {
         }
     }
 
+    private fun loadMainDictionary(
+        dictGroup: DictionaryGroup, context: Context, useEmojiDict: Boolean, listener: DictionaryInitializationListener?
+    ) {
+        if (dictGroup.getDict(Dictionary.TYPE_MAIN)?.isInitialized == true) return
+        val mainDict = try {
+            StartupTracer.trace("Main dictionary ${dictGroup.locale}") {
+                DictionaryFactory.createMainDictionaryCollection(context, dictGroup.locale, useEmojiDict)
+            }
+        } catch (e: Exception) {
+            Log.e(TAG, "could not initialize main dictionary for ${dictGroup.locale}", e)
+            return
+        }
+        synchronized(this) {
+            dictGroup.setMainDict(mainDict)
+            dictionaryGeneration++
+        }
+        listener?.onUpdateMainDictionaryAvailability(hasAtLeastOneInitializedMainDictionary())
+    }
+
     override fun closeDictionaries() {
         onFinishInput() // the dictionaries will save updates to file
         val dictionaryGroupsToClose: List<DictionaryGroup>
         synchronized(this) {
             dictionaryGroupsToClose = dictionaryGroups
             dictionaryGroups = listOf(DictionaryGroup())
+            dictionaryGeneration++
         }
         for (dictionaryGroup in dictionaryGroupsToClose) {
             for (dictType in DictionaryFacilitator.ALL_DICTIONARY_TYPES) {
@@ -387,7 +431,10 @@ class DictionaryFacilitatorImpl : DictionaryFacilitator {
         // We demote unrecognized words (frequency <= 0) by specifying them as "invalid".
         // We don't add words with 0-frequency (assuming they would be profanity etc.).
         val isValid = mainFreq > 0
-        UserHistoryDictionary.addToDictionary(userHistoryDictionary, ngramContext, wordToUse, isValid, timeStampInSeconds)
+        // learning is applied in batches, so notify only once the word is actually in the dictionary
+        UserHistoryDictionary.addToDictionary(userHistoryDictionary, ngramContext, wordToUse, isValid, timeStampInSeconds) {
+            userHistoryListener?.onUserHistoryChanged(ngramContext)
+        }
     }
 
     private fun addToPersonalDictionaryIfInvalidButInHistory(word: String) {
@@ -468,6 +515,7 @@ class DictionaryFacilitatorImpl : DictionaryFacilitator {
         // TODO: Decide whether or not to remove the word on EVENT_BACKSPACE.
         if (eventType != Constants.EVENT_BACKSPACE) {
             currentlyPreferredDictionaryGroup.getSubDict(Dictionary.TYPE_USER_HISTORY)?.removeUnigramEntryDynamically(word)
+            userHistoryListener?.onUserHistoryChanged(ngramContext)
         }
 
         // Update the spelling cache after unlearning. Words that are removed from user history
@@ -475,29 +523,60 @@ class DictionaryFacilitatorImpl : DictionaryFacilitator {
         putWordIntoValidSpellingWordCache("unlearnFromUserHistory", word.lowercase(Locale.getDefault()))
     }
 
+    override fun cancelSuggestionResults() {
+        suggestionCancelGeneration++
+        for (dictGroup in dictionaryGroups) {
+            DictionaryFacilitator.ALL_DICTIONARY_TYPES.forEach { dictGroup.getDict(it)?.cancelSuggestions() }
+        }
+    }
+
     // TODO: Revise the way to fusion suggestion results.
     override fun getSuggestionResults(
         composedData: ComposedData, ngramContext: NgramContext, keyboard: Keyboard,
         settingsValuesForSuggestion: SettingsValuesForSuggestion, sessionId: Int, inputStyle: Int
     ): SuggestionResults {
+        val traceStart = LatencyTracer.begin()
         val proximityInfoHandle = keyboard.proximityInfo.nativeProximityInfo
         val weightOfLangModelVsSpatialModel = floatArrayOf(Dictionary.NOT_A_WEIGHT_OF_LANG_MODEL_VS_SPATIAL_MODEL)
 
-        val waitForOtherDicts = if (dictionaryGroups.size == 1) null else CountDownLatch(dictionaryGroups.size - 1)
-        val suggestionsArray = Array<List<SuggestedWordInfo>?>(dictionaryGroups.size) { null }
-        for (i in 1..dictionaryGroups.lastIndex) {
+        val cancelGeneration = suggestionCancelGeneration
+        val deadline = SystemClock.uptimeMillis() +
+            if (composedData.mIsBatchMode) SECONDARY_GROUPS_DEADLINE_MILLIS_BATCH else SECONDARY_GROUPS_DEADLINE_MILLIS
+        val groups = dictionaryGroups
+        // Reset only after reading cancelGeneration: a cancel arriving before the reset is noticed
+        // by the generation check in getSuggestions, and one arriving later stops the native search.
+        for (group in groups) {
+            DictionaryFacilitator.ALL_DICTIONARY_TYPES.forEach { group.getDict(it)?.resetSuggestionsCancellation() }
+        }
+        val searches = (1..groups.lastIndex).map { i ->
+            val latestSearch = groups[i].latestSearch
+            // a search that missed its deadline is still running, don't use the same dictionaries concurrently
+            if (latestSearch != null && !latestSearch.isDone) return@map latestSearch
+            val search = SecondaryGroupSearch(composedData, ngramContext)
+            groups[i].latestSearch = search
             scope.launch {
-                suggestionsArray[i] = getSuggestions(composedData, ngramContext, settingsValuesForSuggestion, sessionId,
-                    proximityInfoHandle, weightOfLangModelVsSpatialModel, dictionaryGroups[i])
-                waitForOtherDicts?.countDown()
+                var suggestions: List<SuggestedWordInfo>? = null
+                try {
+                    suggestions = getSuggestions(composedData, ngramContext, settingsValuesForSuggestion, sessionId,
+                        proximityInfoHandle, weightOfLangModelVsSpatialModel, groups[i], cancelGeneration)
+                } finally {
+                    search.finish(suggestions, cancelGeneration == suggestionCancelGeneration, groups[i])
+                }
             }
+            search
         }
+        val suggestionsArray = Array<List<SuggestedWordInfo>?>(groups.size) { null }
         suggestionsArray[0] = getSuggestions(composedData, ngramContext, settingsValuesForSuggestion, sessionId,
-            proximityInfoHandle, weightOfLangModelVsSpatialModel, dictionaryGroups[0])
+            proximityInfoHandle, weightOfLangModelVsSpatialModel, groups[0], cancelGeneration)
         val suggestionResults = SuggestionResults(
             SuggestedWords.MAX_SUGGESTIONS, ngramContext.isBeginningOfSentenceContext, false
         )
-        waitForOtherDicts?.await()
+        // Use results of slow groups if they are available in time, otherwise use results from the
+        // last complete search of that group if it was for an earlier state of the same word.
+        searches.forEachIndexed { index, search ->
+            search.awaitUntil(deadline)
+            suggestionsArray[index + 1] = groups[index + 1].lastCompleteSearch?.getSuggestionsFor(composedData, ngramContext)
+        }
 
         suggestionsArray.forEach {
             if (it == null) return@forEach
@@ -507,17 +586,20 @@ class DictionaryFacilitatorImpl : DictionaryFacilitator {
 
         includeAtLeastTwoWordSuggestions(suggestionResults, suggestionsArray, composedData.mTypedWord)
 
+        LatencyTracer.end(LatencyTracer.STAGE_DICTIONARIES, traceStart)
         return suggestionResults
     }
 
     private fun getSuggestions(
         composedData: ComposedData, ngramContext: NgramContext,
         settingsValuesForSuggestion: SettingsValuesForSuggestion, sessionId: Int,
-        proximityInfoHandle: Long, weightOfLangModelVsSpatialModel: FloatArray, dictGroup: DictionaryGroup
+        proximityInfoHandle: Long, weightOfLangModelVsSpatialModel: FloatArray, dictGroup: DictionaryGroup,
+        cancelGeneration: Int
     ): List<SuggestedWordInfo> {
         val suggestions = ArrayList<SuggestedWordInfo>()
         val weightForLocale = dictGroup.getWeightForLocale(dictionaryGroups, composedData.mIsBatchMode)
         for (dictType in DictionaryFacilitator.ALL_DICTIONARY_TYPES) {
+            if (cancelGeneration != suggestionCancelGeneration) break // results will be discarded anyway
             val dictionary = dictGroup.getDict(dictType) ?: continue
             val dictionarySuggestions = dictionary.getSuggestions(composedData, ngramContext, proximityInfoHandle,
                 settingsValuesForSuggestion, sessionId, weightForLocale, weightOfLangModelVsSpatialModel
@@ -580,12 +662,14 @@ class DictionaryFacilitatorImpl : DictionaryFacilitator {
         for (dictionaryGroup in dictionaryGroups) {
             dictionaryGroup.removeWord(word)
         }
+        dictionaryGeneration++
     }
 
     override fun clearUserHistoryDictionary(context: Context) {
         for (dictionaryGroup in dictionaryGroups) {
             dictionaryGroup.getSubDict(Dictionary.TYPE_USER_HISTORY)?.clear()
         }
+        dictionaryGeneration++
     }
 
     override fun localesAndConfidences(): String? {
@@ -615,6 +699,12 @@ class DictionaryFacilitatorImpl : DictionaryFacilitator {
         // HACK: This threshold is being used when adding a capitalized entry in the User History dictionary.
         private const val CAPITALIZED_FORM_MAX_PROBABILITY_FOR_INSERT = 140
 
+        // How long to wait for suggestions from groups other than the first one, measured from the
+        // start of getSuggestionResults. Must be lower than Constants.GET_SUGGESTED_WORDS_TIMEOUT.
+        private const val SECONDARY_GROUPS_DEADLINE_MILLIS = 120L
+        // gesture input is slower, and the tail batch result is committed directly
+        private const val SECONDARY_GROUPS_DEADLINE_MILLIS_BATCH = 400L
+
         private fun createSubDict(
             dictType: String, context: Context, locale: Locale, dictFile: File?, dictNamePrefix: String
         ): ExpandableBinaryDictionary? {
@@ -702,6 +792,10 @@ private class DictionaryGroup(
 ) {
     private val subDicts: ConcurrentHashMap<String, ExpandableBinaryDictionary> = ConcurrentHashMap(subDicts)
 
+    // only used for groups that are not the first one, see DictionaryFacilitatorImpl.getSuggestionResults
+    @Volatile var latestSearch: SecondaryGroupSearch? = null
+    @Volatile var lastCompleteSearch: SecondaryGroupSearch? = null
+
     /** Removes a word from all dictionaries in this group. If the word is in a read-only dictionary, it is blacklisted. */
     fun removeWord(word: String) {
         // remove from user history
@@ -870,3 +964,36 @@ private class DictionaryGroup(
         const val MAX_CONFIDENCE = 2
     }
 }
+
+/** Suggestions of a dictionary group other than the first, computed in the background. */
+private class SecondaryGroupSearch(private val composedData: ComposedData, private val ngramContext: NgramContext) {
+    private val done = CountDownLatch(1)
+    private var suggestions: List<SuggestedWordInfo> = emptyList()
+
+    val isDone get() = done.count == 0L
+
+    /** [suggestions] is null if the search failed */
+    fun finish(suggestions: List<SuggestedWordInfo>?, isComplete: Boolean, group: DictionaryGroup) {
+        this.suggestions = suggestions ?: emptyList()
+        if (suggestions != null && isComplete) // cancelled searches may be missing results
+            group.lastCompleteSearch = this
+        done.countDown()
+    }
+
+    fun awaitUntil(deadline: Long) {
+        done.await(max(0L, deadline - SystemClock.uptimeMillis()), TimeUnit.MILLISECONDS)
+    }
+
+    /**
+     * Returns the suggestions if they can be used for the given input: either it's the input of this
+     * search, or the user typed more letters of the same word since. In the latter case only words
+     * that still match the typed word are returned.
+     */
+    fun getSuggestionsFor(composedData: ComposedData, ngramContext: NgramContext): List<SuggestedWordInfo>? {
+        if (composedData === this.composedData) return suggestions
+        if (composedData.mIsBatchMode || this.composedData.mIsBatchMode || ngramContext != this.ngramContext
+            || !composedData.mTypedWord.startsWith(this.composedData.mTypedWord))
+            return null
+        return suggestions.filter { it.word.startsWith(composedData.mTypedWord, true) }
+    }
+}
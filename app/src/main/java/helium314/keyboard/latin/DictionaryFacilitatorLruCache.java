@@ -6,34 +6,57 @@
 
 package helium314.keyboard.latin;
 
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import helium314.keyboard.latin.utils.Log;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Cache for dictionary facilitators of multiple locales.
- * This class automatically creates and releases up to 3 facilitator instances using LRU policy.
+ * This class automatically creates and releases up to 3 facilitator instances using LRU policy
+ * (2 on low RAM devices), and releases facilitators when the system asks to trim memory.
+ * Facilitators returned by {@link #acquire(Locale)} are not closed until they are passed to
+ * {@link #release(DictionaryFacilitator)}, so the cache may be larger while they are in use.
  */
 public class DictionaryFacilitatorLruCache {
     private static final String TAG = "DictFacilitatorLruCache";
     private static final int WAIT_FOR_LOADING_MAIN_DICT_IN_MILLISECONDS = 1000;
     private static final int MAX_RETRY_COUNT_FOR_WAITING_FOR_LOADING_DICT = 5;
+    private static final int MAX_CACHE_SIZE = 3;
+    private static final int MAX_CACHE_SIZE_LOW_RAM = 2;
 
     private final Context mContext;
     private final String mDictionaryNamePrefix;
     private final Object mLock = new Object();
-    private final DictionaryFacilitator mDictionaryFacilitator;
+    private final int mMaxSize;
+    // access-ordered, so the first entry is the least recently used one
+    private final LinkedHashMap<Locale, CachedFacilitator> mCachedDictionaryFacilitators =
+            new LinkedHashMap<>(MAX_CACHE_SIZE + 1, 0.75f, true);
+
+    private static final class CachedFacilitator {
+        final DictionaryFacilitator mDictionaryFacilitator;
+        // number of acquired and not yet released uses, the facilitator must not be closed while > 0
+        int mUseCount;
+
+        CachedFacilitator(final DictionaryFacilitator dictionaryFacilitator) {
+            mDictionaryFacilitator = dictionaryFacilitator;
+        }
+    }
     private boolean mUseContactsDictionary;
     private boolean mUseAppsDictionary;
-    private Locale mLocale;
 
     public DictionaryFacilitatorLruCache(final Context context, final String dictionaryNamePrefix) {
         mContext = context;
         mDictionaryNamePrefix = dictionaryNamePrefix;
-        mDictionaryFacilitator = DictionaryFacilitatorProvider.getDictionaryFacilitator(
-                true /* isNeededForSpellChecking */);
+        final ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        mMaxSize = am != null && am.isLowRamDevice() ? MAX_CACHE_SIZE_LOW_RAM : MAX_CACHE_SIZE;
     }
 
     private static void waitForLoadingMainDictionary(
@@ -55,12 +78,34 @@ public class DictionaryFacilitatorLruCache {
         }
     }
 
-    private void resetDictionariesForLocaleLocked() {
-        // Nothing to do if the locale is null.  This would be the case before any get() calls.
-        if (mLocale != null) {
-          // Note: Given that personalized dictionaries are not used here; we can pass null account.
-          mDictionaryFacilitator.resetDictionaries(mContext, mLocale, mUseContactsDictionary,
-                  mUseAppsDictionary, false, false, mDictionaryNamePrefix, null);
+    private void resetDictionariesForLocaleLocked(final DictionaryFacilitator dictionaryFacilitator,
+            final Locale locale) {
+        // Note: Given that personalized dictionaries are not used here; we can pass null account.
+        dictionaryFacilitator.resetDictionaries(mContext, locale, mUseContactsDictionary,
+                mUseAppsDictionary, false, false, mDictionaryNamePrefix, null);
+    }
+
+    private void resetAllDictionariesLocked() {
+        for (final Map.Entry<Locale, CachedFacilitator> entry : mCachedDictionaryFacilitators.entrySet()) {
+            resetDictionariesForLocaleLocked(entry.getValue().mDictionaryFacilitator, entry.getKey());
+        }
+        for (final CachedFacilitator cachedFacilitator : mCachedDictionaryFacilitators.values()) {
+            waitForLoadingMainDictionary(cachedFacilitator.mDictionaryFacilitator);
+        }
+    }
+
+    /** Closes least recently used facilitators that are not in use until at most maxSize remain, if possible. */
+    private void trimToSizeLocked(final int maxSize) {
+        final Iterator<Map.Entry<Locale, CachedFacilitator>> iterator =
+                mCachedDictionaryFacilitators.entrySet().iterator();
+        while (mCachedDictionaryFacilitators.size() > maxSize && iterator.hasNext()) {
+            final Map.Entry<Locale, CachedFacilitator> eldest = iterator.next();
+            if (eldest.getValue().mUseCount > 0) {
+                continue;
+            }
+            iterator.remove();
+            Log.i(TAG, "Closing dictionaries for " + eldest.getKey());
+            eldest.getValue().mDictionaryFacilitator.closeDictionaries();
         }
     }
 
@@ -71,8 +116,7 @@ public class DictionaryFacilitatorLruCache {
                 return;
             }
             mUseContactsDictionary = useContactsDictionary;
-            resetDictionariesForLocaleLocked();
-            waitForLoadingMainDictionary(mDictionaryFacilitator);
+            resetAllDictionariesLocked();
         }
     }
 
@@ -83,25 +127,75 @@ public class DictionaryFacilitatorLruCache {
                 return;
             }
             mUseAppsDictionary = useAppsDictionary;
-            resetDictionariesForLocaleLocked();
-            waitForLoadingMainDictionary(mDictionaryFacilitator);
+            resetAllDictionariesLocked();
+        }
+    }
+
+    /**
+     * Returns the facilitator for the locale, which must be passed to {@link #release(DictionaryFacilitator)}
+     * when it's not used any more.
+     */
+    public DictionaryFacilitator acquire(final Locale locale) {
+        synchronized (mLock) {
+            CachedFacilitator cachedFacilitator = mCachedDictionaryFacilitators.get(locale);
+            if (cachedFacilitator == null) {
+                trimToSizeLocked(mMaxSize - 1);
+                final DictionaryFacilitator dictionaryFacilitator = DictionaryFacilitatorProvider.getDictionaryFacilitator(
+                        true /* isNeededForSpellChecking */);
+                resetDictionariesForLocaleLocked(dictionaryFacilitator, locale);
+                cachedFacilitator = new CachedFacilitator(dictionaryFacilitator);
+                mCachedDictionaryFacilitators.put(locale, cachedFacilitator);
+            }
+            cachedFacilitator.mUseCount++;
+            waitForLoadingMainDictionary(cachedFacilitator.mDictionaryFacilitator);
+            return cachedFacilitator.mDictionaryFacilitator;
         }
     }
 
-    public DictionaryFacilitator get(final Locale locale) {
+    /** Releases a facilitator returned by {@link #acquire(Locale)}, so it can be closed if the cache is too large. */
+    public void release(final DictionaryFacilitator dictionaryFacilitator) {
         synchronized (mLock) {
-            if (!mDictionaryFacilitator.isForLocale(locale)) {
-                mLocale = locale;
-                resetDictionariesForLocaleLocked();
+            for (final CachedFacilitator cachedFacilitator : mCachedDictionaryFacilitators.values()) {
+                if (cachedFacilitator.mDictionaryFacilitator == dictionaryFacilitator) {
+                    cachedFacilitator.mUseCount--;
+                    break;
+                }
             }
-            waitForLoadingMainDictionary(mDictionaryFacilitator);
-            return mDictionaryFacilitator;
+            trimToSizeLocked(mMaxSize);
+        }
+    }
+
+    /**
+     * Releases cached facilitators depending on the level provided by
+     * {@link ComponentCallbacks2#onTrimMemory(int)}. Facilitators in use are not released.
+     */
+    public void onTrimMemory(final int level) {
+        final int maxSize;
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            maxSize = 0;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            maxSize = 1;
+        } else {
+            return;
+        }
+        synchronized (mLock) {
+            trimToSizeLocked(maxSize);
         }
     }
 
     public void closeDictionaries() {
+        final ArrayList<DictionaryFacilitator> dictionaryFacilitators;
         synchronized (mLock) {
-            mDictionaryFacilitator.closeDictionaries();
+            dictionaryFacilitators = new ArrayList<>();
+            for (final CachedFacilitator cachedFacilitator : mCachedDictionaryFacilitators.values()) {
+                dictionaryFacilitators.add(cachedFacilitator.mDictionaryFacilitator);
+            }
+            mCachedDictionaryFacilitators.clear();
+        }
+        for (final DictionaryFacilitator dictionaryFacilitator : dictionaryFacilitators) {
+            dictionaryFacilitator.closeDictionaries();
         }
     }
 }
@@ -9,6 +9,7 @@ package helium314.keyboard.latin;
 import android.text.TextUtils;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import helium314.keyboard.latin.common.StringUtils;
 import helium314.keyboard.latin.define.DecoderSpecificConstants;
@@ -32,6 +33,8 @@ public class NgramContext {
 
     public static final String CONTEXT_SEPARATOR = " ";
 
+    private static final int[] EMPTY_CODE_POINTS = new int[0];
+
     public static NgramContext getEmptyPrevWordsContext(int maxPrevWordCount) {
         return new NgramContext(maxPrevWordCount, WordInfo.EMPTY_WORD_INFO);
     }
@@ -204,20 +207,41 @@ public class NgramContext {
         return mPrevWordsInfo[n - 1].mIsBeginningOfSentence;
     }
 
+    // Arrays already containing the word are kept, so repeated calls with the same codePointArrays
+    // don't allocate if the previous words didn't change. The arrays are never modified.
     public void outputToArray(final int[][] codePointArrays,
             final boolean[] isBeginningOfSentenceArray) {
         for (int i = 0; i < mPrevWordsCount; i++) {
             final WordInfo wordInfo = mPrevWordsInfo[i];
             if (wordInfo == null || !wordInfo.isValid()) {
-                codePointArrays[i] = new int[0];
+                codePointArrays[i] = EMPTY_CODE_POINTS;
                 isBeginningOfSentenceArray[i] = false;
                 continue;
             }
-            codePointArrays[i] = StringUtils.toCodePointArray(wordInfo.mWord);
+            if (!hasSameCodePoints(codePointArrays[i], wordInfo.mWord)) {
+                codePointArrays[i] = StringUtils.toCodePointArray(wordInfo.mWord);
+            }
             isBeginningOfSentenceArray[i] = wordInfo.mIsBeginningOfSentence;
         }
     }
 
+    private static boolean hasSameCodePoints(@Nullable final int[] codePoints,
+            @NonNull final CharSequence word) {
+        if (codePoints == null) {
+            return false;
+        }
+        int index = 0;
+        for (int i = 0; i < word.length(); ) {
+            final int codePoint = Character.codePointAt(word, i);
+            if (index >= codePoints.length || codePoints[index] != codePoint) {
+                return false;
+            }
+            index++;
+            i += Character.charCount(codePoint);
+        }
+        return index == codePoints.length;
+    }
+
     public int getPrevWordCount() {
         return mPrevWordsCount;
     }
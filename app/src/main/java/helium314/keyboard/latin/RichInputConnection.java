@@ -40,6 +40,7 @@ import helium314.keyboard.latin.inputlogic.PrivateCommandPerformer;
 import helium314.keyboard.latin.settings.SpacingAndPunctuations;
 import helium314.keyboard.latin.utils.CapsModeUtils;
 import helium314.keyboard.latin.utils.DebugLogUtils;
+import helium314.keyboard.latin.utils.LatencyTracer;
 import helium314.keyboard.latin.utils.NgramContextUtils;
 import helium314.keyboard.latin.utils.StatsUtils;
 import helium314.keyboard.latin.utils.TextRange;
@@ -472,7 +473,9 @@ public final class RichInputConnection implements PrivateCommandPerformer {
             return null;
         }
         final long startTime = SystemClock.uptimeMillis();
+        final long traceStart = LatencyTracer.begin();
         final CharSequence result = mIC.getTextBeforeCursor(n, flags);
+        LatencyTracer.end(LatencyTracer.STAGE_INPUT_CONNECTION, traceStart);
         detectLaggyConnection(operation, timeout, startTime);
 
         // only do the consistency check if we actually have text (i.e. we're not coming from some reload / reset)
@@ -539,7 +542,9 @@ public final class RichInputConnection implements PrivateCommandPerformer {
             return null;
         }
         final long startTime = SystemClock.uptimeMillis();
+        final long traceStart = LatencyTracer.begin();
         final CharSequence result = mIC.getTextAfterCursor(n, flags);
+        LatencyTracer.end(LatencyTracer.STAGE_INPUT_CONNECTION, traceStart);
         detectLaggyConnection(operation, timeout, startTime);
         return result;
     }
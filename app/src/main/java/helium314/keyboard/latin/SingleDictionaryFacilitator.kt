@@ -55,10 +55,13 @@ class SingleDictionaryFacilitator(private val dict: Dictionary) : DictionaryFaci
         return suggestionResults
     }
 
+    override fun cancelSuggestionResults() = dict.cancelSuggestions()
+
     override fun getSuggestionResults(
         composedData: ComposedData, ngramContext: NgramContext, keyboard: Keyboard,
         settingsValuesForSuggestion: SettingsValuesForSuggestion, sessionId: Int, inputStyle: Int
     ): SuggestionResults {
+        dict.resetSuggestionsCancellation()
         val suggestionResults = SuggestionResults(
             SuggestedWords.MAX_SUGGESTIONS, ngramContext.isBeginningOfSentenceContext,
             false
@@ -84,6 +87,10 @@ class SingleDictionaryFacilitator(private val dict: Dictionary) : DictionaryFaci
 
     override fun isForLocale(locale: Locale?): Boolean = locale == dict.mLocale
 
+    override fun setUserHistoryListener(listener: DictionaryFacilitator.UserHistoryListener?) {}
+
+    override fun getDictionariesGeneration(): Int = 0
+
     override fun onStartInput() {}
 
     override fun onFinishInput() {
@@ -6,6 +6,7 @@
 package helium314.keyboard.latin
 
 import android.text.TextUtils
+import android.util.LruCache
 import com.android.inputmethod.latin.utils.BinaryDictionaryUtils
 import helium314.keyboard.keyboard.Keyboard
 import helium314.keyboard.latin.SuggestedWords.SuggestedWordInfo
@@ -21,9 +22,11 @@ import helium314.keyboard.latin.settings.Settings
 import helium314.keyboard.latin.settings.SettingsValuesForSuggestion
 import helium314.keyboard.latin.suggestions.SuggestionStripView
 import helium314.keyboard.latin.utils.AutoCorrectionUtils
+import helium314.keyboard.latin.utils.LatencyTracer
 import helium314.keyboard.latin.utils.Log
 import helium314.keyboard.latin.utils.SuggestionResults
 import java.util.Locale
+import java.util.concurrent.atomic.AtomicInteger
 import kotlin.math.min
 
 /**
@@ -33,10 +36,44 @@ import kotlin.math.min
 class Suggest(private val mDictionaryFacilitator: DictionaryFacilitator) {
     private var mAutoCorrectionThreshold = 0f
     private val mPlausibilityThreshold = 0f
-    private val nextWordSuggestionsCache = HashMap<NgramContext, SuggestionResults>()
+    private val nextWordSuggestionsCache = LruCache<NextWordSuggestionsCacheKey, SuggestionResults>(NEXT_WORD_SUGGESTIONS_CACHE_SIZE)
+    // incremented on every invalidation, results computed before must not be cached
+    private val nextWordSuggestionsCacheInvalidations = AtomicInteger()
+
+    val nextWordSuggestionsCacheHitCount get() = nextWordSuggestionsCache.hitCount()
+    val nextWordSuggestionsCacheMissCount get() = nextWordSuggestionsCache.missCount()
+
+    init {
+        mDictionaryFacilitator.setUserHistoryListener { invalidateNextWordSuggestions(it) }
+    }
 
     // cache cleared whenever LatinIME.loadSettings is called, notably on changing layout and switching input fields
-    fun clearNextWordSuggestionsCache() = nextWordSuggestionsCache.clear()
+    fun clearNextWordSuggestionsCache() {
+        if (DebugFlags.DEBUG_ENABLED)
+            Log.d(TAG, "next word suggestions cache: $nextWordSuggestionsCacheHitCount hits, $nextWordSuggestionsCacheMissCount misses")
+        nextWordSuggestionsCacheInvalidations.incrementAndGet()
+        nextWordSuggestionsCache.evictAll()
+    }
+
+    /** Stops running suggestion requests, see [DictionaryFacilitator.cancelSuggestionResults]. */
+    fun cancelSuggestions() {
+        // results of the cancelled request may be incomplete
+        nextWordSuggestionsCacheInvalidations.incrementAndGet()
+        mDictionaryFacilitator.cancelSuggestionResults()
+    }
+
+    // Learning a word changes which words are predicted after the previous word, so remove
+    // cached predictions for contexts ending in the same word.
+    private fun invalidateNextWordSuggestions(ngramContext: NgramContext) {
+        nextWordSuggestionsCacheInvalidations.incrementAndGet()
+        val prevWord = ngramContext.getNthPrevWord(1)?.toString()
+        val isBeginningOfSentence = ngramContext.isNthPrevWordBeginningOfSentence(1)
+        nextWordSuggestionsCache.snapshot().keys.forEach {
+            if (it.ngramContext.isNthPrevWordBeginningOfSentence(1) == isBeginningOfSentence
+                    && it.ngramContext.getNthPrevWord(1)?.toString().equals(prevWord, true))
+                nextWordSuggestionsCache.remove(it)
+        }
+    }
 
     /**
      * Set the normalized-score threshold for a suggestion to be considered strong enough that we
@@ -74,6 +111,7 @@ class Suggest(private val mDictionaryFacilitator: DictionaryFacilitator) {
                 getNextWordSuggestions(ngramContext, keyboard, inputStyleIfNotPrediction, settingsValuesForSuggestion)
             else mDictionaryFacilitator.getSuggestionResults(wordComposer.composedDataSnapshot, ngramContext, keyboard,
                 settingsValuesForSuggestion, SESSION_ID_TYPING, inputStyleIfNotPrediction)
+        val traceStart = LatencyTracer.begin()
         val trailingSingleQuotesCount = StringUtils.getTrailingSingleQuotesCount(typedWordString)
         val suggestionsContainer = getTransformedSuggestedWordInfoList(wordComposer, suggestionResults,
             trailingSingleQuotesCount, mDictionaryFacilitator.mainLocale, keyboard)
@@ -138,6 +176,7 @@ class Suggest(private val mDictionaryFacilitator: DictionaryFacilitator) {
             }
         }
         val isTypedWordValid = firstOccurrenceOfTypedWordInSuggestions > -1 || (!resultsArePredictions && !allowsToBeAutoCorrected)
+        LatencyTracer.end(LatencyTracer.STAGE_SUGGEST_POST_PROCESSING, traceStart)
         return SuggestedWords(suggestionsList, suggestionResults.mRawSuggestions,
             typedWordInfo, isTypedWordValid, hasAutoCorrection, false, inputStyle, sequenceNumber)
     }
@@ -269,6 +308,7 @@ class Suggest(private val mDictionaryFacilitator: DictionaryFacilitator) {
             wordComposer.composedDataSnapshot, ngramContext, keyboard,
             settingsValuesForSuggestion, SESSION_ID_GESTURE, inputStyle
         )
+        val traceStart = LatencyTracer.begin()
         replaceSingleLetterFirstSuggestion(suggestionResults)
 
         // For transforming words that don't come from a dictionary, because it's our best bet
@@ -335,6 +375,7 @@ class Suggest(private val mDictionaryFacilitator: DictionaryFacilitator) {
         } else {
             suggestionsContainer
         }
+        LatencyTracer.end(LatencyTracer.STAGE_SUGGEST_POST_PROCESSING, traceStart)
         return SuggestedWords(suggestionsList, suggestionResults.mRawSuggestions, pseudoTypedWordInfo, true,
             false, false, inputStyle, sequenceNumber)
     }
@@ -342,14 +383,20 @@ class Suggest(private val mDictionaryFacilitator: DictionaryFacilitator) {
     /** get suggestions based on the current ngram context, with an empty typed word (that's what next word suggestions do)  */
     private fun getNextWordSuggestions(ngramContext: NgramContext, keyboard: Keyboard, inputStyle: Int,
                                        settingsValuesForSuggestion: SettingsValuesForSuggestion): SuggestionResults {
-        val cachedResults = nextWordSuggestionsCache[ngramContext]
+        val key = NextWordSuggestionsCacheKey(ngramContext, mDictionaryFacilitator.dictionariesGeneration)
+        val cachedResults = nextWordSuggestionsCache[key]
         if (cachedResults != null) return cachedResults
+        val invalidations = nextWordSuggestionsCacheInvalidations.get()
         val newResults = mDictionaryFacilitator.getSuggestionResults(ComposedData(InputPointers(1),
             false, ""), ngramContext, keyboard, settingsValuesForSuggestion, SESSION_ID_TYPING, inputStyle)
-        nextWordSuggestionsCache[ngramContext] = newResults
+        if (invalidations == nextWordSuggestionsCacheInvalidations.get())
+            nextWordSuggestionsCache.put(key, newResults)
         return newResults
     }
 
+    // entries for outdated dictionaries are never hit again and get evicted eventually
+    private data class NextWordSuggestionsCacheKey(val ngramContext: NgramContext, val dictionariesGeneration: Int)
+
     companion object {
         private val TAG: String = Suggest::class.java.simpleName
 
@@ -358,6 +405,8 @@ class Suggest(private val mDictionaryFacilitator: DictionaryFacilitator) {
         const val SESSION_ID_TYPING = 0
         const val SESSION_ID_GESTURE = 0
 
+        private const val NEXT_WORD_SUGGESTIONS_CACHE_SIZE = 50
+
         // Close to -2**31
         private const val SUPPRESS_SUGGEST_THRESHOLD = -2000000000
 
@@ -295,13 +295,24 @@ public class SuggestedWords {
                 final int score, final int kindAndFlags,
                 final Dictionary sourceDict, final int indexOfTouchPointOfSecondWord,
                 final int autoCommitFirstWordConfidence) {
+            this(word, StringUtils.codePointCount(word), prevWordsContext, score, kindAndFlags,
+                    sourceDict, indexOfTouchPointOfSecondWord, autoCommitFirstWordConfidence);
+        }
+
+        /**
+         * Same as above, for callers that already know the number of code points in the word.
+         */
+        public SuggestedWordInfo(final String word, final int codePointCount,
+                final String prevWordsContext, final int score, final int kindAndFlags,
+                final Dictionary sourceDict, final int indexOfTouchPointOfSecondWord,
+                final int autoCommitFirstWordConfidence) {
             mWord = word;
             mPrevWordsContext = prevWordsContext;
             mApplicationSpecifiedCompletionInfo = null;
             mScore = score;
             mKindAndFlags = kindAndFlags;
             mSourceDict = sourceDict;
-            mCodePointCount = StringUtils.codePointCount(mWord);
+            mCodePointCount = codePointCount;
             mIndexOfTouchPointOfSecondWord = indexOfTouchPointOfSecondWord;
             mAutoCommitFirstWordConfidence = autoCommitFirstWordConfidence;
         }
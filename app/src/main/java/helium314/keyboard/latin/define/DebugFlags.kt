@@ -12,7 +12,9 @@ import helium314.keyboard.latin.BuildConfig
 import helium314.keyboard.latin.settings.DebugSettings
 import helium314.keyboard.latin.settings.Defaults
 import helium314.keyboard.latin.utils.DeviceProtectedUtils
+import helium314.keyboard.latin.utils.LatencyTracer
 import helium314.keyboard.latin.utils.Log
+import helium314.keyboard.latin.utils.StartupTracer
 import helium314.keyboard.latin.utils.prefs
 import java.io.File
 import java.io.PrintWriter
@@ -27,6 +29,8 @@ object DebugFlags {
 
     fun init(context: Context) {
         DEBUG_ENABLED = context.prefs().getBoolean(DebugSettings.PREF_DEBUG_MODE, Defaults.PREF_DEBUG_MODE)
+        LatencyTracer.enabled = DEBUG_ENABLED
+        StartupTracer.enabled = DEBUG_ENABLED
         CrashReportExceptionHandler(context.applicationContext).install()
     }
 }
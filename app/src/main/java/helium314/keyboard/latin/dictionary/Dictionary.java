@@ -145,6 +145,23 @@ public abstract class Dictionary {
         //empty base implementation
     }
 
+    /**
+     * Asks running {@link #getSuggestions} calls to return as soon as possible, possibly with
+     * incomplete results. May be called from any thread.
+     * This also affects later calls until {@link #resetSuggestionsCancellation()} is called.
+     */
+    public void cancelSuggestions() {
+        // empty base implementation
+    }
+
+    /**
+     * Undoes {@link #cancelSuggestions()}, to be called before starting a request for suggestions.
+     * A cancel that arrives after this call stops the request.
+     */
+    public void resetSuggestionsCancellation() {
+        // empty base implementation
+    }
+
     /**
      * Subclasses may override to indicate that this Dictionary is not yet properly initialized.
      */
@@ -99,4 +99,16 @@ public final class DictionaryCollection extends Dictionary {
         for (final Dictionary dict : mDictionaries)
             dict.close();
     }
+
+    @Override
+    public void cancelSuggestions() {
+        for (final Dictionary dict : mDictionaries)
+            dict.cancelSuggestions();
+    }
+
+    @Override
+    public void resetSuggestionsCancellation() {
+        for (final Dictionary dict : mDictionaries)
+            dict.resetSuggestionsCancellation();
+    }
 }
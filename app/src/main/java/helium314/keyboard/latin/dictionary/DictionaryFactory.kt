@@ -6,14 +6,21 @@
 package helium314.keyboard.latin.dictionary
 
 import android.content.Context
+import com.android.inputmethod.latin.utils.BinaryDictionaryUtils
 import helium314.keyboard.latin.common.LocaleUtils
+import helium314.keyboard.latin.makedict.DictionaryHeader
+import helium314.keyboard.latin.makedict.UnsupportedFormatException
 import helium314.keyboard.latin.utils.DictionaryInfoUtils
 import helium314.keyboard.latin.utils.Log
+import helium314.keyboard.latin.utils.StartupSnapshot
 import java.io.File
+import java.io.IOException
 import java.util.LinkedList
 import java.util.Locale
 
 object DictionaryFactory {
+    private const val TAG = "DictionaryFactory"
+
     /**
      * Initializes a main dictionary collection for a locale.
      * Uses all dictionaries in cache folder for locale, and adds built-in
@@ -34,6 +41,12 @@ object DictionaryFactory {
         nonExtracted.forEach { filename ->
             val type = filename.substringBefore("_")
             if (dictList.any { it.mDictType == type }) return@forEach
+            val assetsDictionary = getAssetsDictionary(filename, locale, context)
+            if (assetsDictionary != null) {
+                dictList.add(assetsDictionary)
+                return@forEach
+            }
+            // dictionary is compressed in the APK, we need to extract it
             val extractedFile = DictionaryInfoUtils.extractAssetsDictionary(filename, locale, context) ?: return@forEach
             checkAndAddDictionaryToListIfNewType(extractedFile, dictList, locale)
         }
@@ -79,17 +92,60 @@ object DictionaryFactory {
         locale: Locale
     ): Dictionary? {
         if (!file.isFile) return null
-        val header = DictionaryInfoUtils.getDictionaryFileHeaderOrNull(file)
-        if (header == null) {
+        val dictType = StartupSnapshot.getDictionaryType(file.absolutePath, 0, file.length()) {
+            DictionaryInfoUtils.getDictionaryFileHeaderOrNull(file)?.dictType()
+        }
+        if (dictType == null) {
+            killDictionary(file)
+            return null
+        }
+        val dictionary = createDictionary(file.absolutePath, 0, file.length(), dictType, locale)
+        if (dictionary == null)
             killDictionary(file)
+        return dictionary
+    }
+
+    /**
+     * Opens the dictionary [filename] from assets directly from the APK, avoiding the copy to
+     * the cache folder. Returns null if the dictionary is stored compressed in the APK, which is
+     * the case for all but the en-US dictionary, see noCompress in build.gradle.kts.
+     */
+    private fun getAssetsDictionary(filename: String, locale: Locale, context: Context): Dictionary? {
+        val assetFileDescriptor = try {
+            context.assets.openFd(DictionaryInfoUtils.ASSETS_DICTIONARY_FOLDER + File.separator + filename)
+        } catch (_: IOException) {
+            return null // compressed assets can't be opened as file descriptor
+        }
+        // we only need the location, the native code maps the APK file itself
+        val offset = assetFileDescriptor.startOffset
+        val length = assetFileDescriptor.length
+        assetFileDescriptor.close()
+        val apkFile = File(context.applicationInfo.sourceDir)
+        val dictType = StartupSnapshot.getDictionaryType(apkFile.absolutePath, offset, length) {
+            try {
+                BinaryDictionaryUtils.getHeaderWithOffsetAndLength(apkFile, offset, length)?.dictType()
+            } catch (_: UnsupportedFormatException) {
+                null
+            } catch (_: IOException) {
+                null
+            }
+        }
+        if (dictType == null) {
+            Log.w(TAG, "could not read header of assets dictionary $filename")
             return null
         }
-        val dictType = header.mIdString.split(":").first()
+        return createDictionary(apkFile.absolutePath, offset, length, dictType, locale)
+    }
+
+    private fun DictionaryHeader.dictType() = mIdString.split(":").first()
+
+    private fun createDictionary(path: String, offset: Long, length: Long, dictType: String, locale: Locale): Dictionary? {
         val readOnlyBinaryDictionary = ReadOnlyBinaryDictionary(
-            file.absolutePath, 0, file.length(), false, locale, dictType
+            path, offset, length, false, locale, dictType
         )
 
         if (readOnlyBinaryDictionary.isValidDictionary) {
+            readOnlyBinaryDictionary.buildWordFilterAsync()
             if (locale.language == "ko") {
                 // Use KoreanDictionary for Korean locale
                 return KoreanDictionary(readOnlyBinaryDictionary)
@@ -97,7 +153,6 @@ object DictionaryFactory {
             return readOnlyBinaryDictionary
         }
         readOnlyBinaryDictionary.close()
-        killDictionary(file)
         return null
     }
 
@@ -36,6 +36,7 @@ import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
@@ -75,7 +76,14 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
      * The binary dictionary generated dynamically from the fusion dictionary. This is used to
      * answer unigram and bigram queries.
      */
-    private BinaryDictionary mBinaryDictionary;
+    private volatile BinaryDictionary mBinaryDictionary;
+
+    /**
+     * Filter for rejecting words not in mBinaryDictionary without a lookup, null if not available.
+     * Words are added to the filter before adding them to the dictionary, so there is no time
+     * where the filter rejects a word that is in the dictionary.
+     */
+    private volatile WordBloomFilter mWordFilter;
 
     /**
      * The name of this dictionary, used as a part of the filename for storing the binary
@@ -94,6 +102,11 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
 
     private final ReentrantReadWriteLock mLock;
 
+    // Serializes all tasks changing the dictionary. Lookups only need the read lock of mLock, and
+    // writers hold the write lock only while changing the dictionary in place, but not while
+    // flushing it to the file, see flushAndReplaceBinaryDictionaryLocked.
+    private final ReentrantLock mUpdateLock = new ReentrantLock();
+
     /* A extension for a binary dictionary file. */
     protected static final String DICT_FILE_EXTENSION = ".dict";
 
@@ -151,7 +164,21 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
     }
 
     private void asyncExecuteTaskWithWriteLock(final Runnable task) {
-        asyncExecuteTaskWithLock(mLock.writeLock(), task);
+        asyncExecuteTaskWithLock(mUpdateLock, () -> runWithWriteLock(task));
+    }
+
+    // for tasks that only take the write lock for in-place changes
+    protected void asyncExecuteTaskWithUpdateLock(final Runnable task) {
+        asyncExecuteTaskWithLock(mUpdateLock, task);
+    }
+
+    protected void runWithWriteLock(final Runnable task) {
+        mLock.writeLock().lock();
+        try {
+            task.run();
+        } finally {
+            mLock.writeLock().unlock();
+        }
     }
 
     private static void asyncExecuteTaskWithLock(final Lock lock, final Runnable task) {
@@ -183,6 +210,7 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
     }
 
     void closeBinaryDictionary() {
+        mWordFilter = null;
         if (mBinaryDictionary != null) {
             mBinaryDictionary.close();
             mBinaryDictionary = null;
@@ -194,7 +222,47 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
      */
     @Override
     public void close() {
-        asyncExecuteTaskWithWriteLock(this::closeBinaryDictionary);
+        asyncExecuteTaskWithUpdateLock(() -> {
+            onClosingLocked();
+            runWithWriteLock(this::closeBinaryDictionary);
+        });
+    }
+
+    /**
+     * Called before the dictionary is closed, for subclasses that need to save pending updates.
+     * The update lock is held, but implementations need to take the write lock for changes.
+     */
+    protected void onClosingLocked() {
+        // empty base implementation
+    }
+
+    /**
+     * Writes the dictionary to the file if it has been updated, without replacing it.
+     * Only for use before closing, the update lock must be held.
+     */
+    protected void flushBeforeClosingLocked() {
+        final BinaryDictionary binaryDictionary = getBinaryDictionary();
+        if (binaryDictionary != null && binaryDictionary.hasUpdated()
+                && !binaryDictionary.flushWithoutReopening()) {
+            Log.e(TAG, "Cannot flush dictionary: " + mDictName);
+        }
+    }
+
+    @Override
+    public void cancelSuggestions() {
+        // no lock: this must not wait for the read lock held by the call to cancel
+        final BinaryDictionary binaryDictionary = mBinaryDictionary;
+        if (binaryDictionary != null) {
+            binaryDictionary.cancelSuggestions();
+        }
+    }
+
+    @Override
+    public void resetSuggestionsCancellation() {
+        final BinaryDictionary binaryDictionary = mBinaryDictionary;
+        if (binaryDictionary != null) {
+            binaryDictionary.resetSuggestionsCancellation();
+        }
     }
 
     protected Map<String, String> getHeaderAttributeMap() {
@@ -218,15 +286,80 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
     }
 
     private void openBinaryDictionaryLocked() {
-        mBinaryDictionary = new BinaryDictionary(
+        mBinaryDictionary = openBinaryDictionaryFromFile();
+    }
+
+    private BinaryDictionary openBinaryDictionaryFromFile() {
+        return new BinaryDictionary(
                 mDictFile.getAbsolutePath(), 0 /* offset */, mDictFile.length(),
                 true /* useFullEditDistance */, mLocale, mDictType, true /* isUpdatable */);
     }
 
+    /**
+     * Writes the dictionary to the file, and replaces it with a new instance loaded from the file,
+     * optionally running GC on the new instance. Lookups use the current instance meanwhile, and
+     * only wait for the replacement itself.
+     */
+    private void flushAndReplaceBinaryDictionaryLocked(final boolean runGC) {
+        final BinaryDictionary currentBinaryDictionary = mBinaryDictionary;
+        // no read lock needed: other writers are excluded by mUpdateLock, and flushing only reads
+        if (!currentBinaryDictionary.flushWithoutReopening()) {
+            Log.e(TAG, "Cannot flush dictionary: " + mDictName);
+            return;
+        }
+        final BinaryDictionary newBinaryDictionary = openBinaryDictionaryFromFile();
+        // GC changes the dictionary it runs on, so only run it on the instance nobody else uses
+        if (!newBinaryDictionary.isValidDictionary() || (runGC && !newBinaryDictionary.flushWithGC())) {
+            Log.e(TAG, "Cannot reload dictionary after flushing: " + mDictName);
+            newBinaryDictionary.close();
+            return;
+        }
+        runWithWriteLock(() -> mBinaryDictionary = newBinaryDictionary);
+        currentBinaryDictionary.close();
+        rebuildWordFilterIfRequiredLocked();
+    }
+
     void createOnMemoryBinaryDictionaryLocked() {
         mBinaryDictionary = new BinaryDictionary(
                 mDictFile.getAbsolutePath(), true /* useFullEditDistance */, mLocale, mDictType,
                 DICTIONARY_FORMAT_VERSION, getHeaderAttributeMap());
+        // the dictionary is empty, added words will be added to the filter
+        mWordFilter = new WordBloomFilter(0);
+    }
+
+    /**
+     * Creates the word filter if it's missing, or if too many words have been added since it was
+     * created. Must be called with the update lock held, as the dictionary must not change.
+     */
+    private void rebuildWordFilterIfRequiredLocked() {
+        final WordBloomFilter wordFilter = mWordFilter;
+        if (wordFilter != null && !wordFilter.isFull()) {
+            return;
+        }
+        final BinaryDictionary binaryDictionary = mBinaryDictionary;
+        if (binaryDictionary == null || !binaryDictionary.isValidDictionary()) {
+            return;
+        }
+        mWordFilter = WordBloomFilter.create(binaryDictionary);
+    }
+
+    private void addToWordFilterLocked(final String word) {
+        final WordBloomFilter wordFilter = mWordFilter;
+        if (wordFilter != null && word != null) {
+            wordFilter.add(word);
+        }
+    }
+
+    private void addToWordFilterLocked(@NonNull final NgramContext ngramContext, final String word) {
+        for (int i = 1; i <= ngramContext.getPrevWordCount(); i++) {
+            if (!ngramContext.isNthPrevWordBeginningOfSentence(i)) {
+                final CharSequence prevWord = ngramContext.getNthPrevWord(i);
+                if (prevWord != null) {
+                    addToWordFilterLocked(prevWord.toString());
+                }
+            }
+        }
+        addToWordFilterLocked(word);
     }
 
     public void clear() {
@@ -240,7 +373,7 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
      * Check whether GC is needed and run GC if required.
      */
     public void runGCIfRequired(final boolean mindsBlockByGC) {
-        asyncExecuteTaskWithWriteLock(() -> {
+        asyncExecuteTaskWithUpdateLock(() -> {
             if (getBinaryDictionary() == null) {
                 return;
             }
@@ -250,18 +383,18 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
 
     protected void runGCIfRequiredLocked(final boolean mindsBlockByGC) {
         if (mBinaryDictionary.needsToRunGC(mindsBlockByGC)) {
-            mBinaryDictionary.flushWithGC();
+            flushAndReplaceBinaryDictionaryLocked(true);
         }
     }
 
-    private void updateDictionaryWithWriteLock(@NonNull final Runnable updateTask) {
+    protected void updateDictionaryWithWriteLock(@NonNull final Runnable updateTask) {
         reloadDictionaryIfRequired();
-        asyncExecuteTaskWithWriteLock(() -> {
+        asyncExecuteTaskWithUpdateLock(() -> {
             if (getBinaryDictionary() == null) {
                 return;
             }
             runGCIfRequiredLocked(true /* mindsBlockByGC */);
-            updateTask.run();
+            runWithWriteLock(updateTask);
         });
     }
 
@@ -278,6 +411,7 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
     protected void addUnigramLocked(final String word, final int frequency,
             final String shortcutTarget, final int shortcutFreq, final boolean isNotAWord,
             final boolean isPossiblyOffensive, final int timestamp) {
+        addToWordFilterLocked(word);
         if (!mBinaryDictionary.addUnigramEntry(word, frequency, shortcutTarget, shortcutFreq,
                 false /* isBeginningOfSentence */, isNotAWord, isPossiblyOffensive, timestamp)) {
             Log.e(TAG, "Cannot add unigram entry. word: " + word);
@@ -289,17 +423,18 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
      */
     public void removeUnigramEntryDynamically(final String word) {
         reloadDictionaryIfRequired();
-        asyncExecuteTaskWithWriteLock(() -> {
-            final BinaryDictionary binaryDictionary = getBinaryDictionary();
-            if (binaryDictionary == null) {
+        asyncExecuteTaskWithUpdateLock(() -> {
+            if (getBinaryDictionary() == null) {
                 return;
             }
             runGCIfRequiredLocked(true /* mindsBlockByGC */);
-            if (!binaryDictionary.removeUnigramEntry(word)) {
-                if (DEBUG) {
-                    Log.i(TAG, "Cannot remove unigram entry: " + word);
+            runWithWriteLock(() -> {
+                if (!mBinaryDictionary.removeUnigramEntry(word)) {
+                    if (DEBUG) {
+                        Log.i(TAG, "Cannot remove unigram entry: " + word);
+                    }
                 }
-            }
+            });
         });
     }
 
@@ -309,17 +444,18 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
     public void addNgramEntry(@NonNull final NgramContext ngramContext, final String word,
             final int frequency, final int timestamp) {
         reloadDictionaryIfRequired();
-        asyncExecuteTaskWithWriteLock(() -> {
+        asyncExecuteTaskWithUpdateLock(() -> {
             if (getBinaryDictionary() == null) {
                 return;
             }
             runGCIfRequiredLocked(true /* mindsBlockByGC */);
-            addNgramEntryLocked(ngramContext, word, frequency, timestamp);
+            runWithWriteLock(() -> addNgramEntryLocked(ngramContext, word, frequency, timestamp));
         });
     }
 
     protected void addNgramEntryLocked(@NonNull final NgramContext ngramContext, final String word,
             final int frequency, final int timestamp) {
+        addToWordFilterLocked(ngramContext, word);
         if (!mBinaryDictionary.addNgramEntry(ngramContext, word, frequency, timestamp)) {
             if (DEBUG) {
                 Log.i(TAG, "Cannot add n-gram entry.");
@@ -333,19 +469,32 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
      */
     public void updateEntriesForWord(@NonNull final NgramContext ngramContext,
             final String word, final boolean isValidWord, final int count, final int timestamp) {
-        updateDictionaryWithWriteLock(() -> {
-            final BinaryDictionary binaryDictionary = getBinaryDictionary();
-            if (binaryDictionary == null) {
-                return;
-            }
-            if (!binaryDictionary.updateEntriesForWordWithNgramContext(ngramContext, word,
-                    isValidWord, count, timestamp)) {
-                if (DEBUG) {
-                    Log.e(TAG, "Cannot update counter. word: " + word
-                            + " context: " + ngramContext);
-                }
+        updateDictionaryWithWriteLock(() -> updateEntriesForWordLocked(ngramContext, word,
+                isValidWord, count, timestamp));
+    }
+
+    protected void updateEntriesForWordLocked(@NonNull final NgramContext ngramContext,
+            final String word, final boolean isValidWord, final int count, final int timestamp) {
+        final BinaryDictionary binaryDictionary = getBinaryDictionary();
+        if (binaryDictionary == null) {
+            return;
+        }
+        addToWordFilterLocked(ngramContext, word);
+        if (!binaryDictionary.updateEntriesForWordWithNgramContext(ngramContext, word,
+                isValidWord, count, timestamp)) {
+            if (DEBUG) {
+                Log.e(TAG, "Cannot update counter. word: " + word
+                        + " context: " + ngramContext);
             }
-        });
+        }
+    }
+
+    /**
+     * Called before flushing the dictionary, for subclasses that don't apply updates right away.
+     * The update lock is held, but implementations need to take the write lock for changes.
+     */
+    protected void applyPendingUpdatesLocked() {
+        // empty base implementation
     }
 
     @Override
@@ -385,6 +534,10 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
 
     @Override
     public boolean isInDictionary(final String word) {
+        final WordBloomFilter wordFilter = mWordFilter;
+        if (wordFilter != null && !wordFilter.mightContain(word)) {
+            return false;
+        }
         reloadDictionaryIfRequired();
         boolean lockAcquired = false;
         try {
@@ -452,6 +605,7 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
             }
         }
         final BinaryDictionary oldBinaryDictionary = mBinaryDictionary;
+        mWordFilter = null;
         openBinaryDictionaryLocked();
         if (oldBinaryDictionary != null) {
             oldBinaryDictionary.close();
@@ -539,6 +693,7 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
                     }
                 }
                 clearNeedsToRecreate();
+                rebuildWordFilterIfRequiredLocked();
             } finally {
                 isReloading.set(false);
             }
@@ -550,16 +705,16 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
      */
     @Override
     public void onFinishInput() {
-        asyncExecuteTaskWithWriteLock(() -> {
-            final BinaryDictionary binaryDictionary = getBinaryDictionary();
-            if (binaryDictionary == null) {
+        asyncExecuteTaskWithUpdateLock(() -> {
+            if (getBinaryDictionary() == null) {
                 return;
             }
-            if (binaryDictionary.needsToRunGC(false /* mindsBlockByGC */)) {
-                binaryDictionary.flushWithGCIfHasUpdated();
-            } else {
-                binaryDictionary.flush();
+            applyPendingUpdatesLocked();
+            final BinaryDictionary binaryDictionary = getBinaryDictionary();
+            if (!binaryDictionary.hasUpdated()) {
+                return;
             }
+            flushAndReplaceBinaryDictionaryLocked(binaryDictionary.needsToRunGC(false /* mindsBlockByGC */));
         });
     }
 
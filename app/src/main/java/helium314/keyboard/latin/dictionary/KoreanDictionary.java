@@ -97,6 +97,16 @@ public class KoreanDictionary extends Dictionary {
         mDictionary.onFinishInput();
     }
 
+    @Override
+    public void cancelSuggestions() {
+        mDictionary.cancelSuggestions();
+    }
+
+    @Override
+    public void resetSuggestionsCancellation() {
+        mDictionary.resetSuggestionsCancellation();
+    }
+
     @Override
     public boolean isInitialized() {
         return mDictionary.isInitialized();
@@ -13,6 +13,7 @@ import helium314.keyboard.latin.SuggestedWords.SuggestedWordInfo;
 import helium314.keyboard.latin.common.ComposedData;
 import helium314.keyboard.latin.makedict.WordProperty;
 import helium314.keyboard.latin.settings.SettingsValuesForSuggestion;
+import helium314.keyboard.latin.utils.ExecutorUtils;
 
 import java.util.ArrayList;
 import java.util.Locale;
@@ -24,6 +25,9 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * threads get suggestions using this class.
  */
 public final class ReadOnlyBinaryDictionary extends Dictionary {
+    // number of words read while holding the lock when building the word filter
+    private static final int WORD_FILTER_CHUNK_SIZE = 1000;
+
     /**
      * A lock for accessing binary dictionary. Only closing binary dictionary is the operation
      * that change the state of dictionary.
@@ -32,6 +36,9 @@ public final class ReadOnlyBinaryDictionary extends Dictionary {
 
     private final BinaryDictionary mBinaryDictionary;
 
+    // null until created, see buildWordFilterAsync
+    private volatile WordBloomFilter mWordFilter;
+
     public ReadOnlyBinaryDictionary(final String filename, final long offset, final long length,
             final boolean useFullEditDistance, final Locale locale, final String dictType) {
         super(dictType, locale);
@@ -43,6 +50,33 @@ public final class ReadOnlyBinaryDictionary extends Dictionary {
         return mBinaryDictionary.isValidDictionary();
     }
 
+    /**
+     * Collects the words of the dictionary in the background, so afterwards
+     * {@link #isInDictionary(String)} can reject most words without a native lookup.
+     */
+    public void buildWordFilterAsync() {
+        ExecutorUtils.getBackgroundExecutor(ExecutorUtils.KEYBOARD).execute(() -> {
+            // read in chunks, so close() doesn't need to wait for all words being read
+            final WordBloomFilter.Builder builder = new WordBloomFilter.Builder();
+            boolean isDone = false;
+            while (!isDone) {
+                mLock.readLock().lock();
+                try {
+                    if (!mBinaryDictionary.isValidDictionary()) {
+                        return;
+                    }
+                    isDone = builder.readWords(mBinaryDictionary, WORD_FILTER_CHUNK_SIZE);
+                    if (isDone) {
+                        // no words are added to read-only dictionaries
+                        mWordFilter = builder.build(0);
+                    }
+                } finally {
+                    mLock.readLock().unlock();
+                }
+            }
+        });
+    }
+
     @Override
     public ArrayList<SuggestedWordInfo> getSuggestions(final ComposedData composedData,
             final NgramContext ngramContext, final long proximityInfoHandle,
@@ -63,6 +97,10 @@ public final class ReadOnlyBinaryDictionary extends Dictionary {
 
     @Override
     public boolean isInDictionary(final String word) {
+        final WordBloomFilter wordFilter = mWordFilter;
+        if (wordFilter != null && !wordFilter.mightContain(word)) {
+            return false;
+        }
         if (mLock.readLock().tryLock()) {
             try {
                 return mBinaryDictionary.isInDictionary(word);
@@ -125,12 +163,24 @@ public final class ReadOnlyBinaryDictionary extends Dictionary {
     public void close() {
         mLock.writeLock().lock();
         try {
+            mWordFilter = null;
             mBinaryDictionary.close();
         } finally {
             mLock.writeLock().unlock();
         }
     }
 
+    @Override
+    public void cancelSuggestions() {
+        // no lock: this must not wait for the read lock held by the call to cancel
+        mBinaryDictionary.cancelSuggestions();
+    }
+
+    @Override
+    public void resetSuggestionsCancellation() {
+        mBinaryDictionary.resetSuggestionsCancellation();
+    }
+
     public String getHash() {
         return mBinaryDictionary.getHash();
     }
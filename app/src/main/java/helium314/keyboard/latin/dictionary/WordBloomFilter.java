@@ -0,0 +1,159 @@
+// SPDX-License-Identifier: GPL-3.0-only
+
+package helium314.keyboard.latin.dictionary;
+
+import com.android.inputmethod.latin.BinaryDictionary;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter of the words in a dictionary, used for rejecting words that are certainly not in
+ * the dictionary without a native lookup.
+ * There are no false negatives for added words, but words may be reported as possibly contained
+ * even though they were never added (or removed from the dictionary since).
+ * Adding and checking words is thread safe, and added words are visible to all threads at once.
+ */
+final class WordBloomFilter {
+    // about 1% false positives with 7 hash functions, as long as the capacity is not exceeded
+    private static final int BITS_PER_WORD = 10;
+    private static final int HASH_FUNCTION_COUNT = 7;
+    private static final int MIN_CAPACITY = 1024;
+    private static final int MAX_BIT_COUNT = 1 << 30;
+
+    private final AtomicLongArray mBits;
+    private final int mBitMask; // bit count is a power of 2
+    private final int mCapacity;
+    private final AtomicInteger mWordCount = new AtomicInteger();
+
+    WordBloomFilter(final int expectedWordCount) {
+        mCapacity = Math.max(expectedWordCount, MIN_CAPACITY);
+        final long minBitCount = Math.min((long) mCapacity * BITS_PER_WORD, MAX_BIT_COUNT);
+        int bitCount = Integer.highestOneBit((int) minBitCount);
+        if (bitCount < minBitCount) {
+            bitCount <<= 1;
+        }
+        mBits = new AtomicLongArray(bitCount >>> 6);
+        mBitMask = bitCount - 1;
+    }
+
+    /**
+     * Creates a filter containing all words in the binary dictionary, with capacity for adding as
+     * many words again. Must not be called concurrently with changes to the dictionary.
+     */
+    static WordBloomFilter create(final BinaryDictionary binaryDictionary) {
+        final Builder builder = new Builder();
+        builder.readWords(binaryDictionary, Integer.MAX_VALUE);
+        return builder.build(builder.mWordCount);
+    }
+
+    /**
+     * Collects the words of a binary dictionary in chunks, so locks don't need to be held while
+     * reading all words. The dictionary must not change until all words are read.
+     */
+    static final class Builder {
+        private final int[] mCodePoints = new int[BinaryDictionary.DICTIONARY_MAX_WORD_LENGTH];
+        private final boolean[] mIsBeginningOfSentence = new boolean[1];
+        private long[] mHashes = new long[MIN_CAPACITY];
+        private int mWordCount;
+        private int mToken;
+
+        /** Reads up to maxWordCount entries, returns true if all words have been read. */
+        boolean readWords(final BinaryDictionary binaryDictionary, final int maxWordCount) {
+            for (int i = 0; i < maxWordCount; i++) {
+                // the word is not null-terminated
+                Arrays.fill(mCodePoints, 0);
+                mToken = binaryDictionary.getNextWord(mToken, mCodePoints, mIsBeginningOfSentence);
+                if (mCodePoints[0] != 0 && !mIsBeginningOfSentence[0]) {
+                    if (mWordCount == mHashes.length) {
+                        mHashes = Arrays.copyOf(mHashes, mWordCount * 2);
+                    }
+                    mHashes[mWordCount++] = hash(mCodePoints);
+                }
+                if (mToken == 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /** Creates a filter containing the words read so far, with capacity for extraCapacity more words. */
+        WordBloomFilter build(final int extraCapacity) {
+            final WordBloomFilter filter = new WordBloomFilter(mWordCount + extraCapacity);
+            for (int i = 0; i < mWordCount; i++) {
+                filter.add(mHashes[i]);
+            }
+            return filter;
+        }
+    }
+
+    void add(final String word) {
+        add(hash(word));
+    }
+
+    /** Returns false if the word was certainly not added. */
+    boolean mightContain(final String word) {
+        final long hash = hash(word);
+        final int hash1 = (int) (hash >>> 32);
+        final int hash2 = (int) hash;
+        for (int i = 0; i < HASH_FUNCTION_COUNT; i++) {
+            final int bit = (hash1 + i * hash2) & mBitMask;
+            if ((mBits.get(bit >>> 6) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Whether more words than expected were added, which makes false positives much more likely. */
+    boolean isFull() {
+        return mWordCount.get() > mCapacity;
+    }
+
+    private void add(final long hash) {
+        final int hash1 = (int) (hash >>> 32);
+        final int hash2 = (int) hash;
+        for (int i = 0; i < HASH_FUNCTION_COUNT; i++) {
+            final int bit = (hash1 + i * hash2) & mBitMask;
+            final int index = bit >>> 6;
+            final long mask = 1L << bit;
+            long bits;
+            do {
+                bits = mBits.get(index);
+            } while ((bits & mask) == 0 && !mBits.compareAndSet(index, bits, bits | mask));
+        }
+        mWordCount.incrementAndGet();
+    }
+
+    // Two independent 32 bit hashes over the code points, combined for double hashing.
+    // The second hash is odd, so all bits can be reached.
+    private static long hash(final int[] codePoints) {
+        int hash1 = 0;
+        int hash2 = 0x811c9dc5;
+        for (final int codePoint : codePoints) {
+            if (codePoint == 0) break;
+            hash1 = 31 * hash1 + codePoint;
+            hash2 = (hash2 ^ codePoint) * 0x01000193;
+        }
+        return combine(hash1, hash2);
+    }
+
+    private static long hash(final String word) {
+        int hash1 = 0;
+        int hash2 = 0x811c9dc5;
+        for (int i = 0; i < word.length(); i = word.offsetByCodePoints(i, 1)) {
+            final int codePoint = word.codePointAt(i);
+            hash1 = 31 * hash1 + codePoint;
+            hash2 = (hash2 ^ codePoint) * 0x01000193;
+        }
+        return combine(hash1, hash2);
+    }
+
+    private static long combine(final int hash1, final int hash2) {
+        // spread the polynomial hash, similar words only differ in the low bits
+        int mixed = hash1 * 0x9e3779b9;
+        mixed ^= mixed >>> 16;
+        return ((long) mixed << 32) | ((hash2 | 1) & 0xffffffffL);
+    }
+}
@@ -24,7 +24,20 @@ class InputLogicHandler implements Handler.Callback {
     private final Object mLock = new Object();
     private boolean mInBatchInput; // synchronized using {@link #mLock}.
 
+    // Requests are numbered in the order they are posted. A new request makes older ones of the
+    // same kind outdated: queued ones are dropped, and a running one may be cancelled, see
+    // postGetSuggestedWords.
+    private final Object mRequestLock = new Object();
+    private int mLastRequestId; // synchronized using {@link #mRequestLock}.
+    private int mRunningCancellableRequestId = NO_REQUEST; // synchronized using {@link #mRequestLock}.
+    private int mCancelledRequestId = NO_REQUEST; // synchronized using {@link #mRequestLock}.
+
+    private static final int NO_REQUEST = 0;
     private static final int MSG_GET_SUGGESTED_WORDS = 1;
+    // Suggestions for the end of a gesture are needed for committing the word, so they are
+    // never dropped or cancelled.
+    private static final int MSG_GET_SUGGESTED_WORDS_FOR_TAIL_BATCH = 2;
+    private static final int MSG_GET_SUGGESTED_WORDS_FOR_UPDATE_BATCH = 3;
 
     public InputLogicHandler(final LatinIME.UIHandler latinIMEHandler, final InputLogic inputLogic) {
         final HandlerThread handlerThread = new HandlerThread(
@@ -36,7 +49,10 @@ class InputLogicHandler implements Handler.Callback {
     }
 
     public void reset() {
-        mNonUIThreadHandler.removeCallbacksAndMessages(null);
+        synchronized (mRequestLock) {
+            mNonUIThreadHandler.removeCallbacksAndMessages(null);
+            cancelRunningRequestLocked();
+        }
     }
 
     /**
@@ -46,11 +62,31 @@ class InputLogicHandler implements Handler.Callback {
     // Called on the Non-UI handler thread by the Handler code.
     @Override
     public boolean handleMessage(final Message msg) {
-        if (msg.what == MSG_GET_SUGGESTED_WORDS)
-            ((Runnable)msg.obj).run();
+        if (msg.what != MSG_GET_SUGGESTED_WORDS && msg.what != MSG_GET_SUGGESTED_WORDS_FOR_TAIL_BATCH
+                && msg.what != MSG_GET_SUGGESTED_WORDS_FOR_UPDATE_BATCH)
+            return true;
+        synchronized (mRequestLock) {
+            mRunningCancellableRequestId = msg.what != MSG_GET_SUGGESTED_WORDS_FOR_TAIL_BATCH ? msg.arg1 : NO_REQUEST;
+        }
+        ((Runnable)msg.obj).run();
+        synchronized (mRequestLock) {
+            mRunningCancellableRequestId = NO_REQUEST;
+        }
         return true;
     }
 
+    /**
+     * Whether the request currently running on the Non-UI handler thread has been cancelled
+     * by a newer one. Results of cancelled requests are incomplete and should be discarded.
+     */
+    // Called on the Non-UI handler thread.
+    public boolean isRunningRequestCancelled() {
+        synchronized (mRequestLock) {
+            return mRunningCancellableRequestId != NO_REQUEST
+                    && mRunningCancellableRequestId == mCancelledRequestId;
+        }
+    }
+
     // Called on the UI thread by InputLogic.
     public void onStartBatchInput() {
         synchronized (mLock) {
@@ -82,9 +118,13 @@ class InputLogicHandler implements Handler.Callback {
                 return;
             }
             mInputLogic.mWordComposer.setBatchInputPointers(batchPointers);
-            getSuggestedWords(() -> mInputLogic.getSuggestedWords(
+            // A running update is not cancelled by the next update, so the preview keeps
+            // changing during the gesture even if computing suggestions is slower than the updates.
+            postGetSuggestedWords(() -> mInputLogic.getSuggestedWords(
                 isTailBatchInput ? SuggestedWords.INPUT_STYLE_TAIL_BATCH : SuggestedWords.INPUT_STYLE_UPDATE_BATCH, sequenceNumber,
-                suggestedWords -> showGestureSuggestionsWithPreviewVisuals(suggestedWords, isTailBatchInput))
+                suggestedWords -> showGestureSuggestionsWithPreviewVisuals(suggestedWords, isTailBatchInput)),
+                isTailBatchInput ? MSG_GET_SUGGESTED_WORDS_FOR_TAIL_BATCH : MSG_GET_SUGGESTED_WORDS_FOR_UPDATE_BATCH,
+                isTailBatchInput
             );
         }
     }
@@ -157,7 +197,39 @@ class InputLogicHandler implements Handler.Callback {
         updateBatchInput(batchPointers, sequenceNumber, true);
     }
 
+    /**
+     * Runs the callback on the Non-UI handler thread. Requests that are still queued when this is
+     * called are dropped, and a running request is cancelled. Queued batch input requests are kept.
+     * The callback should check {@link #isRunningRequestCancelled()} before using its results.
+     */
     public void getSuggestedWords(final Runnable callback) {
-        mNonUIThreadHandler.obtainMessage(MSG_GET_SUGGESTED_WORDS, callback).sendToTarget();
+        postGetSuggestedWords(callback, MSG_GET_SUGGESTED_WORDS, true);
+    }
+
+    private void postGetSuggestedWords(final Runnable callback, final int what,
+            final boolean cancelRunningRequest) {
+        synchronized (mRequestLock) {
+            final int requestId = ++mLastRequestId;
+            // Queued requests replaced by this one are outdated, and nobody waits for them: the
+            // thread posting requests only waits in performUpdateSuggestionStripSync, and only for
+            // its own request. Batch updates and the tail batch replace batch updates.
+            mNonUIThreadHandler.removeMessages(what == MSG_GET_SUGGESTED_WORDS
+                    ? MSG_GET_SUGGESTED_WORDS : MSG_GET_SUGGESTED_WORDS_FOR_UPDATE_BATCH);
+            if (cancelRunningRequest) {
+                cancelRunningRequestLocked();
+            }
+            mNonUIThreadHandler.obtainMessage(what, requestId, 0, callback).sendToTarget();
+        }
+    }
+
+    private void cancelRunningRequestLocked() {
+        if (mRunningCancellableRequestId == NO_REQUEST
+                || mRunningCancellableRequestId == mCancelledRequestId) {
+            return;
+        }
+        mCancelledRequestId = mRunningCancellableRequestId;
+        // The next request is not started before mRequestLock is released, so only the
+        // outdated one is affected.
+        mInputLogic.mSuggest.cancelSuggestions();
     }
 }
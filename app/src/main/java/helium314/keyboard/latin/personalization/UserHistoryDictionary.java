@@ -16,10 +16,14 @@ import helium314.keyboard.latin.dictionary.Dictionary;
 import helium314.keyboard.latin.dictionary.ExpandableBinaryDictionary;
 import helium314.keyboard.latin.NgramContext;
 import helium314.keyboard.latin.makedict.DictionaryHeader;
+import helium314.keyboard.latin.utils.ExecutorUtils;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Locally gathers statistics about the words user types and various other signals like
@@ -29,6 +33,37 @@ import java.util.Map;
 public class UserHistoryDictionary extends ExpandableBinaryDictionary {
     static final String NAME = UserHistoryDictionary.class.getSimpleName();
 
+    // Learned words are collected and applied together, so the write lock is not taken for every
+    // word while typing. Updates are applied after this delay, or when the input is finished.
+    private static final long PENDING_UPDATES_DELAY_MILLIS = 3000;
+    private static final int MAX_PENDING_UPDATES = 50;
+
+    // Updates are not coalesced into one update per n-gram with a count: for existing entries the
+    // forgetting curve (ForgettingCurveUtils::createUpdatedHistoricalInfo) ignores the count and
+    // adds 1, so a merged update would be counted like a single occurrence. Applying merged updates
+    // correctly would need one native update per occurrence, so merging would not save any work.
+    private final ArrayList<PendingUpdate> mPendingUpdates = new ArrayList<>(); // synchronized using itself
+    private boolean mIsApplyingPendingUpdatesScheduled; // synchronized using {@link #mPendingUpdates}
+    // after closing, new updates are dropped and scheduled updates must not reopen the dictionary
+    private boolean mIsClosed; // synchronized using {@link #mPendingUpdates}
+
+    private static final class PendingUpdate {
+        final NgramContext mNgramContext;
+        final String mWord;
+        final boolean mIsValid;
+        final int mTimestamp;
+        @Nullable final Runnable mOnApplied;
+
+        PendingUpdate(final NgramContext ngramContext, final String word, final boolean isValid,
+                final int timestamp, @Nullable final Runnable onApplied) {
+            mNgramContext = ngramContext;
+            mWord = word;
+            mIsValid = isValid;
+            mTimestamp = timestamp;
+            mOnApplied = onApplied;
+        }
+    }
+
     // TODO: Make this constructor private
     UserHistoryDictionary(final Context context, final Locale locale) {
         super(context, getUserHistoryDictName(NAME, locale, null), locale, Dictionary.TYPE_USER_HISTORY, null);
@@ -61,11 +96,134 @@ public class UserHistoryDictionary extends ExpandableBinaryDictionary {
     public static void addToDictionary(final ExpandableBinaryDictionary userHistoryDictionary,
             @NonNull final NgramContext ngramContext, final String word, final boolean isValid,
             final int timestamp) {
+        addToDictionary(userHistoryDictionary, ngramContext, word, isValid, timestamp, null);
+    }
+
+    /**
+     * Same as {@link #addToDictionary(ExpandableBinaryDictionary, NgramContext, String, boolean, int)},
+     * but the word may be added later. The ngramContext must not be modified afterwards.
+     *
+     * @param onApplied called on a background thread once the word has been added
+     */
+    public static void addToDictionary(final ExpandableBinaryDictionary userHistoryDictionary,
+            @NonNull final NgramContext ngramContext, final String word, final boolean isValid,
+            final int timestamp, @Nullable final Runnable onApplied) {
         if (word.length() > BinaryDictionary.DICTIONARY_MAX_WORD_LENGTH) {
             return;
         }
+        if (userHistoryDictionary instanceof UserHistoryDictionary) {
+            ((UserHistoryDictionary) userHistoryDictionary).addPendingUpdate(ngramContext, word,
+                    isValid, timestamp, onApplied);
+            return;
+        }
         userHistoryDictionary.updateEntriesForWord(ngramContext, word,
                 isValid, 1 /* count */, timestamp);
+        if (onApplied != null) {
+            onApplied.run();
+        }
+    }
+
+    private void addPendingUpdate(final NgramContext ngramContext, final String word,
+            final boolean isValid, final int timestamp, @Nullable final Runnable onApplied) {
+        final long delay;
+        synchronized (mPendingUpdates) {
+            if (mIsClosed) {
+                return;
+            }
+            mPendingUpdates.add(new PendingUpdate(ngramContext, word, isValid, timestamp, onApplied));
+            if (mPendingUpdates.size() >= MAX_PENDING_UPDATES) {
+                delay = 0;
+            } else if (!mIsApplyingPendingUpdatesScheduled) {
+                delay = PENDING_UPDATES_DELAY_MILLIS;
+            } else {
+                return;
+            }
+            mIsApplyingPendingUpdatesScheduled = true;
+        }
+        ExecutorUtils.getBackgroundExecutor(ExecutorUtils.KEYBOARD).schedule(
+                () -> asyncExecuteTaskWithUpdateLock(this::applyScheduledUpdatesLocked),
+                delay, TimeUnit.MILLISECONDS);
+    }
+
+    // Unlike the update methods, this doesn't reload the dictionary, which may be closed already.
+    private void applyScheduledUpdatesLocked() {
+        if (getBinaryDictionary() == null) {
+            synchronized (mPendingUpdates) {
+                // applied when the next word is added, or dropped if the dictionary has been closed
+                mIsApplyingPendingUpdatesScheduled = false;
+            }
+            return;
+        }
+        runGCIfRequiredLocked(true /* mindsBlockByGC */);
+        applyPendingUpdatesLocked();
+    }
+
+    @Override
+    protected void applyPendingUpdatesLocked() {
+        final ArrayList<PendingUpdate> pendingUpdates;
+        synchronized (mPendingUpdates) {
+            pendingUpdates = new ArrayList<>(mPendingUpdates);
+            mPendingUpdates.clear();
+            mIsApplyingPendingUpdatesScheduled = false;
+        }
+        if (pendingUpdates.isEmpty()) {
+            return;
+        }
+        runWithWriteLock(() -> {
+            for (final PendingUpdate pendingUpdate : pendingUpdates) {
+                updateEntriesForWordLocked(pendingUpdate.mNgramContext, pendingUpdate.mWord,
+                        pendingUpdate.mIsValid, 1 /* count */, pendingUpdate.mTimestamp);
+            }
+        });
+        for (final PendingUpdate pendingUpdate : pendingUpdates) {
+            if (pendingUpdate.mOnApplied != null) {
+                pendingUpdate.mOnApplied.run();
+            }
+        }
+    }
+
+    @Override
+    public void removeUnigramEntryDynamically(final String word) {
+        // don't add the word again after removing it
+        synchronized (mPendingUpdates) {
+            final Iterator<PendingUpdate> iterator = mPendingUpdates.iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().mWord.equals(word)) {
+                    iterator.remove();
+                }
+            }
+        }
+        super.removeUnigramEntryDynamically(word);
+    }
+
+    @Override
+    public void clear() {
+        synchronized (mPendingUpdates) {
+            mPendingUpdates.clear();
+            mIsApplyingPendingUpdatesScheduled = false;
+        }
+        super.clear();
+    }
+
+    @Override
+    public void close() {
+        synchronized (mPendingUpdates) {
+            mIsClosed = true;
+        }
+        super.close();
+    }
+
+    @Override
+    protected void onClosingLocked() {
+        if (getBinaryDictionary() == null) {
+            synchronized (mPendingUpdates) {
+                mPendingUpdates.clear();
+            }
+            return;
+        }
+        // closing doesn't flush, and onFinishInput may run after this
+        applyPendingUpdatesLocked();
+        flushBeforeClosingLocked();
     }
 
     @Override
@@ -13,10 +13,16 @@ public final class DebugSettings {
     public static final String PREF_DEBUG_MODE = "debug_mode";
     public static final String PREF_FORCE_NON_DISTINCT_MULTITOUCH = "force_non_distinct_multitouch";
     public static final String PREF_SLIDING_KEY_INPUT_PREVIEW = "sliding_key_input_preview";
+    public static final String PREF_KEY_RENDER_NODES = "key_render_nodes";
+    public static final String PREF_INCREMENTAL_GESTURE_TRAIL = "incremental_gesture_trail";
     public static final String PREF_SHOW_DEBUG_SETTINGS = "show_debug_settings";
     public static final String PREF_KEY_DUMP_DICT_PREFIX = "dump_dictionaries";
 
     public static final String PREF_SHOW_SUGGESTION_INFOS = "show_suggestion_infos";
+    public static final String PREF_LATENCY_STATS = "latency_stats";
+    public static final String PREF_EXPORT_LATENCY_TRACE = "export_latency_trace";
+    public static final String PREF_STARTUP_PHASES = "startup_phases";
+    public static final String PREF_REPLAY_GESTURE_DATA = "replay_gesture_data";
     private DebugSettings() {
         // This class is not publicly instantiable.
     }
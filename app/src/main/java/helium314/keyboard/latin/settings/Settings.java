@@ -25,6 +25,7 @@ import androidx.annotation.StringRes;
 
 import helium314.keyboard.compat.ConfigurationCompatKt;
 import helium314.keyboard.keyboard.KeyboardActionListener;
+import helium314.keyboard.keyboard.internal.KeyLabelAtlas;
 import helium314.keyboard.latin.AudioAndHapticFeedbackManager;
 import helium314.keyboard.latin.InputAttributes;
 import helium314.keyboard.latin.R;
@@ -32,6 +33,7 @@ import helium314.keyboard.latin.RichInputMethodManager;
 import helium314.keyboard.latin.RichInputMethodSubtype;
 import helium314.keyboard.latin.common.StringUtils;
 import helium314.keyboard.latin.utils.DeviceProtectedUtils;
+import helium314.keyboard.latin.utils.ExecutorUtils;
 import helium314.keyboard.latin.utils.KtxKt;
 import helium314.keyboard.latin.utils.LayoutType;
 import helium314.keyboard.latin.utils.Log;
@@ -47,6 +49,7 @@ import java.io.File;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
 
 public final class Settings implements SharedPreferences.OnSharedPreferenceChangeListener {
@@ -118,6 +121,7 @@ public final class Settings implements SharedPreferences.OnSharedPreferenceChang
     public static final String PREF_VIBRATION_DURATION_SETTINGS = "vibration_duration_settings";
     public static final String PREF_KEYPRESS_SOUND_VOLUME = "keypress_sound_volume";
     public static final String PREF_KEY_LONGPRESS_TIMEOUT = "key_longpress_timeout";
+    public static final String PREF_PREBUILT_KEYBOARDS = "prebuilt_keyboards";
     public static final String PREF_ENABLE_EMOJI_ALT_PHYSICAL_KEY = "enable_emoji_alt_physical_key";
     public static final String PREF_GESTURE_PREVIEW_TRAIL = "gesture_preview_trail";
     public static final String PREF_GESTURE_FLOATING_PREVIEW_TEXT = "gesture_floating_preview_text";
@@ -191,8 +195,13 @@ public final class Settings implements SharedPreferences.OnSharedPreferenceChang
 
     private Context mContext;
     private SharedPreferences mPrefs;
-    private SettingsValues mSettingsValues;
+    // replaced as a whole, so readers always see consistent settings
+    private volatile SettingsValues mSettingsValues;
     private final ReentrantLock mSettingsValuesLock = new ReentrantLock();
+    // increased on every relevant preference change, settings are outdated if their generation is lower
+    private final AtomicInteger mPrefsGeneration = new AtomicInteger();
+    private volatile int mSettingsValuesGeneration;
+    private Configuration mSettingsValuesConfiguration;
 
     // static cache for background images to avoid potentially slow reload on every settings reload
     private final static Drawable[] sCachedBackgroundImages = new Drawable[4];
@@ -217,7 +226,7 @@ public final class Settings implements SharedPreferences.OnSharedPreferenceChang
     }
 
     public static SettingsValues getValues() {
-        return sInstance.mSettingsValues;
+        return sInstance.getCurrent();
     }
 
     public static Context getCurrentContext() {
@@ -246,20 +255,17 @@ public final class Settings implements SharedPreferences.OnSharedPreferenceChang
     public void onSharedPreferenceChanged(final SharedPreferences prefs, final String key) {
         if (dontReloadOnChanged.contains(key) || (key != null && key.startsWith(PREF_SAVED_APP_SUBTYPE_PREFIX)))
             return;
-        mSettingsValuesLock.lock();
-        try {
-            if (mSettingsValues == null) {
-                // TODO: Introduce a static function to register this class and ensure that
-                // loadSettings must be called before "onSharedPreferenceChanged" is called.
-                Log.w(TAG, "onSharedPreferenceChanged called before loadSettings.");
-                return;
-            }
-            ToolbarUtilsKt.clearCustomToolbarKeyCodes();
-            loadSettings(mContext, mSettingsValues.mLocale, mSettingsValues.mInputAttributes);
-            StatsUtils.onLoadSettings(mSettingsValues);
-        } finally {
-            mSettingsValuesLock.unlock();
+        if (mSettingsValues == null) {
+            // TODO: Introduce a static function to register this class and ensure that
+            // loadSettings must be called before "onSharedPreferenceChanged" is called.
+            Log.w(TAG, "onSharedPreferenceChanged called before loadSettings.");
+            return;
         }
+        ToolbarUtilsKt.clearCustomToolbarKeyCodes();
+        // often several preferences are changed at once, and usually nothing reads the settings right away,
+        // so they are created in background, and only synchronously if they are accessed before
+        mPrefsGeneration.incrementAndGet();
+        ExecutorUtils.getBackgroundExecutor(ExecutorUtils.KEYBOARD).execute(this::reloadIfOutdated);
         if (PREF_ADDITIONAL_SUBTYPES.equals(key)) {
             SubtypeSettings.INSTANCE.reloadEnabledSubtypes(mContext);
         }
@@ -276,17 +282,54 @@ public final class Settings implements SharedPreferences.OnSharedPreferenceChang
     public void loadSettings(final Context context, final Locale locale,
                              @NonNull final InputAttributes inputAttributes) {
         mSettingsValuesLock.lock();
-        mContext = context;
         try {
-            final SharedPreferences prefs = mPrefs;
-            Log.i(TAG, "loadSettings");
-            mSettingsValues = RunInLocaleKt.runInLocale(context, locale,
-                    ctx -> new SettingsValues(ctx, prefs, ctx.getResources(), inputAttributes));
+            final SettingsValues current = mSettingsValues;
+            // usually only the input field changed, then there is no need to read all preferences again
+            if (current != null && context == mContext && mSettingsValuesGeneration == mPrefsGeneration.get()
+                    && locale.equals(current.mLocale) && current.hasSameSelectedSubtype(mPrefs)
+                    && context.getResources().getConfiguration().equals(mSettingsValuesConfiguration)) {
+                mSettingsValues = new SettingsValues(current, inputAttributes);
+                return;
+            }
+            mContext = context;
+            createSettingsValues(locale, inputAttributes);
         } finally {
             mSettingsValuesLock.unlock();
         }
     }
 
+    /** Marks the current settings as outdated, e.g. for theme changes that are not stored in preferences. */
+    public void invalidate() {
+        mPrefsGeneration.incrementAndGet();
+    }
+
+    /** Creates new settings if preferences changed since the current settings were created. */
+    private void reloadIfOutdated() {
+        mSettingsValuesLock.lock();
+        try {
+            final SettingsValues current = mSettingsValues;
+            if (current == null || mSettingsValuesGeneration == mPrefsGeneration.get()) return;
+            createSettingsValues(current.mLocale, current.mInputAttributes);
+            StatsUtils.onLoadSettings(mSettingsValues);
+        } finally {
+            mSettingsValuesLock.unlock();
+        }
+    }
+
+    // must be called with mSettingsValuesLock held
+    private void createSettingsValues(final Locale locale, @NonNull final InputAttributes inputAttributes) {
+        final SharedPreferences prefs = mPrefs;
+        final Context context = mContext;
+        // read before creating, so changes while creating result in another reload
+        final int generation = mPrefsGeneration.get();
+        Log.i(TAG, "loadSettings");
+        final SettingsValues settingsValues = RunInLocaleKt.runInLocale(context, locale,
+                ctx -> new SettingsValues(ctx, prefs, ctx.getResources(), inputAttributes));
+        mSettingsValuesConfiguration = new Configuration(context.getResources().getConfiguration());
+        mSettingsValues = settingsValues;
+        mSettingsValuesGeneration = generation;
+    }
+
     public void stopListener() {
         mPrefs.unregisterOnSharedPreferenceChangeListener(this);
     }
@@ -297,6 +340,11 @@ public final class Settings implements SharedPreferences.OnSharedPreferenceChang
 
     // TODO: Remove this method and add proxy method to SettingsValues.
     public SettingsValues getCurrent() {
+        // settings are read right after changing preferences in some places, so outdated settings are never returned:
+        // this waits for a reload running in background, and creates the settings if they are still outdated
+        // when called while creating settings, the old settings are returned
+        if (mSettingsValuesGeneration != mPrefsGeneration.get() && !mSettingsValuesLock.isHeldByCurrentThread())
+            reloadIfOutdated();
         return mSettingsValues;
     }
 
@@ -381,8 +429,9 @@ public final class Settings implements SharedPreferences.OnSharedPreferenceChang
     }
 
     public void writeOneHandedModeEnabled(final boolean enabled) {
-        final boolean landscape = mSettingsValues.mDisplayOrientation == Configuration.ORIENTATION_LANDSCAPE;
-        final int index = SettingsKt.findIndexOfDefaultSetting(landscape, mSettingsValues.mIsSplitKeyboardEnabled);
+        final SettingsValues settingsValues = getCurrent();
+        final boolean landscape = settingsValues.mDisplayOrientation == Configuration.ORIENTATION_LANDSCAPE;
+        final int index = SettingsKt.findIndexOfDefaultSetting(landscape, settingsValues.mIsSplitKeyboardEnabled);
         final String key = SettingsKt.createPrefKeyForBooleanSettings(PREF_ONE_HANDED_MODE_PREFIX, index, 2);
         mPrefs.edit().putBoolean(key, enabled).apply();
     }
@@ -394,8 +443,9 @@ public final class Settings implements SharedPreferences.OnSharedPreferenceChang
     }
 
     public void writeOneHandedModeScale(final Float scale) {
-        final boolean landscape = mSettingsValues.mDisplayOrientation == Configuration.ORIENTATION_LANDSCAPE;
-        final int index = SettingsKt.findIndexOfDefaultSetting(landscape, mSettingsValues.mIsSplitKeyboardEnabled);
+        final SettingsValues settingsValues = getCurrent();
+        final boolean landscape = settingsValues.mDisplayOrientation == Configuration.ORIENTATION_LANDSCAPE;
+        final int index = SettingsKt.findIndexOfDefaultSetting(landscape, settingsValues.mIsSplitKeyboardEnabled);
         final String key = SettingsKt.createPrefKeyForBooleanSettings(PREF_ONE_HANDED_SCALE_PREFIX, index, 2);
         mPrefs.edit().putFloat(key, scale).apply();
     }
@@ -407,8 +457,9 @@ public final class Settings implements SharedPreferences.OnSharedPreferenceChang
     }
 
     public void writeOneHandedModeGravity(final int gravity) {
-        final boolean landscape = mSettingsValues.mDisplayOrientation == Configuration.ORIENTATION_LANDSCAPE;
-        final int index = SettingsKt.findIndexOfDefaultSetting(landscape, mSettingsValues.mIsSplitKeyboardEnabled);
+        final SettingsValues settingsValues = getCurrent();
+        final boolean landscape = settingsValues.mDisplayOrientation == Configuration.ORIENTATION_LANDSCAPE;
+        final int index = SettingsKt.findIndexOfDefaultSetting(landscape, settingsValues.mIsSplitKeyboardEnabled);
         final String key = SettingsKt.createPrefKeyForBooleanSettings(PREF_ONE_HANDED_GRAVITY_PREFIX, index, 2);
         mPrefs.edit().putInt(key, gravity).apply();
     }
@@ -589,5 +640,6 @@ public final class Settings implements SharedPreferences.OnSharedPreferenceChang
         sCustomTypefaceLoaded = false;
         sCachedEmojiTypeface = null;
         sCustomEmojiTypefaceLoaded = false;
+        KeyLabelAtlas.clear();
     }
 }
@@ -16,6 +16,7 @@ import android.view.inputmethod.EditorInfo;
 import android.view.inputmethod.InputMethodSubtype;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.core.util.TypedValueCompat;
 
 import helium314.keyboard.compat.ConfigurationCompatKt;
@@ -106,6 +107,7 @@ public class SettingsValues {
     public final int mGestureTrailFadeoutDuration;
     public final boolean mSlidingKeyInputPreviewEnabled;
     public final int mKeyLongpressTimeout;
+    public final int mPrebuiltKeyboards;
     public final boolean mEnableEmojiAltPhysicalKey;
     public final boolean mIsSplitKeyboardEnabled;
     public final float mSplitKeyboardSpacerRelativeWidth;
@@ -158,153 +160,290 @@ public class SettingsValues {
     // User-defined colors
     public final Colors mColors;
 
+    // Preferences that are combined with input attributes, for creating settings for a different input field
+    private final String mSelectedSubtypePref;
+    private final boolean mDoubleSpacePeriodPref;
+    private final boolean mMoreAutoCorrectionPref;
+    private final float mAutoCorrectThresholdPref;
+    private final boolean mGestureFloatingPreviewTextPref;
+    private final boolean mAlwaysShowSuggestionsPref;
+    private final boolean mAlwaysShowSuggestionsExceptWebTextPref;
+    private final boolean mShowSuggestionsPref;
+    private final boolean mAlwaysIncognitoPref;
+    private final boolean mAutoHideToolbarPref;
+
     // creation of Colors and SpacingAndPunctuations are the slowest parts in here, but still ok
     public SettingsValues(final Context context, final SharedPreferences prefs, final Resources res,
                           @NonNull final InputAttributes inputAttributes) {
-        mLocale = ConfigurationCompatKt.locale(res.getConfiguration());
-        mDisplayOrientation = res.getConfiguration().orientation;
-        final InputMethodSubtype selectedSubtype = SubtypeSettings.INSTANCE.getSelectedSubtype(prefs);
+        this(null, context, prefs, res, inputAttributes);
+    }
 
-        // Store the input attributes
-        mInputAttributes = inputAttributes;
+    /**
+     * Creates settings for a different input field, without reading preferences and resources again.
+     * Only valid if preferences and configuration did not change since {@code base} was created.
+     */
+    public SettingsValues(@NonNull final SettingsValues base, @NonNull final InputAttributes inputAttributes) {
+        this(base, null, null, null, inputAttributes);
+    }
+
+    private SettingsValues(@Nullable final SettingsValues base, final Context context, final SharedPreferences prefs,
+                           final Resources res, @NonNull final InputAttributes inputAttributes) {
+        if (base == null) {
+            mLocale = ConfigurationCompatKt.locale(res.getConfiguration());
+            mDisplayOrientation = res.getConfiguration().orientation;
+            final InputMethodSubtype selectedSubtype = SubtypeSettings.INSTANCE.getSelectedSubtype(prefs);
+            mSelectedSubtypePref = prefs.getString(Settings.PREF_SELECTED_SUBTYPE, Defaults.PREF_SELECTED_SUBTYPE);
+
+            // Get the settings preferences
+            mToolbarMode = Settings.readToolbarMode(prefs);
+            mToolbarHidingGlobal = prefs.getBoolean(Settings.PREF_TOOLBAR_HIDING_GLOBAL, Defaults.PREF_TOOLBAR_HIDING_GLOBAL);
+            mAutoCap = prefs.getBoolean(Settings.PREF_AUTO_CAP, Defaults.PREF_AUTO_CAP) && ScriptUtils.scriptSupportsUppercase(mLocale);
+            mVibrateOn = Settings.readVibrationEnabled(prefs);
+            mVibrateInDndMode = prefs.getBoolean(Settings.PREF_VIBRATE_IN_DND_MODE, Defaults.PREF_VIBRATE_IN_DND_MODE);
+            mSoundOn = prefs.getBoolean(Settings.PREF_SOUND_ON, Defaults.PREF_SOUND_ON);
+            mSuggestEmojis = prefs.getBoolean(Settings.PREF_SUGGEST_EMOJIS, Defaults.PREF_SUGGEST_EMOJIS);
+            mInlineEmojiSearch = prefs.getBoolean(Settings.PREF_INLINE_EMOJI_SEARCH, Defaults.PREF_INLINE_EMOJI_SEARCH);
+            mShowEmojiDescriptions = prefs.getBoolean(Settings.PREF_SHOW_EMOJI_DESCRIPTIONS, Defaults.PREF_SHOW_EMOJI_DESCRIPTIONS);
+            mKeyPreviewPopupOn = prefs.getBoolean(Settings.PREF_POPUP_ON, Defaults.PREF_POPUP_ON);
+            mSlidingKeyInputPreviewEnabled = prefs.getBoolean(
+                    DebugSettings.PREF_SLIDING_KEY_INPUT_PREVIEW, Defaults.PREF_SLIDING_KEY_INPUT_PREVIEW);
+            final String languagePref = prefs.getString(Settings.PREF_LANGUAGE_SWITCH_KEY, Defaults.PREF_LANGUAGE_SWITCH_KEY);
+            mLanguageSwitchKeyToOtherImes = languagePref.equals("input_method") || languagePref.equals("both");
+            mLanguageSwitchKeyToOtherSubtypes = languagePref.equals("internal") || languagePref.equals("both");
+            mShowsLanguageSwitchKey = prefs.getBoolean(Settings.PREF_SHOW_LANGUAGE_SWITCH_KEY, Defaults.PREF_SHOW_LANGUAGE_SWITCH_KEY);
+            mShowsNumberRow = prefs.getBoolean(Settings.PREF_SHOW_NUMBER_ROW, Defaults.PREF_SHOW_NUMBER_ROW);
+            mShowsNumberRowInSymbols = prefs.getBoolean(Settings.PREF_SHOW_NUMBER_ROW_IN_SYMBOLS, Defaults.PREF_SHOW_NUMBER_ROW_IN_SYMBOLS);
+            mLocalizedNumberRow = SubtypeUtilsKt.getHasLocalizedNumberRow(selectedSubtype, prefs);
+            mShowNumberRowHints = prefs.getBoolean(Settings.PREF_SHOW_NUMBER_ROW_HINTS, Defaults.PREF_SHOW_NUMBER_ROW_HINTS);
+            mShowsHints = prefs.getBoolean(Settings.PREF_SHOW_HINTS, Defaults.PREF_SHOW_HINTS);
+            mShowsPopupHints = prefs.getBoolean(Settings.PREF_SHOW_POPUP_HINTS, Defaults.PREF_SHOW_POPUP_HINTS);
+            mShowTldPopupKeys = prefs.getBoolean(Settings.PREF_SHOW_TLD_POPUP_KEYS, Defaults.PREF_SHOW_TLD_POPUP_KEYS);
+            mSpaceForLangChange = prefs.getBoolean(Settings.PREF_SPACE_TO_CHANGE_LANG, Defaults.PREF_SPACE_TO_CHANGE_LANG);
+            mShowsEmojiKey = prefs.getBoolean(Settings.PREF_SHOW_EMOJI_KEY, Defaults.PREF_SHOW_EMOJI_KEY);
+            mVarToolbarDirection = mToolbarMode != ToolbarMode.HIDDEN && prefs.getBoolean(Settings.PREF_VARIABLE_TOOLBAR_DIRECTION, Defaults.PREF_VARIABLE_TOOLBAR_DIRECTION);
+            mUsePersonalizedDicts = prefs.getBoolean(Settings.PREF_KEY_USE_PERSONALIZED_DICTS, Defaults.PREF_KEY_USE_PERSONALIZED_DICTS);
+            mDoubleSpacePeriodPref = prefs.getBoolean(Settings.PREF_KEY_USE_DOUBLE_SPACE_PERIOD, Defaults.PREF_KEY_USE_DOUBLE_SPACE_PERIOD);
+            mBlockPotentiallyOffensive = prefs.getBoolean(Settings.PREF_BLOCK_POTENTIALLY_OFFENSIVE, Defaults.PREF_BLOCK_POTENTIALLY_OFFENSIVE);
+            mUrlDetectionEnabled = prefs.getBoolean(Settings.PREF_URL_DETECTION, Defaults.PREF_URL_DETECTION);
+            mAutoCorrectionEnabledPerUserSettings = prefs.getBoolean(Settings.PREF_AUTO_CORRECTION, Defaults.PREF_AUTO_CORRECTION);
+            mMoreAutoCorrectionPref = prefs.getBoolean(Settings.PREF_MORE_AUTO_CORRECTION, Defaults.PREF_MORE_AUTO_CORRECTION);
+            mCenterSuggestionTextToEnter = prefs.getBoolean(Settings.PREF_CENTER_SUGGESTION_TEXT_TO_ENTER, Defaults.PREF_CENTER_SUGGESTION_TEXT_TO_ENTER);
+            mAutoCorrectThresholdPref = prefs.getFloat(Settings.PREF_AUTO_CORRECT_THRESHOLD, Defaults.PREF_AUTO_CORRECT_THRESHOLD);
+            mAutoCorrectShortcuts = prefs.getBoolean(Settings.PREF_AUTOCORRECT_SHORTCUTS, Defaults.PREF_AUTOCORRECT_SHORTCUTS);
+            mBackspaceRevertsAutocorrect = prefs.getBoolean(Settings.PREF_BACKSPACE_REVERTS_AUTOCORRECT, Defaults.PREF_BACKSPACE_REVERTS_AUTOCORRECT);
+            mBigramPredictionEnabled = prefs.getBoolean(Settings.PREF_BIGRAM_PREDICTIONS, Defaults.PREF_BIGRAM_PREDICTIONS);
+            mSuggestPunctuation = prefs.getBoolean(Settings.PREF_SUGGEST_PUNCTUATION, Defaults.PREF_SUGGEST_PUNCTUATION);
+            mSuggestClipboardContent = prefs.getBoolean(Settings.PREF_SUGGEST_CLIPBOARD_CONTENT, Defaults.PREF_SUGGEST_CLIPBOARD_CONTENT);
+            mDoubleSpacePeriodTimeout = 1100; // ms
+            mHasHardwareKeyboard = Settings.readHasHardwareKeyboard(res.getConfiguration());
+            final boolean isLandscape = mDisplayOrientation == Configuration.ORIENTATION_LANDSCAPE;
+            final float displayWidthDp = TypedValueCompat.pxToDp(res.getDisplayMetrics().widthPixels, res.getDisplayMetrics());
+            mIsSplitKeyboardEnabled = Settings.readSplitKeyboardEnabled(prefs, isLandscape);
+            // determine spacerWidth from display width and scale setting
+            mSplitKeyboardSpacerRelativeWidth = mIsSplitKeyboardEnabled
+                    ? Math.min(Math.max((displayWidthDp - 600) / 600f + 0.15f, 0.15f), 0.35f) * Settings.readSplitSpacerScale(prefs, isLandscape)
+                    : 0f;
+            mQuickPinToolbarKeys = mToolbarMode == ToolbarMode.EXPANDABLE && prefs.getBoolean(Settings.PREF_QUICK_PIN_TOOLBAR_KEYS, Defaults.PREF_QUICK_PIN_TOOLBAR_KEYS);
+            mScreenMetrics = Settings.readScreenMetrics(res);
+
+            // Compute other readable settings
+            mKeyLongpressTimeout = prefs.getInt(Settings.PREF_KEY_LONGPRESS_TIMEOUT, Defaults.PREF_KEY_LONGPRESS_TIMEOUT);
+            mPrebuiltKeyboards = prefs.getInt(Settings.PREF_PREBUILT_KEYBOARDS, Defaults.PREF_PREBUILT_KEYBOARDS);
+            mKeypressVibrationDuration = prefs.getInt(Settings.PREF_VIBRATION_DURATION_SETTINGS, Defaults.PREF_VIBRATION_DURATION_SETTINGS);
+            mKeypressSoundVolume = prefs.getFloat(Settings.PREF_KEYPRESS_SOUND_VOLUME, Defaults.PREF_KEYPRESS_SOUND_VOLUME);
+            mEnableEmojiAltPhysicalKey = prefs.getBoolean(Settings.PREF_ENABLE_EMOJI_ALT_PHYSICAL_KEY, Defaults.PREF_ENABLE_EMOJI_ALT_PHYSICAL_KEY);
+            mGestureInputEnabled = JniUtils.sHaveGestureLib && prefs.getBoolean(Settings.PREF_GESTURE_INPUT, Defaults.PREF_GESTURE_INPUT);
+            mGestureTrailEnabled = prefs.getBoolean(Settings.PREF_GESTURE_PREVIEW_TRAIL, Defaults.PREF_GESTURE_PREVIEW_TRAIL);
+            mGestureFloatingPreviewTextPref = prefs.getBoolean(Settings.PREF_GESTURE_FLOATING_PREVIEW_TEXT, Defaults.PREF_GESTURE_FLOATING_PREVIEW_TEXT);
+            mGestureFloatingPreviewDynamicEnabled = Settings.readGestureDynamicPreviewEnabled(prefs);
+            mGestureFastTypingCooldown = prefs.getInt(Settings.PREF_GESTURE_FAST_TYPING_COOLDOWN, Defaults.PREF_GESTURE_FAST_TYPING_COOLDOWN);
+            mGestureTrailFadeoutDuration = prefs.getInt(Settings.PREF_GESTURE_TRAIL_FADEOUT_DURATION, Defaults.PREF_GESTURE_TRAIL_FADEOUT_DURATION);
+            mSuggestionStripHiddenPerUserSettings = mToolbarMode == ToolbarMode.HIDDEN || mToolbarMode == ToolbarMode.TOOLBAR_KEYS;
+            mAlwaysShowSuggestionsPref = prefs.getBoolean(Settings.PREF_ALWAYS_SHOW_SUGGESTIONS, Defaults.PREF_ALWAYS_SHOW_SUGGESTIONS);
+            mAlwaysShowSuggestionsExceptWebTextPref = prefs.getBoolean(Settings.PREF_ALWAYS_SHOW_SUGGESTIONS_EXCEPT_WEB_TEXT, Defaults.PREF_ALWAYS_SHOW_SUGGESTIONS_EXCEPT_WEB_TEXT);
+            mShowSuggestionsPref = prefs.getBoolean(Settings.PREF_SHOW_SUGGESTIONS, Defaults.PREF_SHOW_SUGGESTIONS);
+            mSecondaryStripVisible = mToolbarMode != ToolbarMode.HIDDEN || ! mToolbarHidingGlobal;
+            mAlwaysIncognitoPref = prefs.getBoolean(Settings.PREF_ALWAYS_INCOGNITO_MODE, Defaults.PREF_ALWAYS_INCOGNITO_MODE);
+            mKeyboardHeightScale = Settings.readHeightScale(prefs, isLandscape);
+            mSpaceSwipeHorizontal = Settings.readHorizontalSpaceSwipe(prefs);
+            mSpaceSwipeVertical = Settings.readVerticalSpaceSwipe(prefs);
+            mLanguageSwipeDistance = prefs.getInt(Settings.PREF_LANGUAGE_SWIPE_DISTANCE, Defaults.PREF_LANGUAGE_SWIPE_DISTANCE);
+            mDeleteSwipeEnabled = prefs.getBoolean(Settings.PREF_DELETE_SWIPE, Defaults.PREF_DELETE_SWIPE);
+            mAutospaceAfterPunctuation = prefs.getBoolean(Settings.PREF_AUTOSPACE_AFTER_PUNCTUATION, Defaults.PREF_AUTOSPACE_AFTER_PUNCTUATION);
+            mAutospaceAfterSuggestion = prefs.getBoolean(Settings.PREF_AUTOSPACE_AFTER_SUGGESTION, Defaults.PREF_AUTOSPACE_AFTER_SUGGESTION);
+            mAutospaceAfterGestureTyping = prefs.getBoolean(Settings.PREF_AUTOSPACE_AFTER_GESTURE_TYPING, Defaults.PREF_AUTOSPACE_AFTER_GESTURE_TYPING);
+            mAutospaceBeforeGestureTyping = prefs.getBoolean(Settings.PREF_AUTOSPACE_BEFORE_GESTURE_TYPING, Defaults.PREF_AUTOSPACE_BEFORE_GESTURE_TYPING);
+            mShiftRemovesAutospace = prefs.getBoolean(Settings.PREF_SHIFT_REMOVES_AUTOSPACE, Defaults.PREF_SHIFT_REMOVES_AUTOSPACE);
+            mClipboardHistoryEnabled = prefs.getBoolean(Settings.PREF_ENABLE_CLIPBOARD_HISTORY, Defaults.PREF_ENABLE_CLIPBOARD_HISTORY);
+            mClipboardHistoryRetentionTime = prefs.getInt(Settings.PREF_CLIPBOARD_HISTORY_RETENTION_TIME, Defaults.PREF_CLIPBOARD_HISTORY_RETENTION_TIME);
+            mClipboardHistoryPinnedFirst = prefs.getBoolean(Settings.PREF_CLIPBOARD_HISTORY_PINNED_FIRST, Defaults.PREF_CLIPBOARD_HISTORY_PINNED_FIRST);
 
-        // Get the settings preferences
-        mToolbarMode = Settings.readToolbarMode(prefs);
-        mToolbarHidingGlobal = prefs.getBoolean(Settings.PREF_TOOLBAR_HIDING_GLOBAL, Defaults.PREF_TOOLBAR_HIDING_GLOBAL);
-        mAutoCap = prefs.getBoolean(Settings.PREF_AUTO_CAP, Defaults.PREF_AUTO_CAP) && ScriptUtils.scriptSupportsUppercase(mLocale);
-        mVibrateOn = Settings.readVibrationEnabled(prefs);
-        mVibrateInDndMode = prefs.getBoolean(Settings.PREF_VIBRATE_IN_DND_MODE, Defaults.PREF_VIBRATE_IN_DND_MODE);
-        mSoundOn = prefs.getBoolean(Settings.PREF_SOUND_ON, Defaults.PREF_SOUND_ON);
-        mSuggestEmojis = prefs.getBoolean(Settings.PREF_SUGGEST_EMOJIS, Defaults.PREF_SUGGEST_EMOJIS);
-        mInlineEmojiSearch = prefs.getBoolean(Settings.PREF_INLINE_EMOJI_SEARCH, Defaults.PREF_INLINE_EMOJI_SEARCH);
-        mShowEmojiDescriptions = prefs.getBoolean(Settings.PREF_SHOW_EMOJI_DESCRIPTIONS, Defaults.PREF_SHOW_EMOJI_DESCRIPTIONS);
-        mKeyPreviewPopupOn = prefs.getBoolean(Settings.PREF_POPUP_ON, Defaults.PREF_POPUP_ON);
-        mSlidingKeyInputPreviewEnabled = prefs.getBoolean(
-                DebugSettings.PREF_SLIDING_KEY_INPUT_PREVIEW, Defaults.PREF_SLIDING_KEY_INPUT_PREVIEW);
-        mShowsVoiceInputKey = mInputAttributes.mShouldShowVoiceInputKey;
-        final String languagePref = prefs.getString(Settings.PREF_LANGUAGE_SWITCH_KEY, Defaults.PREF_LANGUAGE_SWITCH_KEY);
-        mLanguageSwitchKeyToOtherImes = languagePref.equals("input_method") || languagePref.equals("both");
-        mLanguageSwitchKeyToOtherSubtypes = languagePref.equals("internal") || languagePref.equals("both");
-        mShowsLanguageSwitchKey = prefs.getBoolean(Settings.PREF_SHOW_LANGUAGE_SWITCH_KEY, Defaults.PREF_SHOW_LANGUAGE_SWITCH_KEY);
-        mShowsNumberRow = prefs.getBoolean(Settings.PREF_SHOW_NUMBER_ROW, Defaults.PREF_SHOW_NUMBER_ROW);
-        mShowsNumberRowInSymbols = prefs.getBoolean(Settings.PREF_SHOW_NUMBER_ROW_IN_SYMBOLS, Defaults.PREF_SHOW_NUMBER_ROW_IN_SYMBOLS);
-        mLocalizedNumberRow = SubtypeUtilsKt.getHasLocalizedNumberRow(selectedSubtype, prefs);
-        mShowNumberRowHints = prefs.getBoolean(Settings.PREF_SHOW_NUMBER_ROW_HINTS, Defaults.PREF_SHOW_NUMBER_ROW_HINTS);
-        mShowsHints = prefs.getBoolean(Settings.PREF_SHOW_HINTS, Defaults.PREF_SHOW_HINTS);
-        mShowsPopupHints = prefs.getBoolean(Settings.PREF_SHOW_POPUP_HINTS, Defaults.PREF_SHOW_POPUP_HINTS);
-        mShowTldPopupKeys = prefs.getBoolean(Settings.PREF_SHOW_TLD_POPUP_KEYS, Defaults.PREF_SHOW_TLD_POPUP_KEYS);
-        mSpaceForLangChange = prefs.getBoolean(Settings.PREF_SPACE_TO_CHANGE_LANG, Defaults.PREF_SPACE_TO_CHANGE_LANG);
-        mShowsEmojiKey = prefs.getBoolean(Settings.PREF_SHOW_EMOJI_KEY, Defaults.PREF_SHOW_EMOJI_KEY);
-        mVarToolbarDirection = mToolbarMode != ToolbarMode.HIDDEN && prefs.getBoolean(Settings.PREF_VARIABLE_TOOLBAR_DIRECTION, Defaults.PREF_VARIABLE_TOOLBAR_DIRECTION);
-        mUsePersonalizedDicts = prefs.getBoolean(Settings.PREF_KEY_USE_PERSONALIZED_DICTS, Defaults.PREF_KEY_USE_PERSONALIZED_DICTS);
-        mUseDoubleSpacePeriod = prefs.getBoolean(Settings.PREF_KEY_USE_DOUBLE_SPACE_PERIOD, Defaults.PREF_KEY_USE_DOUBLE_SPACE_PERIOD)
-                && inputAttributes.mIsGeneralTextInput;
-        mBlockPotentiallyOffensive = prefs.getBoolean(Settings.PREF_BLOCK_POTENTIALLY_OFFENSIVE, Defaults.PREF_BLOCK_POTENTIALLY_OFFENSIVE);
-        mUrlDetectionEnabled = prefs.getBoolean(Settings.PREF_URL_DETECTION, Defaults.PREF_URL_DETECTION);
-        mAutoCorrectionEnabledPerUserSettings = prefs.getBoolean(Settings.PREF_AUTO_CORRECTION, Defaults.PREF_AUTO_CORRECTION);
+            mOneHandedModeEnabled = Settings.readOneHandedModeEnabled(prefs, isLandscape, mIsSplitKeyboardEnabled);
+            mOneHandedModeGravity = Settings.readOneHandedModeGravity(prefs, isLandscape, mIsSplitKeyboardEnabled);
+            if (mOneHandedModeEnabled) {
+                final float baseScale = res.getFraction(R.fraction.config_one_handed_mode_width, 1, 1);
+                final float extraScale = Settings.readOneHandedModeScale(prefs, isLandscape, mIsSplitKeyboardEnabled);
+                mOneHandedModeScale = 1 - (1 - baseScale) * extraScale;
+            } else
+                mOneHandedModeScale = 1f;
+            mSecondaryLocales = SubtypeUtilsKt.getSecondaryLocales(selectedSubtype.getExtraValue());
+            mShowMorePopupKeys = selectedSubtype.isAsciiCapable()
+                    ? SubtypeUtilsKt.getMoreKeys(selectedSubtype, prefs)
+                    : LocaleKeyboardInfosKt.POPUP_KEYS_NORMAL;
+            mColors = KeyboardTheme.getColorsForCurrentTheme(context);
+
+            mPopupKeyTypes = SubtypeUtilsKt.getPopupKeyTypes(selectedSubtype, prefs);
+            mPopupKeyLabelSources = SubtypeUtilsKt.getPopupKeyLabelSources(selectedSubtype, prefs);
+            mAddToPersonalDictionary = prefs.getBoolean(Settings.PREF_ADD_TO_PERSONAL_DICTIONARY, Defaults.PREF_ADD_TO_PERSONAL_DICTIONARY);
+            mUseContactsDictionary = SettingsValues.readUseContactsEnabled(prefs, context);
+            mUseAppsDictionary = prefs.getBoolean(Settings.PREF_USE_APPS, Defaults.PREF_USE_APPS);
+            mCustomNavBarColor = prefs.getBoolean(Settings.PREF_NAVBAR_COLOR, Defaults.PREF_NAVBAR_COLOR);
+            mNarrowKeyGaps = prefs.getBoolean(Settings.PREF_NARROW_KEY_GAPS, Defaults.PREF_NARROW_KEY_GAPS);
+            mSettingsValuesForSuggestion = new SettingsValuesForSuggestion(
+                    mBlockPotentiallyOffensive,
+                    prefs.getBoolean(Settings.PREF_GESTURE_SPACE_AWARE, Defaults.PREF_GESTURE_SPACE_AWARE)
+            );
+            mSpacingAndPunctuations = new SpacingAndPunctuations(res, mUrlDetectionEnabled);
+            mBottomPaddingScale = Settings.readBottomPaddingScale(prefs, isLandscape);
+            mSidePaddingScale = Settings.readSidePaddingScale(prefs, isLandscape, mIsSplitKeyboardEnabled);
+            mLongPressSymbolsForNumpad = prefs.getBoolean(Settings.PREFS_LONG_PRESS_SYMBOLS_FOR_NUMPAD, Defaults.PREFS_LONG_PRESS_SYMBOLS_FOR_NUMPAD);
+            mAutoShowToolbar = mToolbarMode == ToolbarMode.EXPANDABLE && prefs.getBoolean(Settings.PREF_AUTO_SHOW_TOOLBAR, Defaults.PREF_AUTO_SHOW_TOOLBAR);
+            mAutoHideToolbarPref = prefs.getBoolean(Settings.PREF_AUTO_HIDE_TOOLBAR, Defaults.PREF_AUTO_HIDE_TOOLBAR);
+            mAlphaAfterEmojiInEmojiView = prefs.getBoolean(Settings.PREF_ABC_AFTER_EMOJI, Defaults.PREF_ABC_AFTER_EMOJI);
+            mAlphaAfterClipHistoryEntry = prefs.getBoolean(Settings.PREF_ABC_AFTER_CLIP, Defaults.PREF_ABC_AFTER_CLIP);
+            mAlphaAfterSymbolAndSpace = prefs.getBoolean(Settings.PREF_ABC_AFTER_SYMBOL_SPACE, Defaults.PREF_ABC_AFTER_SYMBOL_SPACE);
+            mAlphaAfterNumpadAndSpace = prefs.getBoolean(Settings.PREF_ABC_AFTER_NUMPAD_SPACE, Defaults.PREF_ABC_AFTER_NUMPAD_SPACE);
+            mRemoveRedundantPopups = prefs.getBoolean(Settings.PREF_REMOVE_REDUNDANT_POPUPS, Defaults.PREF_REMOVE_REDUNDANT_POPUPS);
+            mSpaceBarText = prefs.getString(Settings.PREF_SPACE_BAR_TEXT, Defaults.PREF_SPACE_BAR_TEXT);
+            mFontSizeMultiplier = prefs.getFloat(Settings.PREF_FONT_SCALE, Defaults.PREF_FONT_SCALE);
+            mFontSizeMultiplierEmoji = prefs.getFloat(Settings.PREF_EMOJI_FONT_SCALE, Defaults.PREF_EMOJI_FONT_SCALE);
+            mEmojiKeyFit = prefs.getBoolean(Settings.PREF_EMOJI_KEY_FIT, Defaults.PREF_EMOJI_KEY_FIT);
+        } else {
+            mSpacingAndPunctuations = base.mSpacingAndPunctuations;
+            mDoubleSpacePeriodTimeout = base.mDoubleSpacePeriodTimeout;
+            mLocale = base.mLocale;
+            mHasHardwareKeyboard = base.mHasHardwareKeyboard;
+            mDisplayOrientation = base.mDisplayOrientation;
+            mAutoCap = base.mAutoCap;
+            mVibrateOn = base.mVibrateOn;
+            mVibrateInDndMode = base.mVibrateInDndMode;
+            mSoundOn = base.mSoundOn;
+            mSuggestEmojis = base.mSuggestEmojis;
+            mInlineEmojiSearch = base.mInlineEmojiSearch;
+            mShowEmojiDescriptions = base.mShowEmojiDescriptions;
+            mKeyPreviewPopupOn = base.mKeyPreviewPopupOn;
+            mLanguageSwitchKeyToOtherImes = base.mLanguageSwitchKeyToOtherImes;
+            mLanguageSwitchKeyToOtherSubtypes = base.mLanguageSwitchKeyToOtherSubtypes;
+            mShowsLanguageSwitchKey = base.mShowsLanguageSwitchKey;
+            mShowsNumberRow = base.mShowsNumberRow;
+            mShowsNumberRowInSymbols = base.mShowsNumberRowInSymbols;
+            mLocalizedNumberRow = base.mLocalizedNumberRow;
+            mShowNumberRowHints = base.mShowNumberRowHints;
+            mShowsHints = base.mShowsHints;
+            mShowsPopupHints = base.mShowsPopupHints;
+            mShowTldPopupKeys = base.mShowTldPopupKeys;
+            mSpaceForLangChange = base.mSpaceForLangChange;
+            mShowsEmojiKey = base.mShowsEmojiKey;
+            mVarToolbarDirection = base.mVarToolbarDirection;
+            mUsePersonalizedDicts = base.mUsePersonalizedDicts;
+            mBlockPotentiallyOffensive = base.mBlockPotentiallyOffensive;
+            mSpaceSwipeHorizontal = base.mSpaceSwipeHorizontal;
+            mSpaceSwipeVertical = base.mSpaceSwipeVertical;
+            mLanguageSwipeDistance = base.mLanguageSwipeDistance;
+            mDeleteSwipeEnabled = base.mDeleteSwipeEnabled;
+            mAutospaceAfterPunctuation = base.mAutospaceAfterPunctuation;
+            mAutospaceAfterSuggestion = base.mAutospaceAfterSuggestion;
+            mAutospaceAfterGestureTyping = base.mAutospaceAfterGestureTyping;
+            mAutospaceBeforeGestureTyping = base.mAutospaceBeforeGestureTyping;
+            mShiftRemovesAutospace = base.mShiftRemovesAutospace;
+            mClipboardHistoryEnabled = base.mClipboardHistoryEnabled;
+            mClipboardHistoryRetentionTime = base.mClipboardHistoryRetentionTime;
+            mClipboardHistoryPinnedFirst = base.mClipboardHistoryPinnedFirst;
+            mOneHandedModeEnabled = base.mOneHandedModeEnabled;
+            mOneHandedModeGravity = base.mOneHandedModeGravity;
+            mOneHandedModeScale = base.mOneHandedModeScale;
+            mNarrowKeyGaps = base.mNarrowKeyGaps;
+            mShowMorePopupKeys = base.mShowMorePopupKeys;
+            mPopupKeyTypes = base.mPopupKeyTypes;
+            mPopupKeyLabelSources = base.mPopupKeyLabelSources;
+            mSecondaryLocales = base.mSecondaryLocales;
+            mBigramPredictionEnabled = base.mBigramPredictionEnabled;
+            mSuggestPunctuation = base.mSuggestPunctuation;
+            mCenterSuggestionTextToEnter = base.mCenterSuggestionTextToEnter;
+            mGestureInputEnabled = base.mGestureInputEnabled;
+            mGestureTrailEnabled = base.mGestureTrailEnabled;
+            mGestureFloatingPreviewDynamicEnabled = base.mGestureFloatingPreviewDynamicEnabled;
+            mGestureFastTypingCooldown = base.mGestureFastTypingCooldown;
+            mGestureTrailFadeoutDuration = base.mGestureTrailFadeoutDuration;
+            mSlidingKeyInputPreviewEnabled = base.mSlidingKeyInputPreviewEnabled;
+            mKeyLongpressTimeout = base.mKeyLongpressTimeout;
+            mPrebuiltKeyboards = base.mPrebuiltKeyboards;
+            mEnableEmojiAltPhysicalKey = base.mEnableEmojiAltPhysicalKey;
+            mIsSplitKeyboardEnabled = base.mIsSplitKeyboardEnabled;
+            mSplitKeyboardSpacerRelativeWidth = base.mSplitKeyboardSpacerRelativeWidth;
+            mQuickPinToolbarKeys = base.mQuickPinToolbarKeys;
+            mScreenMetrics = base.mScreenMetrics;
+            mAddToPersonalDictionary = base.mAddToPersonalDictionary;
+            mUseContactsDictionary = base.mUseContactsDictionary;
+            mUseAppsDictionary = base.mUseAppsDictionary;
+            mCustomNavBarColor = base.mCustomNavBarColor;
+            mKeyboardHeightScale = base.mKeyboardHeightScale;
+            mUrlDetectionEnabled = base.mUrlDetectionEnabled;
+            mBottomPaddingScale = base.mBottomPaddingScale;
+            mSidePaddingScale = base.mSidePaddingScale;
+            mToolbarMode = base.mToolbarMode;
+            mToolbarHidingGlobal = base.mToolbarHidingGlobal;
+            mAutoShowToolbar = base.mAutoShowToolbar;
+            mAlphaAfterEmojiInEmojiView = base.mAlphaAfterEmojiInEmojiView;
+            mAlphaAfterClipHistoryEntry = base.mAlphaAfterClipHistoryEntry;
+            mAlphaAfterSymbolAndSpace = base.mAlphaAfterSymbolAndSpace;
+            mAlphaAfterNumpadAndSpace = base.mAlphaAfterNumpadAndSpace;
+            mRemoveRedundantPopups = base.mRemoveRedundantPopups;
+            mSpaceBarText = base.mSpaceBarText;
+            mFontSizeMultiplier = base.mFontSizeMultiplier;
+            mFontSizeMultiplierEmoji = base.mFontSizeMultiplierEmoji;
+            mEmojiKeyFit = base.mEmojiKeyFit;
+            mSuggestionStripHiddenPerUserSettings = base.mSuggestionStripHiddenPerUserSettings;
+            mSecondaryStripVisible = base.mSecondaryStripVisible;
+            mKeypressVibrationDuration = base.mKeypressVibrationDuration;
+            mKeypressSoundVolume = base.mKeypressSoundVolume;
+            mAutoCorrectionEnabledPerUserSettings = base.mAutoCorrectionEnabledPerUserSettings;
+            mBackspaceRevertsAutocorrect = base.mBackspaceRevertsAutocorrect;
+            mAutoCorrectShortcuts = base.mAutoCorrectShortcuts;
+            mSuggestClipboardContent = base.mSuggestClipboardContent;
+            mSettingsValuesForSuggestion = base.mSettingsValuesForSuggestion;
+            mLongPressSymbolsForNumpad = base.mLongPressSymbolsForNumpad;
+            mColors = base.mColors;
+            mSelectedSubtypePref = base.mSelectedSubtypePref;
+            mDoubleSpacePeriodPref = base.mDoubleSpacePeriodPref;
+            mMoreAutoCorrectionPref = base.mMoreAutoCorrectionPref;
+            mAutoCorrectThresholdPref = base.mAutoCorrectThresholdPref;
+            mGestureFloatingPreviewTextPref = base.mGestureFloatingPreviewTextPref;
+            mAlwaysShowSuggestionsPref = base.mAlwaysShowSuggestionsPref;
+            mAlwaysShowSuggestionsExceptWebTextPref = base.mAlwaysShowSuggestionsExceptWebTextPref;
+            mShowSuggestionsPref = base.mShowSuggestionsPref;
+            mAlwaysIncognitoPref = base.mAlwaysIncognitoPref;
+            mAutoHideToolbarPref = base.mAutoHideToolbarPref;
+        }
+
+        // settings that depend on the input field
+        mInputAttributes = inputAttributes;
+        mShowsVoiceInputKey = inputAttributes.mShouldShowVoiceInputKey;
+        mUseDoubleSpacePeriod = mDoubleSpacePeriodPref && inputAttributes.mIsGeneralTextInput;
         mAutoCorrectEnabled = mAutoCorrectionEnabledPerUserSettings
-                && (mInputAttributes.mInputTypeShouldAutoCorrect || prefs.getBoolean(Settings.PREF_MORE_AUTO_CORRECTION, Defaults.PREF_MORE_AUTO_CORRECTION))
-                && (mUrlDetectionEnabled || !InputTypeUtils.isUriOrEmailType(mInputAttributes.mInputType));
-        mCenterSuggestionTextToEnter = prefs.getBoolean(Settings.PREF_CENTER_SUGGESTION_TEXT_TO_ENTER, Defaults.PREF_CENTER_SUGGESTION_TEXT_TO_ENTER);
-        mAutoCorrectionThreshold = mAutoCorrectEnabled
-                ? prefs.getFloat(Settings.PREF_AUTO_CORRECT_THRESHOLD, Defaults.PREF_AUTO_CORRECT_THRESHOLD)
-                : Float.MAX_VALUE;
+                && (inputAttributes.mInputTypeShouldAutoCorrect || mMoreAutoCorrectionPref)
+                && (mUrlDetectionEnabled || !InputTypeUtils.isUriOrEmailType(inputAttributes.mInputType));
+        mAutoCorrectionThreshold = mAutoCorrectEnabled ? mAutoCorrectThresholdPref : Float.MAX_VALUE;
         mScoreLimitForAutocorrect = (mAutoCorrectionThreshold < 0) ? 600000 // very aggressive
                 : (mAutoCorrectionThreshold < 0.07 ? 800000 : 950000); // aggressive or modest
-        mAutoCorrectShortcuts = prefs.getBoolean(Settings.PREF_AUTOCORRECT_SHORTCUTS, Defaults.PREF_AUTOCORRECT_SHORTCUTS);
-        mBackspaceRevertsAutocorrect = prefs.getBoolean(Settings.PREF_BACKSPACE_REVERTS_AUTOCORRECT, Defaults.PREF_BACKSPACE_REVERTS_AUTOCORRECT);
-        mBigramPredictionEnabled = prefs.getBoolean(Settings.PREF_BIGRAM_PREDICTIONS, Defaults.PREF_BIGRAM_PREDICTIONS);
-        mSuggestPunctuation = prefs.getBoolean(Settings.PREF_SUGGEST_PUNCTUATION, Defaults.PREF_SUGGEST_PUNCTUATION);
-        mSuggestClipboardContent = prefs.getBoolean(Settings.PREF_SUGGEST_CLIPBOARD_CONTENT, Defaults.PREF_SUGGEST_CLIPBOARD_CONTENT);
-        mDoubleSpacePeriodTimeout = 1100; // ms
-        mHasHardwareKeyboard = Settings.readHasHardwareKeyboard(res.getConfiguration());
-        final boolean isLandscape = mDisplayOrientation == Configuration.ORIENTATION_LANDSCAPE;
-        final float displayWidthDp = TypedValueCompat.pxToDp(res.getDisplayMetrics().widthPixels, res.getDisplayMetrics());
-        mIsSplitKeyboardEnabled = Settings.readSplitKeyboardEnabled(prefs, isLandscape);
-        // determine spacerWidth from display width and scale setting
-        mSplitKeyboardSpacerRelativeWidth = mIsSplitKeyboardEnabled
-                ? Math.min(Math.max((displayWidthDp - 600) / 600f + 0.15f, 0.15f), 0.35f) * Settings.readSplitSpacerScale(prefs, isLandscape)
-                : 0f;
-        mQuickPinToolbarKeys = mToolbarMode == ToolbarMode.EXPANDABLE && prefs.getBoolean(Settings.PREF_QUICK_PIN_TOOLBAR_KEYS, Defaults.PREF_QUICK_PIN_TOOLBAR_KEYS);
-        mScreenMetrics = Settings.readScreenMetrics(res);
-
-        // Compute other readable settings
-        mKeyLongpressTimeout = prefs.getInt(Settings.PREF_KEY_LONGPRESS_TIMEOUT, Defaults.PREF_KEY_LONGPRESS_TIMEOUT);
-        mKeypressVibrationDuration = prefs.getInt(Settings.PREF_VIBRATION_DURATION_SETTINGS, Defaults.PREF_VIBRATION_DURATION_SETTINGS);
-        mKeypressSoundVolume = prefs.getFloat(Settings.PREF_KEYPRESS_SOUND_VOLUME, Defaults.PREF_KEYPRESS_SOUND_VOLUME);
-        mEnableEmojiAltPhysicalKey = prefs.getBoolean(Settings.PREF_ENABLE_EMOJI_ALT_PHYSICAL_KEY, Defaults.PREF_ENABLE_EMOJI_ALT_PHYSICAL_KEY);
-        mGestureInputEnabled = JniUtils.sHaveGestureLib && prefs.getBoolean(Settings.PREF_GESTURE_INPUT, Defaults.PREF_GESTURE_INPUT);
-        mGestureTrailEnabled = prefs.getBoolean(Settings.PREF_GESTURE_PREVIEW_TRAIL, Defaults.PREF_GESTURE_PREVIEW_TRAIL);
-        mGestureFloatingPreviewTextEnabled = !mInputAttributes.mDisableGestureFloatingPreviewText
-                && prefs.getBoolean(Settings.PREF_GESTURE_FLOATING_PREVIEW_TEXT, Defaults.PREF_GESTURE_FLOATING_PREVIEW_TEXT);
-        mGestureFloatingPreviewDynamicEnabled = Settings.readGestureDynamicPreviewEnabled(prefs);
-        mGestureFastTypingCooldown = prefs.getInt(Settings.PREF_GESTURE_FAST_TYPING_COOLDOWN, Defaults.PREF_GESTURE_FAST_TYPING_COOLDOWN);
-        mGestureTrailFadeoutDuration = prefs.getInt(Settings.PREF_GESTURE_TRAIL_FADEOUT_DURATION, Defaults.PREF_GESTURE_TRAIL_FADEOUT_DURATION);
-        mSuggestionStripHiddenPerUserSettings = mToolbarMode == ToolbarMode.HIDDEN || mToolbarMode == ToolbarMode.TOOLBAR_KEYS;
-        mOverrideShowingSuggestions = mInputAttributes.mMayOverrideShowingSuggestions
-                && prefs.getBoolean(Settings.PREF_ALWAYS_SHOW_SUGGESTIONS, Defaults.PREF_ALWAYS_SHOW_SUGGESTIONS)
+        mGestureFloatingPreviewTextEnabled = !inputAttributes.mDisableGestureFloatingPreviewText && mGestureFloatingPreviewTextPref;
+        mOverrideShowingSuggestions = inputAttributes.mMayOverrideShowingSuggestions && mAlwaysShowSuggestionsPref
                 && ((inputAttributes.mInputType & InputType.TYPE_MASK_VARIATION) != InputType.TYPE_TEXT_VARIATION_WEB_EDIT_TEXT
-                  || !prefs.getBoolean(Settings.PREF_ALWAYS_SHOW_SUGGESTIONS_EXCEPT_WEB_TEXT, Defaults.PREF_ALWAYS_SHOW_SUGGESTIONS_EXCEPT_WEB_TEXT));
-        final boolean suggestionsEnabled = prefs.getBoolean(Settings.PREF_SHOW_SUGGESTIONS, Defaults.PREF_SHOW_SUGGESTIONS);
-        mSuggestionsEnabledPerUserSettings = suggestionsEnabled && (mInputAttributes.mShouldShowSuggestions || mOverrideShowingSuggestions)
+                  || !mAlwaysShowSuggestionsExceptWebTextPref);
+        mSuggestionsEnabledPerUserSettings = mShowSuggestionsPref && (inputAttributes.mShouldShowSuggestions || mOverrideShowingSuggestions)
                 && !mSuggestionStripHiddenPerUserSettings;
-        mSecondaryStripVisible = mToolbarMode != ToolbarMode.HIDDEN || ! mToolbarHidingGlobal;
-        mIncognitoModeEnabled = prefs.getBoolean(Settings.PREF_ALWAYS_INCOGNITO_MODE, Defaults.PREF_ALWAYS_INCOGNITO_MODE) || mInputAttributes.mNoLearning
-                || mInputAttributes.mIsPasswordField;
-        mKeyboardHeightScale = Settings.readHeightScale(prefs, isLandscape);
-        mSpaceSwipeHorizontal = Settings.readHorizontalSpaceSwipe(prefs);
-        mSpaceSwipeVertical = Settings.readVerticalSpaceSwipe(prefs);
-        mLanguageSwipeDistance = prefs.getInt(Settings.PREF_LANGUAGE_SWIPE_DISTANCE, Defaults.PREF_LANGUAGE_SWIPE_DISTANCE);
-        mDeleteSwipeEnabled = prefs.getBoolean(Settings.PREF_DELETE_SWIPE, Defaults.PREF_DELETE_SWIPE);
-        mAutospaceAfterPunctuation = prefs.getBoolean(Settings.PREF_AUTOSPACE_AFTER_PUNCTUATION, Defaults.PREF_AUTOSPACE_AFTER_PUNCTUATION);
-        mAutospaceAfterSuggestion = prefs.getBoolean(Settings.PREF_AUTOSPACE_AFTER_SUGGESTION, Defaults.PREF_AUTOSPACE_AFTER_SUGGESTION);
-        mAutospaceAfterGestureTyping = prefs.getBoolean(Settings.PREF_AUTOSPACE_AFTER_GESTURE_TYPING, Defaults.PREF_AUTOSPACE_AFTER_GESTURE_TYPING);
-        mAutospaceBeforeGestureTyping = prefs.getBoolean(Settings.PREF_AUTOSPACE_BEFORE_GESTURE_TYPING, Defaults.PREF_AUTOSPACE_BEFORE_GESTURE_TYPING);
-        mShiftRemovesAutospace = prefs.getBoolean(Settings.PREF_SHIFT_REMOVES_AUTOSPACE, Defaults.PREF_SHIFT_REMOVES_AUTOSPACE);
-        mClipboardHistoryEnabled = prefs.getBoolean(Settings.PREF_ENABLE_CLIPBOARD_HISTORY, Defaults.PREF_ENABLE_CLIPBOARD_HISTORY);
-        mClipboardHistoryRetentionTime = prefs.getInt(Settings.PREF_CLIPBOARD_HISTORY_RETENTION_TIME, Defaults.PREF_CLIPBOARD_HISTORY_RETENTION_TIME);
-        mClipboardHistoryPinnedFirst = prefs.getBoolean(Settings.PREF_CLIPBOARD_HISTORY_PINNED_FIRST, Defaults.PREF_CLIPBOARD_HISTORY_PINNED_FIRST);
-
-        mOneHandedModeEnabled = Settings.readOneHandedModeEnabled(prefs, isLandscape, mIsSplitKeyboardEnabled);
-        mOneHandedModeGravity = Settings.readOneHandedModeGravity(prefs, isLandscape, mIsSplitKeyboardEnabled);
-        if (mOneHandedModeEnabled) {
-            final float baseScale = res.getFraction(R.fraction.config_one_handed_mode_width, 1, 1);
-            final float extraScale = Settings.readOneHandedModeScale(prefs, isLandscape, mIsSplitKeyboardEnabled);
-            mOneHandedModeScale = 1 - (1 - baseScale) * extraScale;
-        } else
-            mOneHandedModeScale = 1f;
-        mSecondaryLocales = SubtypeUtilsKt.getSecondaryLocales(selectedSubtype.getExtraValue());
-        mShowMorePopupKeys = selectedSubtype.isAsciiCapable()
-                ? SubtypeUtilsKt.getMoreKeys(selectedSubtype, prefs)
-                : LocaleKeyboardInfosKt.POPUP_KEYS_NORMAL;
-        mColors = KeyboardTheme.getColorsForCurrentTheme(context);
-
-        mPopupKeyTypes = SubtypeUtilsKt.getPopupKeyTypes(selectedSubtype, prefs);
-        mPopupKeyLabelSources = SubtypeUtilsKt.getPopupKeyLabelSources(selectedSubtype, prefs);
-        mAddToPersonalDictionary = prefs.getBoolean(Settings.PREF_ADD_TO_PERSONAL_DICTIONARY, Defaults.PREF_ADD_TO_PERSONAL_DICTIONARY);
-        mUseContactsDictionary = SettingsValues.readUseContactsEnabled(prefs, context);
-        mUseAppsDictionary = prefs.getBoolean(Settings.PREF_USE_APPS, Defaults.PREF_USE_APPS);
-        mCustomNavBarColor = prefs.getBoolean(Settings.PREF_NAVBAR_COLOR, Defaults.PREF_NAVBAR_COLOR);
-        mNarrowKeyGaps = prefs.getBoolean(Settings.PREF_NARROW_KEY_GAPS, Defaults.PREF_NARROW_KEY_GAPS);
-        mSettingsValuesForSuggestion = new SettingsValuesForSuggestion(
-                mBlockPotentiallyOffensive,
-                prefs.getBoolean(Settings.PREF_GESTURE_SPACE_AWARE, Defaults.PREF_GESTURE_SPACE_AWARE)
-        );
-        mSpacingAndPunctuations = new SpacingAndPunctuations(res, mUrlDetectionEnabled);
-        mBottomPaddingScale = Settings.readBottomPaddingScale(prefs, isLandscape);
-        mSidePaddingScale = Settings.readSidePaddingScale(prefs, isLandscape, mIsSplitKeyboardEnabled);
-        mLongPressSymbolsForNumpad = prefs.getBoolean(Settings.PREFS_LONG_PRESS_SYMBOLS_FOR_NUMPAD, Defaults.PREFS_LONG_PRESS_SYMBOLS_FOR_NUMPAD);
-        mAutoShowToolbar = mToolbarMode == ToolbarMode.EXPANDABLE && prefs.getBoolean(Settings.PREF_AUTO_SHOW_TOOLBAR, Defaults.PREF_AUTO_SHOW_TOOLBAR);
-        mAutoHideToolbar = mSuggestionsEnabledPerUserSettings && prefs.getBoolean(Settings.PREF_AUTO_HIDE_TOOLBAR, Defaults.PREF_AUTO_HIDE_TOOLBAR);
-        mAlphaAfterEmojiInEmojiView = prefs.getBoolean(Settings.PREF_ABC_AFTER_EMOJI, Defaults.PREF_ABC_AFTER_EMOJI);
-        mAlphaAfterClipHistoryEntry = prefs.getBoolean(Settings.PREF_ABC_AFTER_CLIP, Defaults.PREF_ABC_AFTER_CLIP);
-        mAlphaAfterSymbolAndSpace = prefs.getBoolean(Settings.PREF_ABC_AFTER_SYMBOL_SPACE, Defaults.PREF_ABC_AFTER_SYMBOL_SPACE);
-        mAlphaAfterNumpadAndSpace = prefs.getBoolean(Settings.PREF_ABC_AFTER_NUMPAD_SPACE, Defaults.PREF_ABC_AFTER_NUMPAD_SPACE);
-        mRemoveRedundantPopups = prefs.getBoolean(Settings.PREF_REMOVE_REDUNDANT_POPUPS, Defaults.PREF_REMOVE_REDUNDANT_POPUPS);
-        mSpaceBarText = prefs.getString(Settings.PREF_SPACE_BAR_TEXT, Defaults.PREF_SPACE_BAR_TEXT);
-        mFontSizeMultiplier = prefs.getFloat(Settings.PREF_FONT_SCALE, Defaults.PREF_FONT_SCALE);
-        mFontSizeMultiplierEmoji = prefs.getFloat(Settings.PREF_EMOJI_FONT_SCALE, Defaults.PREF_EMOJI_FONT_SCALE);
-        mEmojiKeyFit = prefs.getBoolean(Settings.PREF_EMOJI_KEY_FIT, Defaults.PREF_EMOJI_KEY_FIT);
+        mIncognitoModeEnabled = mAlwaysIncognitoPref || inputAttributes.mNoLearning || inputAttributes.mIsPasswordField;
+        mAutoHideToolbar = mSuggestionsEnabledPerUserSettings && mAutoHideToolbarPref;
     }
 
     public boolean isApplicationSpecifiedCompletionsOn() {
@@ -367,6 +506,10 @@ public class SettingsValues {
         return mDisplayOrientation == configuration.orientation;
     }
 
+    public boolean hasSameSelectedSubtype(final SharedPreferences prefs) {
+        return mSelectedSubtypePref.equals(prefs.getString(Settings.PREF_SELECTED_SUBTYPE, Defaults.PREF_SELECTED_SUBTYPE));
+    }
+
     private static boolean readUseContactsEnabled(final SharedPreferences prefs, final Context ctx) {
         final boolean setting = prefs.getBoolean(Settings.PREF_USE_CONTACTS, Defaults.PREF_USE_CONTACTS);
         if (!setting) return false;
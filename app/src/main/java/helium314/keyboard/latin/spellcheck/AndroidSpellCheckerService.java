@@ -136,10 +136,11 @@ public final class AndroidSpellCheckerService extends SpellCheckerService
 
     public boolean isValidWord(final Locale locale, final String word) {
         mSemaphore.acquireUninterruptibly();
+        final DictionaryFacilitator dictionaryFacilitatorForLocale = mDictionaryFacilitatorCache.acquire(locale);
         try {
-            DictionaryFacilitator dictionaryFacilitatorForLocale = mDictionaryFacilitatorCache.get(locale);
             return dictionaryFacilitatorForLocale.isValidSpellingWord(word);
         } finally {
+            mDictionaryFacilitatorCache.release(dictionaryFacilitatorForLocale);
             mSemaphore.release();
         }
     }
@@ -149,9 +150,9 @@ public final class AndroidSpellCheckerService extends SpellCheckerService
             @NonNull final Keyboard keyboard) {
         Integer sessionId = null;
         mSemaphore.acquireUninterruptibly();
+        final DictionaryFacilitator dictionaryFacilitatorForLocale = mDictionaryFacilitatorCache.acquire(locale);
         try {
             sessionId = mSessionIdPool.poll();
-            DictionaryFacilitator dictionaryFacilitatorForLocale = mDictionaryFacilitatorCache.get(locale);
             return dictionaryFacilitatorForLocale.getSuggestionResults(composedData, ngramContext,
                     keyboard, mSettingsValuesForSuggestion,
                     sessionId, SuggestedWords.INPUT_STYLE_TYPING);
@@ -159,17 +160,18 @@ public final class AndroidSpellCheckerService extends SpellCheckerService
             if (sessionId != null) {
                 mSessionIdPool.add(sessionId);
             }
+            mDictionaryFacilitatorCache.release(dictionaryFacilitatorForLocale);
             mSemaphore.release();
         }
     }
 
     public boolean hasMainDictionaryForLocale(final Locale locale) {
         mSemaphore.acquireUninterruptibly();
+        final DictionaryFacilitator dictionaryFacilitator = mDictionaryFacilitatorCache.acquire(locale);
         try {
-            final DictionaryFacilitator dictionaryFacilitator =
-                    mDictionaryFacilitatorCache.get(locale);
             return dictionaryFacilitator.hasAtLeastOneInitializedMainDictionary();
         } finally {
+            mDictionaryFacilitatorCache.release(dictionaryFacilitator);
             mSemaphore.release();
         }
     }
@@ -186,6 +188,13 @@ public final class AndroidSpellCheckerService extends SpellCheckerService
         return false;
     }
 
+    @Override
+    public void onTrimMemory(final int level) {
+        super.onTrimMemory(level);
+        // facilitators in use are not closed, so no need to wait for sessions
+        mDictionaryFacilitatorCache.onTrimMemory(level);
+    }
+
     public Keyboard getKeyboardForLocale(final Locale locale) {
         Keyboard keyboard = mKeyboardCache.get(locale);
         if (keyboard == null) {
@@ -27,6 +27,7 @@ import android.text.style.CharacterStyle;
 import android.text.style.StyleSpan;
 import android.text.style.UnderlineSpan;
 import android.util.AttributeSet;
+import android.util.LruCache;
 import android.view.Gravity;
 import android.view.View;
 import android.view.ViewGroup;
@@ -50,6 +51,7 @@ import helium314.keyboard.latin.utils.ResourceUtils;
 import helium314.keyboard.latin.utils.ViewLayoutUtils;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 final class SuggestionStripLayoutHelper {
     private static final int DEFAULT_SUGGESTIONS_COUNT_IN_STRIP = 3;
@@ -88,6 +90,26 @@ final class SuggestionStripLayoutHelper {
 
     private static final CharacterStyle BOLD_SPAN = new StyleSpan(Typeface.BOLD);
     private static final CharacterStyle UNDERLINE_SPAN = new UnderlineSpan();
+    private static final int STYLE_BOLD = 0x01;
+    private static final int STYLE_UNDERLINE = 0x02;
+
+    // The content of the word views, to only update views that need to show something else.
+    // Indices are positions in the strip, like in mWordViews. Shown slots are null if unknown.
+    private static final WordSlot EMPTY_SLOT = new WordSlot(-1, null, 0, 0, null, 0, false);
+    private final WordSlot[] mSlots;
+    private final WordSlot[] mShownSlots;
+
+    // Which views have been added to the strip, to avoid removing and adding them again.
+    private static final int ARRANGEMENT_NONE = 0;
+    private static final int ARRANGEMENT_SINGLE = 1;
+    private static final int ARRANGEMENT_WORDS = 2;
+    private static final int ARRANGEMENT_PUNCTUATION = 3;
+    private int mArrangement = ARRANGEMENT_NONE;
+    private int mArrangedCount;
+
+    // Measuring text is the slowest part of the layout, and suggestions often stay the same while typing
+    private static final int TEXT_WIDTH_CACHE_SIZE = 100;
+    private final LruCache<TextWidthKey, Integer> mTextWidthCache = new LruCache<>(TEXT_WIDTH_CACHE_SIZE);
 
     private final int mSuggestionStripOptions;
     // These constants are the flag values of
@@ -102,6 +124,9 @@ final class SuggestionStripLayoutHelper {
         mWordViews = wordViews;
         mDividerViews = dividerViews;
         mDebugInfoViews = debugInfoViews;
+        mSlots = new WordSlot[wordViews.size()];
+        Arrays.fill(mSlots, EMPTY_SLOT);
+        mShownSlots = new WordSlot[wordViews.size()];
 
         final TextView wordView = wordViews.get(0);
         final View dividerView = dividerViews.get(0);
@@ -186,29 +211,35 @@ final class SuggestionStripLayoutHelper {
         return bitmapDrawable;
     }
 
-    private CharSequence getStyledSuggestedWord(final SuggestedWords suggestedWords,
-            final int indexInSuggestedWords) {
-        if (indexInSuggestedWords >= suggestedWords.size()) {
-            return null;
-        }
-        final String word = suggestedWords.getLabel(indexInSuggestedWords);
+    private int getSuggestionStyle(final SuggestedWords suggestedWords, final int indexInSuggestedWords) {
         // TODO: don't use the index to decide whether this is the auto-correction/typed word, as
         // this is brittle
         final boolean isAutoCorrection = suggestedWords.mWillAutoCorrect
                 && indexInSuggestedWords == SuggestedWords.INDEX_OF_AUTO_CORRECTION;
         final boolean isTypedWordValid = suggestedWords.mTypedWordValid
                 && indexInSuggestedWords == SuggestedWords.INDEX_OF_TYPED_WORD;
-        if (!isAutoCorrection && !isTypedWordValid) {
-            return word;
-        }
-
-        final Spannable spannedWord = new SpannableString(word);
         final int options = mSuggestionStripOptions;
+        int style = 0;
         if ((isAutoCorrection && (options & AUTO_CORRECT_BOLD) != 0)
                 || (isTypedWordValid && (options & VALID_TYPED_WORD_BOLD) != 0)) {
-            addStyleSpan(spannedWord, BOLD_SPAN);
+            style |= STYLE_BOLD;
         }
         if (isAutoCorrection && (options & AUTO_CORRECT_UNDERLINE) != 0) {
+            style |= STYLE_UNDERLINE;
+        }
+        return style;
+    }
+
+    @Nullable
+    private static CharSequence getStyledWord(@NonNull final WordSlot slot) {
+        if (slot.style() == 0 || slot.word() == null) {
+            return slot.word();
+        }
+        final Spannable spannedWord = new SpannableString(slot.word());
+        if ((slot.style() & STYLE_BOLD) != 0) {
+            addStyleSpan(spannedWord, BOLD_SPAN);
+        }
+        if ((slot.style() & STYLE_UNDERLINE) != 0) {
             addStyleSpan(spannedWord, UNDERLINE_SPAN);
         }
         return spannedWord;
@@ -314,9 +345,48 @@ final class SuggestionStripLayoutHelper {
         params.gravity = Gravity.CENTER;
     }
 
+    /**
+     * Whether the strip contains the views as added for the given arrangement and count, so they
+     * don't need to be added again. Adding views always causes a layout pass.
+     */
+    private boolean isArranged(final ViewGroup stripView, final int arrangement, final int count) {
+        if (arrangement != mArrangement || count != mArrangedCount) {
+            return false;
+        }
+        if (arrangement == ARRANGEMENT_SINGLE) {
+            return stripView.getChildCount() == 1 && stripView.getChildAt(0) == mWordViews.get(mCenterPositionInStrip);
+        }
+        if (stripView.getChildCount() != count * 2 - 1) {
+            return false;
+        }
+        for (int positionInStrip = 0; positionInStrip < count; positionInStrip++) {
+            if (stripView.getChildAt(positionInStrip * 2) != mWordViews.get(positionInStrip)
+                    || (positionInStrip != 0 && stripView.getChildAt(positionInStrip * 2 - 1) != mDividerViews.get(positionInStrip))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void startArrangement(final ViewGroup stripView, final int arrangement, final int count) {
+        stripView.removeAllViews();
+        mArrangement = arrangement;
+        mArrangedCount = count;
+    }
+
+    /** Makes sure the word view at the position is updated on next layout, for when it was changed elsewhere. */
+    public void invalidateWordView(final TextView wordView) {
+        final int positionInStrip = mWordViews.indexOf(wordView);
+        if (positionInStrip >= 0) {
+            mShownSlots[positionInStrip] = null;
+        }
+    }
+
     /**
      * Layout suggestions to the suggestions strip. And returns the start index of more
      * suggestions.
+     * Only word views showing something different are updated, and views are only added to the
+     * strip if the arrangement changed. So usually changing suggestions does not need a layout pass.
      *
      * @param suggestedWords suggestions to be shown in the suggestions strip.
      * @param stripView the suggestions strip view.
@@ -334,43 +404,53 @@ final class SuggestionStripLayoutHelper {
         }
 
         final int wordCountToShow = suggestedWords.getWordCountToShow();
-        final int startIndexOfMoreSuggestions = setupWordViewsAndReturnStartIndexOfMoreSuggestions(
+        final int startIndexOfMoreSuggestions = setupSlotsAndReturnStartIndexOfMoreSuggestions(
                 suggestedWords, mSuggestionsCountInStrip);
         final TextView centerWordView = mWordViews.get(mCenterPositionInStrip);
         final int stripWidth = stripView.getWidth();
         final int centerWidth = getSuggestionWidth(mCenterPositionInStrip, stripWidth);
-        if (wordCountToShow == 1 || getTextScaleX(centerWordView.getText(), centerWidth,
+        if (wordCountToShow == 1 || getTextScaleX(getStyledWord(mSlots[mCenterPositionInStrip]), centerWidth,
                 centerWordView.getPaint()) < MIN_TEXT_XSCALE) {
             // Layout only the most relevant suggested word at the center of the suggestion strip
             // by consolidating all slots in the strip.
             final int countInStrip = 1;
             mMoreSuggestionsAvailable = (wordCountToShow > countInStrip);
             layoutWord(context, mCenterPositionInStrip, stripWidth - mPadding);
-            stripView.addView(centerWordView);
-            setLayoutWeight(centerWordView, 1.0f, ViewGroup.LayoutParams.MATCH_PARENT);
+            if (!isArranged(stripView, ARRANGEMENT_SINGLE, countInStrip)) {
+                startArrangement(stripView, ARRANGEMENT_SINGLE, countInStrip);
+                stripView.addView(centerWordView);
+                setLayoutWeight(centerWordView, 1.0f, ViewGroup.LayoutParams.MATCH_PARENT);
+            }
             if (SuggestionStripView.DEBUG_SUGGESTIONS) {
                 layoutDebugInfo(mCenterPositionInStrip, placerView, stripWidth);
             }
-            final Integer lastIndex = (Integer)centerWordView.getTag();
-            return (lastIndex == null ? 0 : lastIndex) + 1;
+            return Math.max(mSlots[mCenterPositionInStrip].index(), 0) + 1;
         }
 
         final int countInStrip = mSuggestionsCountInStrip;
         mMoreSuggestionsAvailable = (wordCountToShow > countInStrip);
+        final boolean arranged = isArranged(stripView, ARRANGEMENT_WORDS, countInStrip);
+        if (!arranged) {
+            startArrangement(stripView, ARRANGEMENT_WORDS, countInStrip);
+        }
         @SuppressWarnings("unused")
         int x = 0;
         for (int positionInStrip = 0; positionInStrip < countInStrip; positionInStrip++) {
             if (positionInStrip != 0) {
                 final View divider = mDividerViews.get(positionInStrip);
                 // Add divider if this isn't the left most suggestion in suggestions strip.
-                addDivider(stripView, divider);
+                if (!arranged) {
+                    addDivider(stripView, divider);
+                }
                 x += divider.getMeasuredWidth();
             }
 
             final int width = getSuggestionWidth(positionInStrip, stripWidth);
             final TextView wordView = layoutWord(context, positionInStrip, width);
-            stripView.addView(wordView);
-            setLayoutWeight(wordView, getSuggestionWeight(positionInStrip), ViewGroup.LayoutParams.MATCH_PARENT);
+            if (!arranged) {
+                stripView.addView(wordView);
+                setLayoutWeight(wordView, getSuggestionWeight(positionInStrip), ViewGroup.LayoutParams.MATCH_PARENT);
+            }
             x += wordView.getMeasuredWidth();
 
             if (SuggestionStripView.DEBUG_SUGGESTIONS) {
@@ -385,6 +465,7 @@ final class SuggestionStripLayoutHelper {
      * <code>positionInStrip</code>. When the suggested word doesn't exist, the corresponding
      * {@link TextView} will be disabled and never respond to user interaction. The suggested word
      * may be shrunk or ellipsized to fit in the specified width.
+     * The view is not changed if it already shows the same word with the same width.
      * <p>
      * The <code>positionInStrip</code> argument is the index in the suggestion strip. The indices
      * increase towards the right for LTR scripts and the left for RTL scripts, starting with 0.
@@ -398,32 +479,49 @@ final class SuggestionStripLayoutHelper {
      */
     private TextView layoutWord(final Context context, final int positionInStrip, final int width) {
         final TextView wordView = mWordViews.get(positionInStrip);
-        final CharSequence word = wordView.getText();
-        if (positionInStrip == mCenterPositionInStrip && mMoreSuggestionsAvailable) {
-            // TODO: This "more suggestions hint" should have a nicely designed icon.
-            wordView.setCompoundDrawablesWithIntrinsicBounds(null, null, null, mMoreSuggestionsHint);
-            // HACK: Align with other TextViews that have no compound drawables.
-            wordView.setCompoundDrawablePadding(-mMoreSuggestionsHint.getIntrinsicHeight());
-        } else {
-            wordView.setCompoundDrawablesWithIntrinsicBounds(null, null, null, null);
+        final WordSlot slot = mSlots[positionInStrip].withLayout(width,
+                positionInStrip == mCenterPositionInStrip && mMoreSuggestionsAvailable);
+        final String word = slot.word();
+        // A <code>wordView</code> should be disabled when <code>word</code> is empty in order to
+        // make it unclickable.
+        // With accessibility touch exploration on, <code>wordView</code> should be enabled even
+        // when it is empty to avoid announcing as "disabled".
+        wordView.setEnabled(!TextUtils.isEmpty(word)
+                || AccessibilityUtils.Companion.getInstance().isTouchExplorationEnabled());
+        final WordSlot shownSlot = mShownSlots[positionInStrip];
+        if (slot.equals(shownSlot)) {
+            return wordView;
+        }
+        mShownSlots[positionInStrip] = slot;
+
+        // {@link TextView#getTag()} is used to get the index in suggestedWords at
+        // {@link SuggestionStripView#onClick(View)}.
+        wordView.setTag(slot.index() < 0 ? null : slot.index());
+        if (word != null) {
+            wordView.setTextColor(slot.color());
+            wordView.setTypeface(slot.typeface());
+        }
+        if (shownSlot == null || shownSlot.moreSuggestionsHint() != slot.moreSuggestionsHint()) {
+            if (slot.moreSuggestionsHint()) {
+                // TODO: This "more suggestions hint" should have a nicely designed icon.
+                wordView.setCompoundDrawablesWithIntrinsicBounds(null, null, null, mMoreSuggestionsHint);
+                // HACK: Align with other TextViews that have no compound drawables.
+                wordView.setCompoundDrawablePadding(-mMoreSuggestionsHint.getIntrinsicHeight());
+            } else {
+                wordView.setCompoundDrawablesWithIntrinsicBounds(null, null, null, null);
+            }
         }
         // {@link StyleSpan} in a content description may cause an issue of TTS/TalkBack.
         // Use a simple {@link String} to avoid the issue.
         wordView.setContentDescription(
                 TextUtils.isEmpty(word)
                     ? context.getResources().getString(R.string.spoken_empty_suggestion)
-                    : word.toString());
+                    : word);
         final CharSequence text = getEllipsizedTextWithSettingScaleX(
-                word, width, wordView.getPaint());
+                getStyledWord(slot), width, wordView.getPaint());
         final float scaleX = wordView.getTextScaleX();
         wordView.setText(text); // TextView.setText() resets text scale x to 1.0.
         wordView.setTextScaleX(scaleX);
-        // A <code>wordView</code> should be disabled when <code>word</code> is empty in order to
-        // make it unclickable.
-        // With accessibility touch exploration on, <code>wordView</code> should be enabled even
-        // when it is empty to avoid announcing as "disabled".
-        wordView.setEnabled(!TextUtils.isEmpty(word)
-                || AccessibilityUtils.Companion.getInstance().isTouchExplorationEnabled());
         return wordView;
     }
 
@@ -455,15 +553,12 @@ final class SuggestionStripLayoutHelper {
         return (1.0f - mCenterSuggestionWeight) / (mSuggestionsCountInStrip - 1);
     }
 
-    private int setupWordViewsAndReturnStartIndexOfMoreSuggestions(
+    private int setupSlotsAndReturnStartIndexOfMoreSuggestions(
             final SuggestedWords suggestedWords, final int maxSuggestionInStrip) {
         // Clear all suggestions first
-        for (int positionInStrip = 0; positionInStrip < maxSuggestionInStrip; ++positionInStrip) {
-            final TextView wordView = mWordViews.get(positionInStrip);
-            wordView.setText(null);
-            wordView.setTag(null);
-            // Make this inactive for touches in {@link #layoutWord(int,int)}.
-            if (SuggestionStripView.DEBUG_SUGGESTIONS) {
+        Arrays.fill(mSlots, 0, maxSuggestionInStrip, EMPTY_SLOT);
+        if (SuggestionStripView.DEBUG_SUGGESTIONS) {
+            for (int positionInStrip = 0; positionInStrip < maxSuggestionInStrip; ++positionInStrip) {
                 mDebugInfoViews.get(positionInStrip).setText(null);
             }
         }
@@ -477,16 +572,13 @@ final class SuggestionStripLayoutHelper {
             if (positionInStrip < 0) {
                 continue;
             }
-            final TextView wordView = mWordViews.get(positionInStrip);
-            // {@link TextView#getTag()} is used to get the index in suggestedWords at
-            // {@link SuggestionStripView#onClick(View)}.
-            wordView.setTag(indexInSuggestedWords);
-            wordView.setText(getStyledSuggestedWord(suggestedWords, indexInSuggestedWords));
-            wordView.setTextColor(getSuggestionTextColor(suggestedWords, indexInSuggestedWords));
-
-            if (emojiTypeface != null && StringUtilsKt.isEmoji(wordView.getText()))
-                wordView.setTypeface(emojiTypeface);
-            else wordView.setTypeface(Typeface.DEFAULT); // todo: maybe use user-provided typeface here?
+            final String word = suggestedWords.getLabel(indexInSuggestedWords);
+            final Typeface typeface = emojiTypeface != null && StringUtilsKt.isEmoji(word)
+                    ? emojiTypeface
+                    : Typeface.DEFAULT; // todo: maybe use user-provided typeface here?
+            mSlots[positionInStrip] = new WordSlot(indexInSuggestedWords, word,
+                    getSuggestionStyle(suggestedWords, indexInSuggestedWords),
+                    getSuggestionTextColor(suggestedWords, indexInSuggestedWords), typeface, 0, false);
             if (SuggestionStripView.DEBUG_SUGGESTIONS) {
                 mDebugInfoViews.get(positionInStrip).setText(suggestedWords.getDebugString(indexInSuggestedWords));
             }
@@ -498,8 +590,12 @@ final class SuggestionStripLayoutHelper {
     private int layoutPunctuationsAndReturnStartIndexOfMoreSuggestions(
             final PunctuationSuggestions punctuationSuggestions, final ViewGroup stripView) {
         final int countInStrip = Math.min(punctuationSuggestions.size(), PUNCTUATIONS_IN_STRIP);
+        final boolean arranged = isArranged(stripView, ARRANGEMENT_PUNCTUATION, countInStrip);
+        if (!arranged) {
+            startArrangement(stripView, ARRANGEMENT_PUNCTUATION, countInStrip);
+        }
         for (int positionInStrip = 0; positionInStrip < countInStrip; positionInStrip++) {
-            if (positionInStrip != 0) {
+            if (positionInStrip != 0 && !arranged) {
                 // Add divider if this isn't the left most suggestion in suggestions strip.
                 addDivider(stripView, mDividerViews.get(positionInStrip));
             }
@@ -514,8 +610,12 @@ final class SuggestionStripLayoutHelper {
             wordView.setTextScaleX(1.0f);
             wordView.setCompoundDrawables(null, null, null, null);
             wordView.setTextColor(mColorAutoCorrect);
-            stripView.addView(wordView);
-            setLayoutWeight(wordView, 1.0f, mSuggestionsStripHeight);
+            // not a word, so the view must be updated when showing words again
+            mShownSlots[positionInStrip] = null;
+            if (!arranged) {
+                stripView.addView(wordView);
+                setLayoutWeight(wordView, 1.0f, mSuggestionsStripHeight);
+            }
         }
         mMoreSuggestionsAvailable = (punctuationSuggestions.size() > countInStrip);
         return countInStrip;
@@ -530,8 +630,7 @@ final class SuggestionStripLayoutHelper {
         }
     }
 
-    private static float getTextScaleX(@Nullable final CharSequence text, final int maxWidth, final TextPaint paint) {
-        paint.setTextScaleX(1.0f);
+    private float getTextScaleX(@Nullable final CharSequence text, final int maxWidth, final TextPaint paint) {
         final int width = getTextWidth(text, paint);
         if (width <= maxWidth || maxWidth <= 0) {
             return 1.0f;
@@ -540,7 +639,7 @@ final class SuggestionStripLayoutHelper {
     }
 
     @Nullable
-    private static CharSequence getEllipsizedTextWithSettingScaleX(
+    private CharSequence getEllipsizedTextWithSettingScaleX(
             @Nullable final CharSequence text, final int maxWidth, @NonNull final TextPaint paint) {
         if (text == null) {
             return null;
@@ -585,28 +684,48 @@ final class SuggestionStripLayoutHelper {
         text.setSpan(style, 0, text.length(), Spanned.SPAN_INCLUSIVE_EXCLUSIVE);
     }
 
-    private static int getTextWidth(@Nullable final CharSequence text, final TextPaint paint) {
+    // width without text scale x, the paint is not modified
+    private int getTextWidth(@Nullable final CharSequence text, final TextPaint paint) {
         if (TextUtils.isEmpty(text)) {
             return 0;
         }
+        final TextWidthKey key = new TextWidthKey(text.toString(), getTextTypeface(text), paint.getTextSize());
+        final Integer cachedWidth = mTextWidthCache.get(key);
+        if (cachedWidth != null) {
+            return cachedWidth;
+        }
         final int length = text.length();
         final float[] widths = new float[length];
         final int count;
         final Typeface savedTypeface = paint.getTypeface();
+        final float savedScaleX = paint.getTextScaleX();
         try {
-            paint.setTypeface(getTextTypeface(text));
+            paint.setTypeface(key.typeface());
+            paint.setTextScaleX(1.0f);
             count = paint.getTextWidths(text, 0, length, widths);
         } finally {
             paint.setTypeface(savedTypeface);
+            paint.setTextScaleX(savedScaleX);
         }
         int width = 0;
         for (int i = 0; i < count; i++) {
             width += Math.round(widths[i] + 0.5f);
         }
+        mTextWidthCache.put(key, width);
         return width;
     }
 
     private static Typeface getTextTypeface(@Nullable final CharSequence text) {
         return hasStyleSpan(text, BOLD_SPAN) ? Typeface.DEFAULT_BOLD : Typeface.DEFAULT;
     }
+
+    private record TextWidthKey(String text, Typeface typeface, float textSize) {}
+
+    /** What a word view in the strip shows, the view is only updated if this changes. */
+    private record WordSlot(int index, @Nullable String word, int style, int color, @Nullable Typeface typeface,
+                            int width, boolean moreSuggestionsHint) {
+        WordSlot withLayout(final int width, final boolean moreSuggestionsHint) {
+            return new WordSlot(index, word, style, color, typeface, width, moreSuggestionsHint);
+        }
+    }
 }
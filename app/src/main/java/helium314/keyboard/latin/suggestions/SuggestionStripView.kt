@@ -45,6 +45,7 @@ import helium314.keyboard.latin.define.DebugFlags
 import helium314.keyboard.latin.settings.DebugSettings
 import helium314.keyboard.latin.settings.Defaults
 import helium314.keyboard.latin.settings.Settings
+import helium314.keyboard.latin.utils.LatencyTracer
 import helium314.keyboard.latin.utils.Log
 import helium314.keyboard.latin.utils.ToolbarKey
 import helium314.keyboard.latin.utils.ToolbarMode
@@ -233,7 +234,9 @@ class SuggestionStripView(context: Context, attrs: AttributeSet?, defStyle: Int)
     }
 
     fun setSuggestions(suggestions: SuggestedWords, isRtlLanguage: Boolean) {
-        clear()
+        val traceStart = LatencyTracer.begin()
+        // word views are not removed, the layout helper only updates what changed
+        resetStrip()
         setRtl(isRtlLanguage)
         suggestedWords = suggestions
         startIndexOfMoreSuggestions = layoutHelper.layoutAndReturnStartIndexOfMoreSuggestions(
@@ -241,6 +244,7 @@ class SuggestionStripView(context: Context, attrs: AttributeSet?, defStyle: Int)
         )
         isExternalSuggestionVisible = false
         updateKeys()
+        LatencyTracer.end(LatencyTracer.STAGE_SET_SUGGESTIONS, traceStart)
     }
 
     fun setExternalSuggestionView(view: View?, addCloseButton: Boolean) {
@@ -396,6 +400,7 @@ class SuggestionStripView(context: Context, attrs: AttributeSet?, defStyle: Int)
             val h = icon.intrinsicHeight
             wordView.setCompoundDrawablesWithIntrinsicBounds(icon, null, null, null)
             wordView.ellipsize = TextUtils.TruncateAt.END
+            layoutHelper.invalidateWordView(wordView)
             val downOk = AtomicBoolean(false)
             wordView.setOnTouchListener { _, motionEvent ->
                 if (motionEvent.action == MotionEvent.ACTION_UP && downOk.get()) {
@@ -479,6 +484,10 @@ class SuggestionStripView(context: Context, attrs: AttributeSet?, defStyle: Int)
 
     private fun clear() {
         suggestionsStrip.removeAllViews()
+        resetStrip()
+    }
+
+    private fun resetStrip() {
         if (DEBUG_SUGGESTIONS) removeAllDebugInfoViews()
         if (!toolbarContainer.isVisible)
             suggestionsStrip.isVisible = true
@@ -0,0 +1,110 @@
+// SPDX-License-Identifier: GPL-3.0-only
+package helium314.keyboard.latin.utils
+
+import android.content.Context
+import android.os.Build
+import com.android.inputmethod.keyboard.ProximityInfo
+import helium314.keyboard.keyboard.Key
+import helium314.keyboard.keyboard.internal.TouchPositionCorrection
+import helium314.keyboard.latin.NgramContext
+import helium314.keyboard.latin.Suggest
+import helium314.keyboard.latin.common.ComposedData
+import helium314.keyboard.latin.common.InputPointers
+import helium314.keyboard.latin.common.LocaleUtils.constructLocale
+import helium314.keyboard.latin.common.StringUtils
+import helium314.keyboard.latin.dictionary.Dictionary
+import helium314.keyboard.latin.dictionary.DictionaryFactory
+import helium314.keyboard.latin.settings.SettingsValuesForSuggestion
+import kotlinx.serialization.json.Json
+import kotlinx.serialization.json.JsonArray
+import java.lang.ref.Reference
+
+// replays gathered gesture data for measuring gesture decoding speed and accuracy offline, see GestureDataGathering.kt
+
+/** Decoding results for the main dictionary of one language, times in microseconds. */
+class GestureReplayResult(
+    val language: String,
+    val count: Int,
+    val top1: Int,
+    val top3: Int,
+    val p50Micros: Long,
+    val p95Micros: Long,
+    val maxMicros: Long,
+) {
+    override fun toString() = "$language: $count gestures, top-1 ${percent(top1)} %, top-3 ${percent(top3)} %, " +
+            "p50 $p50Micros µs, p95 $p95Micros µs, max $maxMicros µs"
+
+    /** Without accuracy, for libraries that can't decode gestures. */
+    fun toLatencyString() = "$language: $count gestures, p50 $p50Micros µs, p95 $p95Micros µs, max $maxMicros µs"
+
+    private fun percent(n: Int) = if (count == 0) 0 else n * 100 / count
+}
+
+/** Parses exported gesture data, which is a JSON array of [GestureData], or the entries as stored in the database. */
+fun parseGestureData(jsonEntries: List<String>): List<GestureData> = jsonEntries.flatMap { entry ->
+    val element = Json.parseToJsonElement(entry)
+    if (element is JsonArray) element.map { Json.decodeFromJsonElement(GestureData.serializer(), it) }
+    else listOf(Json.decodeFromJsonElement(GestureData.serializer(), element))
+}
+
+/**
+ * Decodes the recorded gestures again with the main dictionary of the recorded language, using the
+ * keyboard geometry stored with each gesture. Gestures without target word or main dictionary are skipped.
+ * Words are compared ignoring case, as capitalization is applied after decoding.
+ * Needs a native library with gesture typing, otherwise there are no suggestions.
+ */
+fun replayGestureData(context: Context, data: List<GestureData>): List<GestureReplayResult> {
+    val settingsValuesForSuggestion = SettingsValuesForSuggestion(false, false)
+    return data.filter { it.targetWord != null }
+        .groupBy { gesture -> gesture.dictionaries.firstOrNull { it.type == Dictionary.TYPE_MAIN }?.language }
+        .mapNotNull { (language, gestures) ->
+            if (language == null) return@mapNotNull null
+            val dictionary = DictionaryFactory.createMainDictionaryCollection(context, language.constructLocale(), false)
+            if (!dictionary.isInitialized) return@mapNotNull null
+            val durations = LongArray(gestures.size)
+            var top1 = 0
+            var top3 = 0
+            gestures.forEachIndexed { i, gesture ->
+                val proximityInfo = createProximityInfo(gesture.keyboardInfo)
+                val composedData = ComposedData(createInputPointers(gesture.gesture), true, "")
+                val start = System.nanoTime()
+                val suggestions = dictionary.getSuggestions(composedData, NgramContext.BEGINNING_OF_SENTENCE,
+                    proximityInfo.nativeProximityInfo, settingsValuesForSuggestion, Suggest.SESSION_ID_GESTURE,
+                    1f, floatArrayOf(Dictionary.NOT_A_WEIGHT_OF_LANG_MODEL_VS_SPATIAL_MODEL))
+                durations[i] = (System.nanoTime() - start) / 1000
+                // the native proximity info is released when proximityInfo is finalized, which may happen
+                // during getSuggestions if proximityInfo is not used afterwards
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) Reference.reachabilityFence(proximityInfo)
+                else synchronized(proximityInfo) { }
+                val words = suggestions.orEmpty().sortedByDescending { it.mScore }.map { it.mWord }.distinct()
+                if (words.firstOrNull().equals(gesture.targetWord, true)) top1++
+                if (words.take(3).any { it.equals(gesture.targetWord, true) }) top3++
+            }
+            dictionary.close()
+            durations.sort()
+            GestureReplayResult(language, gestures.size, top1, top3, durations[(durations.size - 1) / 2],
+                durations[(durations.size - 1) * 95 / 100], durations.last())
+        }
+}
+
+// only keys with a single code point are relevant for proximity
+private fun createProximityInfo(keyboardInfo: KeyboardInfo): ProximityInfo {
+    val keys = keyboardInfo.keys.mapNotNull {
+        if (StringUtils.codePointCount(it.value) != 1) return@mapNotNull null
+        Key(it.value, null, it.value.codePointAt(0), null, null, 0, 0, it.left, it.top, it.width, it.height, 0, 0)
+    }.sortedWith(compareBy({ it.y }, { it.x }))
+    val mostCommonKeyWidth = keys.groupingBy { it.width }.eachCount().maxByOrNull { it.value }?.key ?: 0
+    val mostCommonKeyHeight = keys.groupingBy { it.height }.eachCount().maxByOrNull { it.value }?.key ?: 0
+    return ProximityInfo(GRID_WIDTH, GRID_HEIGHT, keyboardInfo.width, keyboardInfo.height,
+        mostCommonKeyWidth, mostCommonKeyHeight, keys, TouchPositionCorrection())
+}
+
+private fun createInputPointers(pointers: List<PointerData>): InputPointers {
+    val inputPointers = InputPointers(pointers.size)
+    pointers.forEach { inputPointers.addPointer(it.x, it.y, it.id, it.millis) }
+    return inputPointers
+}
+
+// same as config_keyboard_grid_width and config_keyboard_grid_height
+private const val GRID_WIDTH = 32
+private const val GRID_HEIGHT = 16
@@ -0,0 +1,99 @@
+// SPDX-License-Identifier: GPL-3.0-only
+package helium314.keyboard.latin.utils
+
+import java.io.Writer
+import kotlin.math.min
+
+/**
+ * Records how long the stages of handling input take, to find out which stage is slow on a device.
+ * Only active in debug mode. Recording does not allocate, the last [CAPACITY] spans of each
+ * stage are kept in ring buffers.
+ *
+ * Usage: `val start = LatencyTracer.begin()`, then `LatencyTracer.end(STAGE_..., start)`.
+ * Stages may be nested, e.g. native suggest is part of the dictionary stage.
+ */
+object LatencyTracer {
+    const val STAGE_TOUCH_DOWN = 0
+    const val STAGE_CODE_INPUT = 1
+    const val STAGE_DICTIONARIES = 2
+    const val STAGE_NATIVE_SUGGEST = 3
+    const val STAGE_SUGGEST_POST_PROCESSING = 4
+    const val STAGE_SET_SUGGESTIONS = 5
+    const val STAGE_INPUT_CONNECTION = 6
+    private val STAGE_NAMES = arrayOf(
+        "PointerTracker touch down",
+        "InputLogic.onCodeInput",
+        "Dictionary lookups",
+        "Native suggest",
+        "Suggest post-processing",
+        "SuggestionStripView.setSuggestions",
+        "InputConnection reads",
+    )
+    private const val CAPACITY = 1024
+
+    @JvmField
+    @Volatile
+    var enabled = false
+
+    private class Stage(val name: String) {
+        val startNanos = LongArray(CAPACITY)
+        val durationNanos = LongArray(CAPACITY)
+        val threadIds = LongArray(CAPACITY)
+        var next = 0
+        var size = 0
+    }
+
+    private val stages = Array(STAGE_NAMES.size) { Stage(STAGE_NAMES[it]) }
+
+    /** Returns the start time to pass to [end], or 0 if tracing is disabled. */
+    @JvmStatic
+    fun begin(): Long = if (enabled) System.nanoTime() else 0L
+
+    @JvmStatic
+    fun end(stage: Int, startNanos: Long) {
+        if (startNanos == 0L) return
+        val duration = System.nanoTime() - startNanos
+        val threadId = Thread.currentThread().id
+        val s = stages[stage]
+        synchronized(s) {
+            s.startNanos[s.next] = startNanos
+            s.durationNanos[s.next] = duration
+            s.threadIds[s.next] = threadId
+            s.next = (s.next + 1) % CAPACITY
+            s.size = min(s.size + 1, CAPACITY)
+        }
+    }
+
+    class StageStats(val name: String, val count: Int, val p50Micros: Long, val p90Micros: Long, val p99Micros: Long, val maxMicros: Long) {
+        override fun toString() = "$name ($count): p50 $p50Micros µs, p90 $p90Micros µs, p99 $p99Micros µs, max $maxMicros µs"
+    }
+
+    /** Percentiles of the recorded spans for each stage, stages without spans are omitted. */
+    @JvmStatic
+    fun getStats(): List<StageStats> = stages.mapNotNull { s ->
+        val durations = synchronized(s) { s.durationNanos.copyOf(s.size) }
+        if (durations.isEmpty()) return@mapNotNull null
+        durations.sort()
+        fun percentile(p: Int) = durations[(durations.size - 1) * p / 100] / 1000
+        StageStats(s.name, durations.size, percentile(50), percentile(90), percentile(99), durations.last() / 1000)
+    }
+
+    @JvmStatic
+    fun clear() {
+        stages.forEach { synchronized(it) { it.next = 0; it.size = 0 } }
+    }
+
+    /** Writes the recorded spans using [TraceEventWriter]. */
+    @JvmStatic
+    fun writeTrace(writer: Writer) {
+        val trace = TraceEventWriter(writer)
+        stages.forEach { s ->
+            val (starts, durations, threadIds) = synchronized(s) {
+                Triple(s.startNanos.copyOf(s.size), s.durationNanos.copyOf(s.size), s.threadIds.copyOf(s.size))
+            }
+            for (i in starts.indices)
+                trace.complete(s.name, threadIds[i], starts[i] / 1000, durations[i] / 1000)
+        }
+        trace.finish()
+    }
+}
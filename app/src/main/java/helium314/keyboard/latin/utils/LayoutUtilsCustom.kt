@@ -118,6 +118,7 @@ object LayoutUtilsCustom {
 
     fun deleteLayout(layoutName: String, layoutType: LayoutType, context: Context) {
         getLayoutFile(layoutName, layoutType, context).delete()
+        LayoutParser.removeFromDiskCache(layoutType, layoutName, context)
         onLayoutFileChanged()
         SubtypeSettings.onRenameLayout(layoutType, layoutName, null, context)
         KeyboardSwitcher.getInstance().setThemeNeedsReload()
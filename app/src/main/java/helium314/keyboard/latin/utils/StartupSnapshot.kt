@@ -0,0 +1,165 @@
+// SPDX-License-Identifier: GPL-3.0-only
+package helium314.keyboard.latin.utils
+
+import android.content.Context
+import android.content.SharedPreferences
+import android.content.res.Resources
+import helium314.keyboard.keyboard.internal.keyboard_parser.LayoutDiskCache
+import helium314.keyboard.keyboard.internal.keyboard_parser.LayoutParser
+import helium314.keyboard.latin.BuildConfig
+import helium314.keyboard.latin.settings.Settings
+import kotlinx.serialization.Serializable
+import java.io.DataOutputStream
+import java.io.File
+import java.nio.ByteBuffer
+import java.util.Collections
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Stores data that is slow to create when the IME process starts, so it can be restored after the
+ * process has been killed. The snapshot is written when the keyboard is closed and something changed,
+ * and is only restored if the installed app and the preferences it depends on are unchanged.
+ *
+ * Contains the resource subtypes from method.xml, the unsupported emojis, the dictionary types
+ * from the headers of dictionary files, and the layouts used by the keyboard set, which are parsed
+ * in background when the app starts (parsed layouts are cached separately, see [LayoutDiskCache]).
+ * Enabled subtypes and settings are not stored: they are resolved from preferences and the data above,
+ * which is fast, and settings depend on the input field anyway.
+ */
+object StartupSnapshot {
+    private const val TAG = "StartupSnapshot"
+    private const val FILE_NAME = "startup_snapshot"
+    // preferences that change the content of the snapshot
+    private val SNAPSHOT_PREFS = listOf(Settings.PREF_EMOJI_MAX_SDK)
+
+    @Serializable
+    private class Snapshot(
+        val resourceSubtypes: List<ResourceSubtype>,
+        val unsupportedEmojis: List<String>,
+        val dictionaryTypes: Map<String, String>,
+        val layouts: List<String>,
+    )
+
+    // only available while the app is starting, so later reloads use current data
+    private var restored: Snapshot? = null
+    private var resourceSubtypes: List<ResourceSubtype>? = null
+    private var unsupportedEmojis: List<String>? = null
+    private val dictionaryTypes = ConcurrentHashMap<String, String>()
+    // layout type and name, as used for the layouts of the keyboard set
+    private val layouts = Collections.newSetFromMap(ConcurrentHashMap<String, Boolean>())
+    @Volatile private var changed = false
+
+    /** Restores the snapshot if it is valid, to be called before the data is loaded. */
+    fun restore(context: Context) {
+        changed = true
+        val file = File(context.cacheDir, FILE_NAME)
+        if (!file.isFile) return
+        try {
+            val buffer = ByteBuffer.wrap(file.readBytes())
+            if (buffer.getInt() != BuildConfig.VERSION_CODE || buffer.getLong() != lastUpdateTime(context)
+                    || buffer.getInt() != prefHash(context.prefs()))
+                return
+            val snapshot = LayoutDiskCache.decode(Snapshot.serializer(), buffer)
+            dictionaryTypes.putAll(snapshot.dictionaryTypes)
+            layouts.addAll(snapshot.layouts)
+            restored = snapshot
+            changed = false
+        } catch (e: Exception) {
+            Log.w(TAG, "could not restore snapshot", e)
+        }
+    }
+
+    /** Parses the layouts of the keyboard set in background, so they are ready when the keyboard is shown. */
+    fun preloadLayouts(context: Context) {
+        val toLoad = restored?.layouts ?: return
+        val appContext = context.applicationContext
+        ExecutorUtils.getBackgroundExecutor(ExecutorUtils.KEYBOARD).execute {
+            toLoad.forEach {
+                try {
+                    LayoutParser.preloadLayout(LayoutType.valueOf(it.substringBefore(":")), it.substringAfter(":"), appContext)
+                } catch (e: Exception) {
+                    Log.w(TAG, "could not preload layout $it", e) // e.g. custom layout that has been deleted
+                    layouts.remove(it)
+                    changed = true
+                }
+            }
+        }
+    }
+
+    /** Called when the app has started, after this the restored data is not used any more. */
+    fun finishRestore() {
+        restored = null
+    }
+
+    fun getResourceSubtypes(resources: Resources): List<ResourceSubtype> {
+        val subtypes = restored?.resourceSubtypes ?: readResourceSubtypes(resources)
+        resourceSubtypes = subtypes
+        return subtypes
+    }
+
+    fun getUnsupportedEmojis(read: () -> List<String>): List<String> {
+        val emojis = restored?.unsupportedEmojis ?: read()
+        if (emojis != unsupportedEmojis && unsupportedEmojis != null)
+            changed = true
+        unsupportedEmojis = emojis
+        return emojis
+    }
+
+    /** Returns the dictionary type for the dictionary at [path], [readType] is only called if it's not known yet. */
+    fun getDictionaryType(path: String, offset: Long, length: Long, readType: () -> String?): String? {
+        // the file is identified by path and modified time, so replaced dictionaries are read again
+        val key = "$offset:$length:${File(path).lastModified()}:$path"
+        dictionaryTypes[key]?.let { return it }
+        val type = readType() ?: return null
+        dictionaryTypes[key] = type
+        changed = true
+        return type
+    }
+
+    /** Called when a layout is parsed for the keyboard set. */
+    fun layoutUsed(layoutType: LayoutType, layoutName: String) {
+        if (layouts.add("${layoutType.name}:$layoutName"))
+            changed = true
+    }
+
+    /** Writes the snapshot in background if it changed since it was restored or last written. */
+    fun saveIfChanged(context: Context) {
+        if (!changed) return
+        val subtypes = resourceSubtypes ?: return
+        val emojis = unsupportedEmojis ?: return
+        changed = false
+        val appContext = context.applicationContext
+        ExecutorUtils.getBackgroundExecutor(ExecutorUtils.KEYBOARD).execute {
+            // don't keep dictionaries that have been deleted
+            val types = dictionaryTypes.filterKeys { File(it.split(":", limit = 4).last()).exists() }
+            save(appContext, Snapshot(subtypes, emojis, types, layouts.toList()))
+        }
+    }
+
+    private fun save(context: Context, snapshot: Snapshot) {
+        val file = File(context.cacheDir, FILE_NAME)
+        try {
+            val data = LayoutDiskCache.encode(Snapshot.serializer(), snapshot)
+            val tempFile = File.createTempFile(FILE_NAME, null, context.cacheDir)
+            DataOutputStream(tempFile.outputStream().buffered()).use {
+                it.writeInt(BuildConfig.VERSION_CODE)
+                it.writeLong(lastUpdateTime(context))
+                it.writeInt(prefHash(context.prefs()))
+                it.write(data)
+            }
+            if (!tempFile.renameTo(file))
+                tempFile.delete()
+        } catch (e: Exception) {
+            Log.w(TAG, "could not save snapshot", e)
+        }
+    }
+
+    // resource ids stored in the snapshot may change with every build, even if the version code is the same
+    private fun lastUpdateTime(context: Context): Long =
+        context.packageManager.getPackageInfo(context.packageName, 0).lastUpdateTime
+
+    private fun prefHash(prefs: SharedPreferences): Int {
+        val all = prefs.all
+        return SNAPSHOT_PREFS.map { all[it] }.hashCode()
+    }
+}
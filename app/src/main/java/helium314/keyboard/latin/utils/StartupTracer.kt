@@ -0,0 +1,87 @@
+// SPDX-License-Identifier: GPL-3.0-only
+package helium314.keyboard.latin.utils
+
+import android.os.Build
+import android.os.Process
+import java.io.Writer
+import java.util.Locale
+
+/**
+ * Records named phases of starting the IME process and showing the first keyboard, for comparing
+ * startup times between builds. Only active in debug mode, and stops after [CAPACITY] phases.
+ *
+ * Usage: `val start = StartupTracer.begin()`, then `StartupTracer.end("name", start)`, or [trace].
+ * Unlike [LatencyTracer], [begin] always returns a time, because the first phases start before
+ * debug mode is known.
+ */
+object StartupTracer {
+    private const val CAPACITY = 256
+
+    @JvmField
+    @Volatile
+    var enabled = false
+
+    private class Phase(val name: String, val threadId: Long, val threadName: String, val startNanos: Long, val durationNanos: Long)
+
+    private val phases = ArrayList<Phase>()
+
+    @JvmStatic
+    fun begin(): Long = System.nanoTime()
+
+    @JvmStatic
+    fun end(name: String, startNanos: Long) {
+        if (!enabled) return
+        val duration = System.nanoTime() - startNanos
+        val thread = Thread.currentThread()
+        synchronized(phases) {
+            if (phases.size < CAPACITY)
+                phases.add(Phase(name, thread.id, thread.name, startNanos, duration))
+        }
+    }
+
+    inline fun <T> trace(name: String, block: () -> T): T {
+        val start = begin()
+        try {
+            return block()
+        } finally {
+            end(name, start)
+        }
+    }
+
+    class PhaseStats(val name: String, val count: Int, val firstStartMillis: Double, val firstMillis: Double, val totalMillis: Double) {
+        override fun toString() = "$name ($count): first at ${format(firstStartMillis)} ms took ${format(firstMillis)} ms, " +
+                "total ${format(totalMillis)} ms"
+
+        private fun format(millis: Double) = String.format(Locale.US, "%.1f", millis)
+    }
+
+    /** Phases ordered by first start, with start times relative to process start (or the first phase on old Android versions). */
+    @JvmStatic
+    fun getStats(): List<PhaseStats> {
+        val copy = synchronized(phases) { phases.toList() }
+        val origin = getOriginNanos(copy)
+        return copy.groupBy { it.name }.values
+            .map { list ->
+                val first = list.minBy { it.startNanos }
+                PhaseStats(first.name, list.size, (first.startNanos - origin) / 1e6, first.durationNanos / 1e6,
+                    list.sumOf { it.durationNanos } / 1e6)
+            }.sortedBy { it.firstStartMillis }
+    }
+
+    /** Writes the phases using [TraceEventWriter], with times relative to process start. */
+    @JvmStatic
+    fun writeTrace(writer: Writer) {
+        val copy = synchronized(phases) { phases.toList() }
+        val origin = getOriginNanos(copy)
+        val trace = TraceEventWriter(writer)
+        copy.distinctBy { it.threadId }.forEach { trace.threadName(it.threadId, it.threadName) }
+        trace.instant("Process start", 0)
+        copy.forEach { trace.complete(it.name, it.threadId, (it.startNanos - origin) / 1000, it.durationNanos / 1000) }
+        trace.finish()
+    }
+
+    // uptimeMillis and nanoTime use the same clock
+    private fun getOriginNanos(phases: List<Phase>): Long =
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) Process.getStartUptimeMillis() * 1_000_000
+        else phases.minOfOrNull { it.startNanos } ?: 0
+}
@@ -233,8 +233,9 @@ object SubtypeSettings {
     }
 
     private fun loadResourceSubtypes(resources: Resources) {
-        getResourceSubtypes(resources).forEach {
-            resourceSubtypesByLocale.getOrPut(it.locale()) { ArrayList(2) }.add(it)
+        StartupSnapshot.getResourceSubtypes(resources).forEach {
+            val subtype = it.toInputMethodSubtype()
+            resourceSubtypesByLocale.getOrPut(subtype.locale()) { ArrayList(2) }.add(subtype)
         }
     }
 
@@ -16,6 +16,7 @@ import helium314.keyboard.latin.settings.Defaults
 import helium314.keyboard.latin.settings.Settings
 import helium314.keyboard.latin.settings.SettingsSubtype.Companion.getExtraValueOf
 import helium314.keyboard.latin.utils.SubtypeSettings.isEnabled
+import kotlinx.serialization.Serializable
 import org.xmlpull.v1.XmlPullParser
 import java.util.Locale
 
@@ -34,40 +35,62 @@ fun InputMethodSubtype.mainLayoutName(): String? {
 
 fun InputMethodSubtype.mainLayoutNameOrQwerty(): String = mainLayoutName() ?: SubtypeLocaleUtils.QWERTY
 
-fun getResourceSubtypes(resources: Resources): List<InputMethodSubtype> {
-    val subtypes = mutableListOf<InputMethodSubtype>()
+fun getResourceSubtypes(resources: Resources): List<InputMethodSubtype> =
+    readResourceSubtypes(resources).map { it.toInputMethodSubtype() }
+
+/** Reads the subtype attributes from method.xml, use [getResourceSubtypes] for creating the subtypes. */
+fun readResourceSubtypes(resources: Resources): List<ResourceSubtype> {
+    val subtypes = mutableListOf<ResourceSubtype>()
     val xml = resources.getXml(R.xml.method)
     xml.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true)
     val namespace = "http://schemas.android.com/apk/res/android"
     var eventType = xml.eventType
     while (eventType != XmlPullParser.END_DOCUMENT) {
         if (eventType == XmlPullParser.START_TAG && xml.name == "subtype") {
-            val icon = xml.getAttributeResourceValue(namespace, "icon", 0)
-            val label = xml.getAttributeResourceValue(namespace, "label", 0)
-            val subtypeId = xml.getAttributeIntValue(namespace, "subtypeId", 0)
-            val localeString = xml.getAttributeValue(namespace, "imeSubtypeLocale").intern()
-            val languageTag = xml.getAttributeValue(namespace, "languageTag").intern()
-            val imeSubtypeMode = xml.getAttributeValue(namespace, "imeSubtypeMode")
-            val imeSubtypeExtraValue = xml.getAttributeValue(namespace, "imeSubtypeExtraValue").intern()
-            val isAsciiCapable = xml.getAttributeBooleanValue(namespace, "isAsciiCapable", false)
-            val b = InputMethodSubtype.InputMethodSubtypeBuilder()
-            b.setSubtypeIconResId(icon)
-            b.setSubtypeNameResId(label)
-            if (subtypeId != 0)
-                b.setSubtypeId(subtypeId)
-            b.setSubtypeLocale(localeString)
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N)
-                b.setLanguageTag(languageTag)
-            b.setSubtypeMode(imeSubtypeMode)
-            b.setSubtypeExtraValue(imeSubtypeExtraValue)
-            b.setIsAsciiCapable(isAsciiCapable)
-            subtypes.add(b.build())
+            subtypes.add(ResourceSubtype(
+                xml.getAttributeResourceValue(namespace, "icon", 0),
+                xml.getAttributeResourceValue(namespace, "label", 0),
+                xml.getAttributeIntValue(namespace, "subtypeId", 0),
+                xml.getAttributeValue(namespace, "imeSubtypeLocale"),
+                xml.getAttributeValue(namespace, "languageTag"),
+                xml.getAttributeValue(namespace, "imeSubtypeMode"),
+                xml.getAttributeValue(namespace, "imeSubtypeExtraValue"),
+                xml.getAttributeBooleanValue(namespace, "isAsciiCapable", false)
+            ))
         }
         eventType = xml.next()
     }
     return subtypes
 }
 
+/** Attributes of a subtype in method.xml, serializable so they can be stored in [StartupSnapshot]. */
+@Serializable
+class ResourceSubtype(
+    private val icon: Int,
+    private val label: Int,
+    private val subtypeId: Int,
+    private val localeString: String,
+    private val languageTag: String,
+    private val imeSubtypeMode: String,
+    private val imeSubtypeExtraValue: String,
+    private val isAsciiCapable: Boolean,
+) {
+    fun toInputMethodSubtype(): InputMethodSubtype {
+        val b = InputMethodSubtype.InputMethodSubtypeBuilder()
+        b.setSubtypeIconResId(icon)
+        b.setSubtypeNameResId(label)
+        if (subtypeId != 0)
+            b.setSubtypeId(subtypeId)
+        b.setSubtypeLocale(localeString.intern())
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N)
+            b.setLanguageTag(languageTag.intern())
+        b.setSubtypeMode(imeSubtypeMode)
+        b.setSubtypeExtraValue(imeSubtypeExtraValue.intern())
+        b.setIsAsciiCapable(isAsciiCapable)
+        return b.build()
+    }
+}
+
 fun getHasLocalizedNumberRow(subtype: InputMethodSubtype, prefs: SharedPreferences): Boolean =
     subtype.getExtraValueOf(ExtraValue.LOCALIZED_NUMBER_ROW)?.toBoolean()
         ?: prefs.getBoolean(Settings.PREF_LOCALIZED_NUMBER_ROW, Defaults.PREF_LOCALIZED_NUMBER_ROW)
@@ -0,0 +1,40 @@
+// SPDX-License-Identifier: GPL-3.0-only
+package helium314.keyboard.latin.utils
+
+import java.io.Writer
+
+/**
+ * Writes events in JSON trace event format, which can be opened in Perfetto or chrome://tracing.
+ * Times are in microseconds, [finish] must be called after the last event.
+ */
+class TraceEventWriter(private val writer: Writer) {
+    private var first = true
+
+    init {
+        writer.write("{\"traceEvents\":[")
+    }
+
+    /** Names the thread in the trace viewer. */
+    fun threadName(threadId: Long, name: String) =
+        event("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":0,\"tid\":$threadId,\"args\":{\"name\":\"${escape(name)}\"}}")
+
+    /** A point in time that applies to the whole process. */
+    fun instant(name: String, timeMicros: Long) =
+        event("{\"name\":\"${escape(name)}\",\"ph\":\"i\",\"s\":\"p\",\"pid\":0,\"tid\":0,\"ts\":$timeMicros}")
+
+    /** A span on the thread [threadId]. */
+    fun complete(name: String, threadId: Long, startMicros: Long, durationMicros: Long) =
+        event("{\"name\":\"${escape(name)}\",\"ph\":\"X\",\"pid\":0,\"tid\":$threadId,\"ts\":$startMicros,\"dur\":$durationMicros}")
+
+    fun finish() {
+        writer.write("]}")
+    }
+
+    private fun event(json: String) {
+        if (!first) writer.write(",")
+        first = false
+        writer.write(json)
+    }
+
+    private fun escape(text: String) = text.replace("\\", "\\\\").replace("\"", "\\\"")
+}
@@ -13,6 +13,7 @@ import androidx.compose.runtime.Composable
 import androidx.compose.runtime.getValue
 import androidx.compose.runtime.mutableStateOf
 import androidx.compose.runtime.remember
+import androidx.compose.runtime.rememberCoroutineScope
 import androidx.compose.runtime.setValue
 import androidx.compose.ui.platform.LocalContext
 import androidx.compose.ui.res.stringResource
@@ -22,7 +23,12 @@ import helium314.keyboard.latin.utils.LayoutUtilsCustom
 import helium314.keyboard.latin.utils.getActivity
 import helium314.keyboard.settings.dialogs.InfoDialog
 import helium314.keyboard.settings.dialogs.NewDictionaryDialog
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.launch
 import java.io.File
+import java.io.Writer
+import java.text.SimpleDateFormat
+import java.util.Calendar
 import java.util.Locale
 
 val layoutIntent = Intent(Intent.ACTION_OPEN_DOCUMENT)
@@ -38,6 +44,31 @@ fun filePicker(onUri: (Uri) -> Unit) =
         onUri(uri)
     }
 
+/**
+ * Returns a function that lets the user choose where to save a json file, which is then written by [write]
+ * in background. The function takes the file name without date and extension.
+ */
+@Composable
+fun jsonFileExporter(write: (Writer) -> Unit): (name: String) -> Unit {
+    val ctx = LocalContext.current
+    val scope = rememberCoroutineScope()
+    val launcher = filePicker { uri ->
+        scope.launch(Dispatchers.IO) {
+            ctx.getActivity()?.contentResolver?.openOutputStream(uri)?.use { os ->
+                os.writer().use(write)
+            }
+        }
+    }
+    return { name ->
+        val date = SimpleDateFormat("yyyy-MM-dd_HH-mm-ss", Locale.US).format(Calendar.getInstance().time)
+        val intent = Intent(Intent.ACTION_CREATE_DOCUMENT)
+            .addCategory(Intent.CATEGORY_OPENABLE)
+            .putExtra(Intent.EXTRA_TITLE, "${name}_$date.json")
+            .setType("application/json")
+        launcher.launch(intent)
+    }
+}
+
 @Composable
 fun layoutFilePicker(
     onSuccess: (content: String, name: String?) -> Unit
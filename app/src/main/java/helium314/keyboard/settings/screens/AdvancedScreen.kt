@@ -65,6 +65,7 @@ fun AdvancedSettingsScreen(
     val items = listOf(
         Settings.PREF_ALWAYS_INCOGNITO_MODE,
         Settings.PREF_KEY_LONGPRESS_TIMEOUT,
+        Settings.PREF_PREBUILT_KEYBOARDS,
         Settings.PREF_SPACE_HORIZONTAL_SWIPE,
         Settings.PREF_SPACE_VERTICAL_SWIPE,
         if (Settings.readHorizontalSpaceSwipe(prefs) == KeyboardActionListener.SWIPE_SWITCH_LANGUAGE
@@ -113,6 +114,15 @@ fun createAdvancedSettings(context: Context) = listOf(
             description = { stringResource(R.string.abbreviation_unit_milliseconds, it.toString()) }
         )
     },
+    Setting(context, Settings.PREF_PREBUILT_KEYBOARDS, R.string.prefs_prebuilt_keyboards) { setting ->
+        SliderPreference(
+            name = setting.title,
+            key = setting.key,
+            default = Defaults.PREF_PREBUILT_KEYBOARDS,
+            range = 0f..7f,
+            description = { it.toString() }
+        )
+    },
     Setting(context, Settings.PREF_SPACE_HORIZONTAL_SWIPE, R.string.show_horizontal_space_swipe) {
         val items = listOf(
             stringResource(R.string.space_swipe_move_cursor_entry) to "move_cursor",
@@ -3,10 +3,18 @@ package helium314.keyboard.settings.screens
 
 import android.content.Context
 import android.content.Intent
+import android.os.Build
 import androidx.compose.foundation.lazy.LazyColumn
 import androidx.compose.foundation.lazy.items
 import androidx.compose.material3.Surface
+import androidx.compose.material3.Text
 import androidx.compose.runtime.Composable
+import androidx.compose.runtime.getValue
+import androidx.compose.runtime.mutableStateOf
+import androidx.compose.runtime.remember
+import androidx.compose.runtime.rememberCoroutineScope
+import androidx.compose.runtime.saveable.rememberSaveable
+import androidx.compose.runtime.setValue
 import androidx.compose.ui.platform.LocalContext
 import androidx.compose.ui.res.stringResource
 import androidx.compose.ui.tooling.preview.Preview
@@ -17,16 +25,26 @@ import helium314.keyboard.latin.DictionaryFacilitator
 import helium314.keyboard.latin.R
 import helium314.keyboard.latin.settings.DebugSettings
 import helium314.keyboard.latin.settings.Defaults
+import helium314.keyboard.latin.utils.GestureDataDao
+import helium314.keyboard.latin.utils.LatencyTracer
+import helium314.keyboard.latin.utils.StartupTracer
+import helium314.keyboard.latin.utils.parseGestureData
 import helium314.keyboard.latin.utils.prefs
+import helium314.keyboard.latin.utils.replayGestureData
 import helium314.keyboard.settings.Setting
+import helium314.keyboard.settings.jsonFileExporter
 import helium314.keyboard.settings.preferences.Preference
 import helium314.keyboard.settings.SearchSettingsScreen
+import helium314.keyboard.settings.dialogs.InfoDialog
+import helium314.keyboard.settings.dialogs.ThreeButtonAlertDialog
 import helium314.keyboard.settings.preferences.SwitchPreference
 import helium314.keyboard.latin.utils.Theme
 import helium314.keyboard.settings.initPreview
 import helium314.keyboard.settings.preferences.PreferenceCategory
 import helium314.keyboard.latin.utils.previewDark
 import androidx.core.content.edit
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.launch
 
 @Composable
 fun DebugScreen(
@@ -40,6 +58,12 @@ fun DebugScreen(
         DebugSettings.PREF_SHOW_SUGGESTION_INFOS,
         DebugSettings.PREF_FORCE_NON_DISTINCT_MULTITOUCH,
         DebugSettings.PREF_SLIDING_KEY_INPUT_PREVIEW,
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) DebugSettings.PREF_KEY_RENDER_NODES else null,
+        DebugSettings.PREF_INCREMENTAL_GESTURE_TRAIL,
+        DebugSettings.PREF_LATENCY_STATS,
+        DebugSettings.PREF_EXPORT_LATENCY_TRACE,
+        DebugSettings.PREF_STARTUP_PHASES,
+        DebugSettings.PREF_REPLAY_GESTURE_DATA,
         R.string.prefs_dump_dynamic_dicts
     ) + DictionaryFacilitator.DYNAMIC_DICTIONARY_TYPES.map { DebugSettings.PREF_KEY_DUMP_DICT_PREFIX + it }
     SearchSettingsScreen(
@@ -94,6 +118,89 @@ private fun createDebugSettings(context: Context) = listOf(
     Setting(context, DebugSettings.PREF_SLIDING_KEY_INPUT_PREVIEW, R.string.sliding_key_input_preview, R.string.sliding_key_input_preview_summary) { def ->
         SwitchPreference(def, Defaults.PREF_SLIDING_KEY_INPUT_PREVIEW)
     },
+    Setting(context, DebugSettings.PREF_KEY_RENDER_NODES, R.string.prefs_key_render_nodes, R.string.prefs_key_render_nodes_summary) {
+        SwitchPreference(it, Defaults.PREF_KEY_RENDER_NODES) { KeyboardSwitcher.getInstance().setThemeNeedsReload() }
+    },
+    Setting(context, DebugSettings.PREF_INCREMENTAL_GESTURE_TRAIL, R.string.prefs_incremental_gesture_trail, R.string.prefs_incremental_gesture_trail_summary) {
+        SwitchPreference(it, Defaults.PREF_INCREMENTAL_GESTURE_TRAIL) { KeyboardSwitcher.getInstance().setThemeNeedsReload() }
+    },
+    Setting(context, DebugSettings.PREF_LATENCY_STATS, R.string.prefs_latency_stats, R.string.prefs_latency_stats_summary) { setting ->
+        var showDialog by rememberSaveable { mutableStateOf(false) }
+        Preference(
+            name = setting.title,
+            description = setting.description,
+            onClick = { showDialog = true }
+        )
+        if (showDialog) {
+            val stats = LatencyTracer.getStats()
+            ThreeButtonAlertDialog(
+                onDismissRequest = { showDialog = false },
+                onConfirmed = { },
+                content = {
+                    Text(if (stats.isEmpty()) stringResource(R.string.prefs_latency_stats_empty) else stats.joinToString("\n\n"))
+                },
+                scrollContent = true,
+                onNeutral = { LatencyTracer.clear() },
+                confirmButtonText = null,
+                cancelButtonText = stringResource(android.R.string.ok),
+                neutralButtonText = if (stats.isEmpty()) null else stringResource(R.string.prefs_latency_stats_reset)
+            )
+        }
+    },
+    Setting(context, DebugSettings.PREF_EXPORT_LATENCY_TRACE, R.string.prefs_export_latency_trace, R.string.prefs_export_latency_trace_summary) { setting ->
+        val export = jsonFileExporter { LatencyTracer.writeTrace(it) }
+        Preference(
+            name = setting.title,
+            description = setting.description,
+            onClick = { export("latency_trace") }
+        )
+    },
+    Setting(context, DebugSettings.PREF_STARTUP_PHASES, R.string.prefs_startup_phases, R.string.prefs_startup_phases_summary) { setting ->
+        var showDialog by rememberSaveable { mutableStateOf(false) }
+        val export = jsonFileExporter { StartupTracer.writeTrace(it) }
+        Preference(
+            name = setting.title,
+            description = setting.description,
+            onClick = { showDialog = true }
+        )
+        if (showDialog) {
+            val stats = StartupTracer.getStats()
+            ThreeButtonAlertDialog(
+                onDismissRequest = { showDialog = false },
+                onConfirmed = { },
+                content = {
+                    Text(if (stats.isEmpty()) stringResource(R.string.prefs_startup_phases_empty) else stats.joinToString("\n\n"))
+                },
+                scrollContent = true,
+                onNeutral = { export("startup_trace") },
+                confirmButtonText = null,
+                cancelButtonText = stringResource(android.R.string.ok),
+                neutralButtonText = if (stats.isEmpty()) null else stringResource(R.string.prefs_export_startup_trace)
+            )
+        }
+    },
+    Setting(context, DebugSettings.PREF_REPLAY_GESTURE_DATA, R.string.prefs_replay_gesture_data, R.string.prefs_replay_gesture_data_summary) { setting ->
+        val ctx = LocalContext.current
+        val scope = rememberCoroutineScope()
+        var result: String? by remember { mutableStateOf(null) }
+        var running by remember { mutableStateOf(false) }
+        Preference(
+            name = setting.title,
+            description = setting.description,
+            onClick = {
+                if (running) return@Preference
+                running = true
+                scope.launch(Dispatchers.Default) {
+                    val data = parseGestureData(GestureDataDao.getInstance(ctx)?.getAllJsonData().orEmpty())
+                    val results = replayGestureData(ctx, data)
+                    result = if (results.isEmpty()) ctx.getString(R.string.prefs_replay_gesture_data_empty)
+                        else results.joinToString("\n\n")
+                    running = false
+                }
+            }
+        )
+        result?.let { InfoDialog(it) { result = null } }
+    },
 ) + DictionaryFacilitator.DYNAMIC_DICTIONARY_TYPES.map { type ->
     Setting(context, DebugSettings.PREF_KEY_DUMP_DICT_PREFIX + type, R.string.button_default) {
         val ctx = LocalContext.current
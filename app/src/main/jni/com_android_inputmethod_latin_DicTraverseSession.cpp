@@ -55,6 +55,15 @@ static void latinime_releaseDicTraverseSession(JNIEnv *env, jclass clazz, jlong
     DicTraverseSession::releaseSessionInstance(ts);
 }
 
+static void latinime_setDicTraverseSessionCancelled(JNIEnv *env, jclass clazz,
+        jlong traverseSession, jboolean isCancelled) {
+    DicTraverseSession *ts = reinterpret_cast<DicTraverseSession *>(traverseSession);
+    if (!ts) {
+        return;
+    }
+    ts->setCancelled(isCancelled);
+}
+
 static const JNINativeMethod sMethods[] = {
     {
         const_cast<char *>("setDicTraverseSessionNative"),
@@ -70,6 +79,11 @@ static const JNINativeMethod sMethods[] = {
         const_cast<char *>("releaseDicTraverseSessionNative"),
         const_cast<char *>("(J)V"),
         reinterpret_cast<void *>(latinime_releaseDicTraverseSession)
+    },
+    {
+        const_cast<char *>("setDicTraverseSessionCancelledNative"),
+        const_cast<char *>("(JZ)V"),
+        reinterpret_cast<void *>(latinime_setDicTraverseSessionCancelled)
     }
 };
 
@@ -27,5 +27,6 @@ namespace latinime {
 const int DicNodesCache::LARGE_PRIORITY_QUEUE_CAPACITY = 310;
 // Capacity for reducing memory footprint.
 const int DicNodesCache::SMALL_PRIORITY_QUEUE_CAPACITY = 100;
+const int DicNodesCache::CACHE_BACK_LENGTH = 3;
 
 }  // namespace latinime
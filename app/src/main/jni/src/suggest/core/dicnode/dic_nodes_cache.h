@@ -36,12 +36,14 @@ class DicNodesCache {
               mDicNodePriorityQueue0(getCacheCapacity()),
               mDicNodePriorityQueue1(getCacheCapacity()),
               mDicNodePriorityQueue2(getCacheCapacity()),
+              mDicNodePriorityQueue3(getCacheCapacity()),
               mDicNodePriorityQueueForTerminal(MAX_RESULTS),
               mActiveDicNodes(&mDicNodePriorityQueue0),
               mNextActiveDicNodes(&mDicNodePriorityQueue1),
               mCachedDicNodesForContinuousSuggestion(&mDicNodePriorityQueue2),
+              mCachedDicNodesForShorterInput(&mDicNodePriorityQueue3),
               mTerminalDicNodes(&mDicNodePriorityQueueForTerminal),
-              mInputIndex(0), mLastCachedInputIndex(0) {}
+              mInputIndex(0), mLastCachedInputIndex(0), mShorterInputCachedInputIndex(0) {}
 
     AK_FORCE_INLINE virtual ~DicNodesCache() {}
 
@@ -56,6 +58,8 @@ class DicNodesCache {
         mTerminalDicNodes->clearAndResize(terminalSize);
         // The size of cached DicNode queue doesn't have to be changed.
         mCachedDicNodesForContinuousSuggestion->clear();
+        mCachedDicNodesForShorterInput->clear();
+        mShorterInputCachedInputIndex = 0;
     }
 
     AK_FORCE_INLINE void continueSearch() {
@@ -63,6 +67,22 @@ class DicNodesCache {
         restoreActiveDicNodesFromCache();
     }
 
+    // Continues from the dicNodes that were restored by the previous continueSearch, i.e. from
+    // the cache border of an input that was one code point shorter than the previous input.
+    // This only works for a single backspace: the restored dicNodes are consumed, and they would
+    // be at the wrong input index for an even shorter input anyway. Further backspaces restart
+    // at the root, and typing again continues from the dicNodes cached by this search.
+    AK_FORCE_INLINE void continueSearchForShorterInput() {
+        resetTemporaryCaches();
+        restoreActiveDicNodesFromShorterInputCache();
+    }
+
+    // Drops the dicNodes cached for continuous suggestion, they may be incomplete if the search
+    // was stopped before reaching the end of the input.
+    AK_FORCE_INLINE void clearCachedDicNodesForContinuousSuggestion() {
+        mCachedDicNodesForContinuousSuggestion->clear();
+    }
+
     AK_FORCE_INLINE void advanceActiveDicNodes() {
         if (DEBUG_DICT) {
             AKLOGI("Advance active %d nodes.", mNextActiveDicNodes->getSize());
@@ -114,9 +134,12 @@ class DicNodesCache {
                 && mCachedDicNodesForContinuousSuggestion->getSize() > 0;
     }
 
+    bool hasCachedDicNodesForShorterInput(const int inputSize) const {
+        return mCachedDicNodesForShorterInput && mCachedDicNodesForShorterInput->getSize() > 0
+                && mShorterInputCachedInputIndex <= inputSize - CACHE_BACK_LENGTH;
+    }
+
     AK_FORCE_INLINE bool isCacheBorderForTyping(const int inputSize) const {
-        // TODO: Move this variable to header
-        static const int CACHE_BACK_LENGTH = 3;
         const int cacheInputIndex = inputSize - CACHE_BACK_LENGTH;
         const bool shouldCache = (cacheInputIndex == mInputIndex)
                 && (cacheInputIndex != mLastCachedInputIndex);
@@ -139,8 +162,34 @@ class DicNodesCache {
             mCachedDicNodesForContinuousSuggestion->dump();
         }
         mInputIndex = mLastCachedInputIndex;
-        mCachedDicNodesForContinuousSuggestion = moveNodesAndReturnReusableEmptyQueue(
-                mCachedDicNodesForContinuousSuggestion, &mActiveDicNodes);
+        // Keep a copy of the restored dicNodes, so the search can also continue from here if the
+        // next input is shorter (i.e. after backspace).
+        mShorterInputCachedInputIndex = mLastCachedInputIndex;
+        clearAndResizeIfChanged(mCachedDicNodesForShorterInput,
+                mCachedDicNodesForContinuousSuggestion->getMaxSize());
+        const int activeMaxSize = mActiveDicNodes->getMaxSize();
+        clearAndResizeIfChanged(mActiveDicNodes, std::max(activeMaxSize,
+                mCachedDicNodesForContinuousSuggestion->getSize()));
+        DicNode dicNode;
+        while (mCachedDicNodesForContinuousSuggestion->getSize() > 0) {
+            mCachedDicNodesForContinuousSuggestion->copyPop(&dicNode);
+            mActiveDicNodes->copyPush(&dicNode);
+            mCachedDicNodesForShorterInput->copyPush(&dicNode);
+        }
+        mActiveDicNodes->setMaxSize(activeMaxSize);
+    }
+
+    AK_FORCE_INLINE void restoreActiveDicNodesFromShorterInputCache() {
+        if (DEBUG_DICT) {
+            AKLOGI("Restore %d nodes for shorter input. inputIndex = %d.",
+                    mCachedDicNodesForShorterInput->getSize(), mShorterInputCachedInputIndex);
+        }
+        mCachedDicNodesForContinuousSuggestion->clear();
+        mInputIndex = mShorterInputCachedInputIndex;
+        // Make sure the restored dicNodes are cached again when reaching the cache border.
+        mLastCachedInputIndex = NOT_AN_INDEX;
+        mCachedDicNodesForShorterInput = moveNodesAndReturnReusableEmptyQueue(
+                mCachedDicNodesForShorterInput, &mActiveDicNodes);
     }
 
     AK_FORCE_INLINE static DicNodePriorityQueue *moveNodesAndReturnReusableEmptyQueue(
@@ -154,6 +203,16 @@ class DicNodesCache {
         return tmp;
     }
 
+    // Resizing reallocates the dicNode pool of the queue, so avoid it when the size is unchanged.
+    AK_FORCE_INLINE static void clearAndResizeIfChanged(DicNodePriorityQueue *queue,
+            const int maxSize) {
+        if (queue->getMaxSize() == maxSize) {
+            queue->clear();
+        } else {
+            queue->clearAndResize(maxSize);
+        }
+    }
+
     AK_FORCE_INLINE int getCacheCapacity() const {
         return mUsesLargeCapacityCache ?
                 LARGE_PRIORITY_QUEUE_CAPACITY : SMALL_PRIORITY_QUEUE_CAPACITY;
@@ -167,12 +226,15 @@ class DicNodesCache {
 
     static const int LARGE_PRIORITY_QUEUE_CAPACITY;
     static const int SMALL_PRIORITY_QUEUE_CAPACITY;
+    // Number of code points before the end of the input at which dicNodes are cached for typing.
+    static const int CACHE_BACK_LENGTH;
 
     const bool mUsesLargeCapacityCache;
     // Instances
     DicNodePriorityQueue mDicNodePriorityQueue0;
     DicNodePriorityQueue mDicNodePriorityQueue1;
     DicNodePriorityQueue mDicNodePriorityQueue2;
+    DicNodePriorityQueue mDicNodePriorityQueue3;
     DicNodePriorityQueue mDicNodePriorityQueueForTerminal;
 
     // Active dicNodes currently being expanded.
@@ -181,10 +243,13 @@ class DicNodesCache {
     DicNodePriorityQueue *mNextActiveDicNodes;
     // Cached dicNodes used for continuous suggestion.
     DicNodePriorityQueue *mCachedDicNodesForContinuousSuggestion;
+    // Copy of the dicNodes last restored for continuous suggestion, used after backspace.
+    DicNodePriorityQueue *mCachedDicNodesForShorterInput;
     // Current top terminal dicNodes.
     DicNodePriorityQueue *mTerminalDicNodes;
     int mInputIndex;
     int mLastCachedInputIndex;
+    int mShorterInputCachedInputIndex;
 };
 } // namespace latinime
 #endif // LATINIME_DIC_NODES_CACHE_H
@@ -40,7 +40,8 @@ Dictionary::Dictionary(JNIEnv *env, DictionaryStructureWithBufferPolicy::Structu
         dictionaryStructureWithBufferPolicy)
         : mDictionaryStructureWithBufferPolicy(std::move(dictionaryStructureWithBufferPolicy)),
           mGestureSuggest(new Suggest(GestureSuggestPolicyFactory::getGestureSuggestPolicy())),
-          mTypingSuggest(new Suggest(TypingSuggestPolicyFactory::getTypingSuggestPolicy())) {
+          mTypingSuggest(new Suggest(TypingSuggestPolicyFactory::getTypingSuggestPolicy())),
+          mContentVersion(0) {
     logDictionaryInfo(env);
 }
 
@@ -135,22 +136,26 @@ bool Dictionary::addUnigramEntry(const CodePointArrayView codePoints,
         return false;
     }
     TimeKeeper::setCurrentTime();
+    ++mContentVersion;
     return mDictionaryStructureWithBufferPolicy->addUnigramEntry(codePoints, unigramProperty);
 }
 
 bool Dictionary::removeUnigramEntry(const CodePointArrayView codePoints) {
     TimeKeeper::setCurrentTime();
+    ++mContentVersion;
     return mDictionaryStructureWithBufferPolicy->removeUnigramEntry(codePoints);
 }
 
 bool Dictionary::addNgramEntry(const NgramProperty *const ngramProperty) {
     TimeKeeper::setCurrentTime();
+    ++mContentVersion;
     return mDictionaryStructureWithBufferPolicy->addNgramEntry(ngramProperty);
 }
 
 bool Dictionary::removeNgramEntry(const NgramContext *const ngramContext,
         const CodePointArrayView codePoints) {
     TimeKeeper::setCurrentTime();
+    ++mContentVersion;
     return mDictionaryStructureWithBufferPolicy->removeNgramEntry(ngramContext, codePoints);
 }
 
@@ -158,6 +163,7 @@ bool Dictionary::updateEntriesForWordWithNgramContext(const NgramContext *const
         const CodePointArrayView codePoints, const bool isValidWord,
         const HistoricalInfo historicalInfo) {
     TimeKeeper::setCurrentTime();
+    ++mContentVersion;
     return mDictionaryStructureWithBufferPolicy->updateEntriesForWordWithNgramContext(ngramContext,
             codePoints, isValidWord, historicalInfo);
 }
@@ -169,6 +175,7 @@ bool Dictionary::flush(const char *const filePath) {
 
 bool Dictionary::flushWithGC(const char *const filePath) {
     TimeKeeper::setCurrentTime();
+    ++mContentVersion;
     return mDictionaryStructureWithBufferPolicy->flushWithGC(filePath);
 }
 
@@ -116,6 +116,12 @@ class Dictionary {
         return mDictionaryStructureWithBufferPolicy.get();
     }
 
+    // Changes whenever the dictionary content may have changed, so positions cached by a
+    // DicTraverseSession from an earlier search may be invalid.
+    int getContentVersion() const {
+        return mContentVersion;
+    }
+
  private:
     DISALLOW_IMPLICIT_CONSTRUCTORS(Dictionary);
 
@@ -143,6 +149,7 @@ class Dictionary {
             mDictionaryStructureWithBufferPolicy;
     const SuggestInterfacePtr mGestureSuggest;
     const SuggestInterfacePtr mTypingSuggest;
+    int mContentVersion;
 
     void logDictionaryInfo(JNIEnv *const env) const;
 };
@@ -48,9 +48,17 @@ void ProximityInfoState::initInputParams(const int pointerId, const float maxPoi
             false : ProximityInfoStateUtils::checkAndReturnIsContinuousSuggestionPossible(
                     inputSize, xCoordinates, yCoordinates, times, mSampledInputSize,
                     &mSampledInputXs, &mSampledInputYs, &mSampledTimes, &mSampledInputIndice);
+    // Continuing from a shorter input is only supported for typing, where every input point is
+    // sampled.
+    mIsPrefixOfPreviousInput = (isGeometric || mHasBeenUpdatedByGeometricInput
+            || !xCoordinates || !yCoordinates) ?
+            false : ProximityInfoStateUtils::checkAndReturnIsPrefixOfPreviousInput(
+                    inputSize, xCoordinates, yCoordinates, mSampledInputSize,
+                    &mSampledInputXs, &mSampledInputYs, &mSampledInputIndice);
     if (DEBUG_DICT) {
-        AKLOGI("isContinuousSuggestionPossible = %s",
-                (mIsContinuousSuggestionPossible ? "true" : "false"));
+        AKLOGI("isContinuousSuggestionPossible = %s, isPrefixOfPreviousInput = %s",
+                (mIsContinuousSuggestionPossible ? "true" : "false"),
+                (mIsPrefixOfPreviousInput ? "true" : "false"));
     }
 
     mProximityInfo = proximityInfo;
@@ -67,6 +75,19 @@ void ProximityInfoState::initInputParams(const int pointerId, const float maxPoi
     if (!isGeometric && pointerId == 0) {
         mProximityInfo->initializeProximities(inputCodes, xCoordinates, yCoordinates,
                 inputSize, mInputProximities, locale);
+        // Coordinates are not available for all input (e.g. for a word picked up from the text),
+        // so also require the same code points as in the previous input for continuing the search.
+        if (mIsContinuousSuggestionPossible || mIsPrefixOfPreviousInput) {
+            const int comparedSize = std::min(inputSize, mSampledInputSize);
+            for (int i = 0; i < comparedSize; ++i) {
+                if (ProximityInfoStateUtils::getPrimaryCodePointAt(mInputProximities, i)
+                        != mPrimaryInputWord[i]) {
+                    mIsContinuousSuggestionPossible = false;
+                    mIsPrefixOfPreviousInput = false;
+                    break;
+                }
+            }
+        }
     }
 
     ///////////////////////
@@ -47,7 +47,8 @@ class ProximityInfoState {
             : mProximityInfo(nullptr), mMaxPointToKeyLength(0.0f), mAverageSpeed(0.0f),
               mHasTouchPositionCorrectionData(false), mMostCommonKeyWidthSquare(0),
               mKeyCount(0), mCellHeight(0), mCellWidth(0), mGridHeight(0), mGridWidth(0),
-              mIsContinuousSuggestionPossible(false), mHasBeenUpdatedByGeometricInput(false),
+              mIsContinuousSuggestionPossible(false), mIsPrefixOfPreviousInput(false),
+              mHasBeenUpdatedByGeometricInput(false),
               mSampledInputXs(), mSampledInputYs(), mSampledTimes(), mSampledInputIndice(),
               mSampledLengthCache(), mBeelineSpeedPercentiles(),
               mSampledNormalizedSquaredLengthCache(), mSpeedRates(), mDirections(),
@@ -143,6 +144,10 @@ class ProximityInfoState {
         return mIsContinuousSuggestionPossible;
     }
 
+    bool isPrefixOfPreviousInput() const {
+        return mIsPrefixOfPreviousInput;
+    }
+
     // TODO: Rename s/Length/NormalizedSquaredLength/
     float getPointToKeyByIdLength(const int inputIndex, const int keyId) const;
     // TODO: Rename s/Length/NormalizedSquaredLength/
@@ -204,6 +209,7 @@ class ProximityInfoState {
     int mGridHeight;
     int mGridWidth;
     bool mIsContinuousSuggestionPossible;
+    bool mIsPrefixOfPreviousInput;
     bool mHasBeenUpdatedByGeometricInput;
 
     std::vector<int> mSampledInputXs;
@@ -929,6 +929,29 @@ namespace latinime {
     return true;
 }
 
+// Returns whether the input is shorter than the previous input, but otherwise identical,
+// as it happens when deleting the last code point while typing.
+/* static */ bool ProximityInfoStateUtils::checkAndReturnIsPrefixOfPreviousInput(
+        const int inputSize, const int *const xCoordinates, const int *const yCoordinates,
+        const int sampledInputSize, const std::vector<int> *const sampledInputXs,
+        const std::vector<int> *const sampledInputYs,
+        const std::vector<int> *const sampledInputIndices) {
+    if (inputSize <= 0 || inputSize >= sampledInputSize) {
+        return false;
+    }
+    for (int i = 0; i < sampledInputSize; ++i) {
+        const int index = (*sampledInputIndices)[i];
+        if (index >= inputSize) {
+            continue;
+        }
+        if (xCoordinates[index] != (*sampledInputXs)[i]
+                || yCoordinates[index] != (*sampledInputYs)[i]) {
+            return false;
+        }
+    }
+    return true;
+}
+
 // Get a word that is detected by tracing the most probable string into codePointBuf and
 // returns probability of generating the word.
 /* static */ float ProximityInfoStateUtils::getMostProbableString(
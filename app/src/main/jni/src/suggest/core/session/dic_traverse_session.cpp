@@ -21,6 +21,7 @@
 #include "dictionary/interface/dictionary_structure_with_buffer_policy.h"
 #include "dictionary/property/ngram_context.h"
 #include "suggest/core/dictionary/dictionary.h"
+#include "suggest/core/suggest_options.h"
 
 namespace latinime {
 
@@ -31,18 +32,44 @@ const int DicTraverseSession::DICTIONARY_SIZE_THRESHOLD_TO_USE_LARGE_CACHE_FOR_S
 
 void DicTraverseSession::init(const Dictionary *const dictionary,
         const NgramContext *const ngramContext, const SuggestOptions *const suggestOptions) {
+    WordIdArray<MAX_PREV_WORD_COUNT_FOR_N_GRAM> prevWordIdArray;
+    const size_t prevWordIdCount = ngramContext->getPrevWordIds(
+            dictionary->getDictionaryStructurePolicy(), &prevWordIdArray,
+            true /* tryLowerCaseSearch */).size();
+    // suggestOptions is null when the session is initialized from Java, no search is done then
+    mIsSameSearchContextAsPreviousSearch = suggestOptions && mDictionary == dictionary
+            && mDictionaryContentVersion == dictionary->getContentVersion()
+            && mPrevWordIdCount == prevWordIdCount
+            && std::equal(prevWordIdArray.begin(), prevWordIdArray.begin() + prevWordIdCount,
+                    mPrevWordIdArray.begin())
+            && mIsGesture == suggestOptions->isGesture()
+            && mUseFullEditDistance == suggestOptions->useFullEditDistance()
+            && mBlockOffensiveWords == suggestOptions->blockOffensiveWords()
+            && mEnableSpaceAwareGesture == suggestOptions->enableSpaceAwareGesture()
+            && mWeightForLocale == suggestOptions->weightForLocale();
+
     mDictionary = dictionary;
+    mDictionaryContentVersion = dictionary->getContentVersion();
     mMultiWordCostMultiplier = getDictionaryStructurePolicy()->getHeaderStructurePolicy()
             ->getMultiWordCostMultiplier();
     mSuggestOptions = suggestOptions;
-    mPrevWordIdCount = ngramContext->getPrevWordIds(getDictionaryStructurePolicy(),
-            &mPrevWordIdArray, true /* tryLowerCaseSearch */).size();
+    if (suggestOptions) {
+        mIsGesture = suggestOptions->isGesture();
+        mUseFullEditDistance = suggestOptions->useFullEditDistance();
+        mBlockOffensiveWords = suggestOptions->blockOffensiveWords();
+        mEnableSpaceAwareGesture = suggestOptions->enableSpaceAwareGesture();
+        mWeightForLocale = suggestOptions->weightForLocale();
+    }
+    mPrevWordIdArray = prevWordIdArray;
+    mPrevWordIdCount = prevWordIdCount;
 }
 
 void DicTraverseSession::setupForGetSuggestions(const ProximityInfo *pInfo,
         const int *inputCodePoints, const int inputSize, const int *const inputXs,
         const int *const inputYs, const int *const times, const int *const pointerIds,
         const float maxSpatialDistance, const int maxPointerCount) {
+    mIsSameSearchContextAsPreviousSearch = mIsSameSearchContextAsPreviousSearch
+            && mProximityInfo == pInfo && mMaxPointerCount == maxPointerCount;
     mProximityInfo = pInfo;
     mMaxPointerCount = maxPointerCount;
     initializeProximityInfoStates(inputCodePoints, inputXs, inputYs, times, pointerIds, inputSize,
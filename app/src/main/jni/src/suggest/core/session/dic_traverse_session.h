@@ -17,6 +17,8 @@
 #ifndef LATINIME_DIC_TRAVERSE_SESSION_H
 #define LATINIME_DIC_TRAVERSE_SESSION_H
 
+#include <algorithm>
+#include <atomic>
 #include <vector>
 
 #include "defines.h"
@@ -52,8 +54,13 @@ class DicTraverseSession {
 
     AK_FORCE_INLINE DicTraverseSession(JNIEnv *env, jstring localeStr, bool usesLargeCache)
             : mPrevWordIdCount(0), mProximityInfo(nullptr), mDictionary(nullptr),
-              mSuggestOptions(nullptr), mDicNodesCache(usesLargeCache), mMultiBigramMap(),
-              mInputSize(0), mMaxPointerCount(1), mMultiWordCostMultiplier(1.0f) {
+              mSuggestOptions(nullptr), mDictionaryContentVersion(0), mIsGesture(false),
+              mUseFullEditDistance(false), mBlockOffensiveWords(false),
+              mEnableSpaceAwareGesture(false), mWeightForLocale(0.0f),
+              mIsSameSearchContextAsPreviousSearch(false), mIsCancelled(false),
+              mDicNodesCache(usesLargeCache),
+              mMultiBigramMap(), mInputSize(0), mMaxPointerCount(1),
+              mMultiWordCostMultiplier(1.0f) {
         // NOTE: mProximityInfoStates is an array of instances.
         // No need to initialize it explicitly here.
     }
@@ -70,6 +77,17 @@ class DicTraverseSession {
             const int maxPointerCount);
     void resetCache(const int thresholdForNextActiveDicNodes, const int maxWords);
 
+    // May be called from any thread to stop the running search early. Not reset by init, as a
+    // cancel arriving shortly before the search starts would be lost. Instead the caller resets
+    // it before checking whether the request is still needed and starting the search.
+    AK_FORCE_INLINE void setCancelled(const bool isCancelled) {
+        mIsCancelled.store(isCancelled, std::memory_order_relaxed);
+    }
+
+    AK_FORCE_INLINE bool isCancelled() const {
+        return mIsCancelled.load(std::memory_order_relaxed);
+    }
+
     const DictionaryStructureWithBufferPolicy *getDictionaryStructurePolicy() const;
 
     //--------------------
@@ -149,6 +167,31 @@ class DicTraverseSession {
         return true;
     }
 
+    /**
+     * Returns whether the search can continue from dicNodes cached for a longer input, which is
+     * the case after deleting the last code point.
+     */
+    bool isContinuousSuggestionForShorterInputPossible() const {
+        if (!mDicNodesCache.hasCachedDicNodesForShorterInput(mInputSize)) {
+            return false;
+        }
+        for (int i = 0; i < mMaxPointerCount; ++i) {
+            const ProximityInfoState *const pInfoState = getProximityInfoState(i);
+            if (pInfoState->isUsed() && !pInfoState->isPrefixOfPreviousInput()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether dictionary, previous words, keyboard and suggest options are the same as
+     * in the previous search, so dicNodes cached in that search are still valid.
+     */
+    bool isSameSearchContextAsPreviousSearch() const {
+        return mIsSameSearchContextAsPreviousSearch;
+    }
+
     bool isTouchPositionCorrectionEnabled() const {
         return mProximityInfoStates[0].touchPositionCorrectionEnabled();
     }
@@ -172,6 +215,16 @@ class DicTraverseSession {
     const Dictionary *mDictionary;
     const SuggestOptions *mSuggestOptions;
 
+    // Search context of the previous search, to check whether cached dicNodes can be reused.
+    int mDictionaryContentVersion;
+    bool mIsGesture;
+    bool mUseFullEditDistance;
+    bool mBlockOffensiveWords;
+    bool mEnableSpaceAwareGesture;
+    float mWeightForLocale;
+    bool mIsSameSearchContextAsPreviousSearch;
+    std::atomic<bool> mIsCancelled;
+
     DicNodesCache mDicNodesCache;
     // Temporary cache for bigram frequencies
     MultiBigramMap mMultiBigramMap;
@@ -61,8 +61,13 @@ void Suggest::getSuggestions(ProximityInfo *pInfo, void *traverseSession,
     PROF_TIMER_END(0);
     PROF_TIMER_START(1);
 
-    // keep expanding search dicNodes until all have terminated.
+    // keep expanding search dicNodes until all have terminated, or the search is cancelled.
     while (tSession->getDicTraverseCache()->activeSize() > 0) {
+        if (tSession->isCancelled()) {
+            // results will be discarded, but make sure the next search doesn't continue from here
+            tSession->getDicTraverseCache()->clearCachedDicNodesForContinuousSuggestion();
+            break;
+        }
         expandCurrentDicNodes(tSession);
         tSession->getDicTraverseCache()->advanceActiveDicNodes();
         tSession->getDicTraverseCache()->advanceInputIndex(inputSize);
@@ -76,17 +81,24 @@ void Suggest::getSuggestions(ProximityInfo *pInfo, void *traverseSession,
 
 /**
  * Initializes the search at the root of the lexicon trie. Note that when possible the search will
- * continue suggestion from where it left off during the last call.
+ * continue suggestion from where it left off during the last call, also when the last code point
+ * has been removed since then.
  */
 void Suggest::initializeSearch(DicTraverseSession *traverseSession) const {
     if (!traverseSession->getProximityInfoState(0)->isUsed()) {
         return;
     }
 
-    if (traverseSession->getInputSize() > MIN_CONTINUOUS_SUGGESTION_INPUT_SIZE
-            && traverseSession->isContinuousSuggestionPossible()) {
+    const bool canContinueSearch = traverseSession->getInputSize()
+            > MIN_CONTINUOUS_SUGGESTION_INPUT_SIZE
+            && traverseSession->isSameSearchContextAsPreviousSearch();
+    if (canContinueSearch && traverseSession->isContinuousSuggestionPossible()) {
         // Continue suggestion
         traverseSession->getDicTraverseCache()->continueSearch();
+    } else if (canContinueSearch
+            && traverseSession->isContinuousSuggestionForShorterInputPossible()) {
+        // Continue suggestion from where the search for the previous, longer input started
+        traverseSession->getDicTraverseCache()->continueSearchForShorterInput();
     } else {
         // Restart recognition at the root.
         traverseSession->resetCache(TRAVERSAL->getMaxCacheSize(traverseSession->getInputSize(),
@@ -13,15 +13,19 @@ import helium314.keyboard.keyboard.internal.KeyboardBuilder
 import helium314.keyboard.keyboard.internal.KeyboardParams
 import helium314.keyboard.keyboard.internal.TouchPositionCorrection
 import helium314.keyboard.keyboard.internal.UniqueKeysCache
+import helium314.keyboard.keyboard.internal.keyboard_parser.LayoutDiskCache
 import helium314.keyboard.keyboard.internal.keyboard_parser.LayoutParser
 import helium314.keyboard.keyboard.internal.keyboard_parser.POPUP_KEYS_NORMAL
 import helium314.keyboard.keyboard.internal.keyboard_parser.addLocaleKeyTextsToParams
+import helium314.keyboard.keyboard.internal.keyboard_parser.floris.AbstractKeyData
 import helium314.keyboard.keyboard.internal.keyboard_parser.floris.KeyCode
 import helium314.keyboard.latin.LatinIME
 import helium314.keyboard.latin.RichInputMethodSubtype
 import helium314.keyboard.latin.utils.LayoutUtilsCustom
 import helium314.keyboard.latin.utils.POPUP_KEYS_LAYOUT
 import helium314.keyboard.latin.utils.SubtypeUtilsAdditional
+import kotlinx.serialization.PolymorphicSerializer
+import kotlinx.serialization.builtins.ListSerializer
 import org.junit.runner.RunWith
 import org.robolectric.Robolectric
 import org.robolectric.RobolectricTestRunner
@@ -30,6 +34,7 @@ import org.robolectric.annotation.Implementation
 import org.robolectric.annotation.Implements
 import org.robolectric.shadows.ShadowLog
 import java.io.File
+import java.nio.ByteBuffer
 import java.util.Locale
 import kotlin.test.BeforeTest
 import kotlin.test.Test
@@ -479,6 +484,30 @@ f""", // no newline at the end
         }
     }
 
+    @Test fun diskCacheKeepsJsonLayouts() {
+        val serializer = ListSerializer(ListSerializer(PolymorphicSerializer(AbstractKeyData::class)))
+        File("src/main/assets/layouts").walk().filter { it.extension == "json" }.forEach {
+            val keyData = LayoutParser.parseJsonString(it.readText())
+            val cached = LayoutDiskCache.decode(serializer, ByteBuffer.wrap(LayoutDiskCache.encode(serializer, keyData)))
+            val json = LayoutParser.florisJsonConfig
+            assertEquals(json.encodeToString(serializer, keyData), json.encodeToString(serializer, cached), it.name)
+        }
+    }
+
+    @Test fun diskCacheIsRemovedForDeletedLayouts() {
+        val serializer = ListSerializer(ListSerializer(PolymorphicSerializer(AbstractKeyData::class)))
+        val layout = "[[{ \"label\": \"a\" }]]"
+        var parsed = 0
+        val parse = { parsed++; LayoutParser.parseJsonString(layout) }
+        LayoutDiskCache.getOrPut(latinIME, "json_MAIN_custom.test.", layout, serializer, parse)
+        LayoutDiskCache.getOrPut(latinIME, "json_MAIN_custom.test.+", layout, serializer, parse)
+        LayoutDiskCache.getOrPut(latinIME, "json_MAIN_custom.test.", layout, serializer, parse)
+        assertEquals(2, parsed)
+        LayoutDiskCache.remove(latinIME, "json_MAIN_custom.test.")
+        LayoutDiskCache.getOrPut(latinIME, "json_MAIN_custom.test.+", layout, serializer, parse)
+        assertEquals(3, parsed)
+    }
+
     @Test fun simpleWithLabelPopupHasCode() {
         val keys = LayoutParser.parseSimpleString("""
             a symbol
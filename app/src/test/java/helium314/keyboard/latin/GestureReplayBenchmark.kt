@@ -0,0 +1,48 @@
+// SPDX-License-Identifier: GPL-3.0-only
+package helium314.keyboard.latin
+
+import helium314.keyboard.ShadowInputMethodManager2
+import helium314.keyboard.ShadowLocaleManagerCompat
+import helium314.keyboard.latin.utils.parseGestureData
+import helium314.keyboard.latin.utils.replayGestureData
+import org.junit.Assume
+import org.junit.runner.RunWith
+import org.robolectric.Robolectric
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+import java.io.File
+import java.util.zip.ZipFile
+import kotlin.test.Test
+
+/**
+ * Replays exported gesture data (the zip file from gesture data settings, or the json file in it)
+ * and reports decoding latency for each main dictionary.
+ *
+ * `tools/build-host-jni.sh && ./gradlew testRunTestsUnitTest --tests "*GestureReplayBenchmark*" -Pbenchmark -Pbenchmark.gestureData=<file>`
+ *
+ * The library built for the host has no gesture typing, so accuracy is not reported here. It is
+ * only meaningful with a gesture library, e.g. when replaying with the debug setting on a device.
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(shadows = [
+    ShadowLocaleManagerCompat::class,
+    ShadowInputMethodManager2::class,
+])
+class GestureReplayBenchmark {
+    @Test fun gestureReplay() {
+        Assume.assumeTrue("benchmark not requested", System.getProperty("benchmark") != null)
+        val file = System.getProperty("benchmark.gestureData")?.let { File(it) }
+        Assume.assumeTrue("no gesture data file given", file?.isFile == true)
+        val latinIME = Robolectric.setupService(LatinIME::class.java)
+
+        val json = if (file!!.name.endsWith(".zip")) ZipFile(file).use { zip ->
+            zip.entries().toList().map { entry -> zip.getInputStream(entry).use { it.reader().readText() } }
+        } else listOf(file.readText())
+        val results = replayGestureData(latinIME, parseGestureData(json))
+
+        val report = results.joinToString("\n") { it.toLatencyString() }
+        println("gesture replay:\n$report")
+        File("build/reports").mkdirs()
+        File("build/reports/gesture-replay.txt").writeText(report)
+    }
+}
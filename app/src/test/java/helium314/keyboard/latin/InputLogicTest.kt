@@ -41,6 +41,10 @@ import kotlin.streams.asSequence
 import kotlin.test.BeforeTest
 import kotlin.test.Test
 import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertNotSame
+import kotlin.test.assertSame
+import kotlin.test.assertTrue
 
 @RunWith(RobolectricTestRunner::class)
 @Config(shadows = [
@@ -722,6 +726,32 @@ class InputLogicTest {
         assertEquals("/48", InputLogic.getInlineEmojiSearchString("2606:127.0.0.1::/48")) // do we want this?
     }
 
+    @Test fun `settings are current right after changing preferences`() {
+        reset()
+        repeat(20) {
+            val enabled = it % 2 == 0
+            latinIME.prefs().edit { putBoolean(Settings.PREF_AUTOSPACE_AFTER_PUNCTUATION, enabled) }
+            assertEquals(enabled, settingsValues.mAutospaceAfterPunctuation)
+        }
+    }
+
+    @Test fun `new input field reuses settings from preferences`() {
+        reset()
+        val spacingAndPunctuations = settingsValues.mSpacingAndPunctuations
+        val colors = settingsValues.mColors
+        assertFalse(settingsValues.mIncognitoModeEnabled)
+
+        setInputType(InputType.TYPE_CLASS_TEXT or InputType.TYPE_TEXT_VARIATION_PASSWORD)
+        assertSame(spacingAndPunctuations, settingsValues.mSpacingAndPunctuations)
+        assertSame(colors, settingsValues.mColors)
+        assertTrue(settingsValues.mIncognitoModeEnabled)
+
+        latinIME.prefs().edit { putBoolean(Settings.PREF_URL_DETECTION, true) }
+        assertNotSame(spacingAndPunctuations, settingsValues.mSpacingAndPunctuations)
+        assertTrue(settingsValues.mUrlDetectionEnabled)
+        assertTrue(settingsValues.mIncognitoModeEnabled)
+    }
+
     // ------- helper functions ---------
 
     // should be called before every test, so the same state is guaranteed
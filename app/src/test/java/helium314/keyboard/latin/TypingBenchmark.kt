@@ -0,0 +1,160 @@
+// SPDX-License-Identifier: GPL-3.0-only
+package helium314.keyboard.latin
+
+import android.view.inputmethod.EditorInfo
+import helium314.keyboard.ShadowInputMethodManager2
+import helium314.keyboard.ShadowLocaleManagerCompat
+import helium314.keyboard.keyboard.Keyboard
+import helium314.keyboard.keyboard.KeyboardId
+import helium314.keyboard.keyboard.KeyboardLayoutSet
+import helium314.keyboard.keyboard.internal.KeyboardBuilder
+import helium314.keyboard.keyboard.internal.KeyboardParams
+import helium314.keyboard.keyboard.internal.UniqueKeysCache
+import helium314.keyboard.latin.common.StringUtils
+import helium314.keyboard.latin.settings.SettingsValuesForSuggestion
+import helium314.keyboard.latin.utils.SubtypeUtilsAdditional
+import kotlinx.serialization.json.Json
+import kotlinx.serialization.json.jsonObject
+import kotlinx.serialization.json.jsonPrimitive
+import kotlinx.serialization.json.long
+import org.junit.Assume
+import org.junit.runner.RunWith
+import org.robolectric.Robolectric
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+import java.io.File
+import java.lang.management.ManagementFactory
+import java.util.Locale
+import java.util.concurrent.TimeUnit
+import kotlin.test.Test
+import kotlin.test.assertTrue
+
+/**
+ * Replays the typing sessions in resources/benchmark through [Suggest] and [DictionaryFacilitatorImpl]
+ * using the real dictionaries, and reports latency and allocations per keystroke.
+ *
+ * Needs the native library built for the host, so it only runs when requested:
+ * `tools/build-host-jni.sh && ./gradlew testRunTestsUnitTest --tests "*TypingBenchmark*" -Pbenchmark`
+ *
+ * Results are written to build/reports/typing-benchmark.json. Pass a previous result file with
+ * `-Pbenchmark.baseline=<file>` to fail if p95 latency got worse by more than 20 % (or the
+ * fraction given with `-Pbenchmark.tolerance`).
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(shadows = [
+    ShadowLocaleManagerCompat::class,
+    ShadowInputMethodManager2::class,
+])
+class TypingBenchmark {
+    private val threadMXBean = ManagementFactory.getThreadMXBean() as com.sun.management.ThreadMXBean
+
+    @Test fun typingLatency() {
+        Assume.assumeTrue("benchmark not requested", System.getProperty("benchmark") != null)
+        val latinIME = Robolectric.setupService(LatinIME::class.java)
+        val facilitator = DictionaryFacilitatorImpl()
+        facilitator.resetDictionaries(latinIME, Locale.US, false, false, false, true, "", null)
+        facilitator.waitForLoadingMainDictionaries(30, TimeUnit.SECONDS)
+        Assume.assumeTrue("main dictionary not available, is the host library built?", facilitator.hasAtLeastOneInitializedMainDictionary())
+
+        val suggest = Suggest(facilitator)
+        val keyboard = buildKeyboard(latinIME)
+        val sessions = javaClass.getResourceAsStream("/benchmark/typing_sessions_en.txt")!!.bufferedReader()
+            .readLines().filter { it.isNotBlank() && !it.startsWith("#") }
+
+        replay(sessions, suggest, keyboard, null) // warm up the JIT and dictionary caches
+        val result = Result()
+        replay(sessions, suggest, keyboard, result)
+        facilitator.closeDictionaries()
+
+        val report = result.toJson()
+        println("typing benchmark: $report")
+        File("build/reports").mkdirs()
+        File("build/reports/typing-benchmark.json").writeText(report)
+
+        val baselineFile = System.getProperty("benchmark.baseline")?.let { File(it) } ?: return
+        val baseline = Json.parseToJsonElement(baselineFile.readText()).jsonObject["p95Nanos"]!!.jsonPrimitive.long
+        val tolerance = System.getProperty("benchmark.tolerance")?.toDouble() ?: 0.2
+        val p95 = result.percentile(95)
+        assertTrue(p95 <= baseline * (1 + tolerance), "p95 latency $p95 ns, baseline $baseline ns")
+    }
+
+    // types every word letter by letter, and gets next word suggestions after each word
+    private fun replay(sessions: List<String>, suggest: Suggest, keyboard: Keyboard, result: Result?) {
+        val composer = WordComposer()
+        val settingsValuesForSuggestion = SettingsValuesForSuggestion(false, false)
+        var sequenceNumber = 0
+        for (session in sessions) {
+            var ngramContext = NgramContext.BEGINNING_OF_SENTENCE
+            for (word in session.split(" ")) {
+                val codePoints = StringUtils.toCodePointArray(word)
+                for (i in 1..codePoints.size) {
+                    val typed = codePoints.copyOf(i)
+                    composer.setComposingWord(typed, keyboard.getCoordinates(typed))
+                    measure(result) {
+                        suggest.getSuggestedWords(composer, ngramContext, keyboard, settingsValuesForSuggestion,
+                            true, SuggestedWords.INPUT_STYLE_TYPING, sequenceNumber++)
+                    }
+                }
+                composer.reset()
+                ngramContext = ngramContext.getNextNgramContext(NgramContext.WordInfo(word))
+                measure(result) {
+                    suggest.getSuggestedWords(composer, ngramContext, keyboard, settingsValuesForSuggestion,
+                        true, SuggestedWords.INPUT_STYLE_PREDICTION, sequenceNumber++)
+                }
+            }
+        }
+    }
+
+    // allocations are only counted on the calling thread, secondary locales are searched on other threads
+    private inline fun measure(result: Result?, block: () -> Unit) {
+        val threadId = Thread.currentThread().id
+        val allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId)
+        val start = System.nanoTime()
+        block()
+        val duration = System.nanoTime() - start
+        result?.add(duration, threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore)
+    }
+
+    private fun buildKeyboard(latinIME: LatinIME): Keyboard {
+        val layoutParams = KeyboardLayoutSet.Params()
+        KeyboardLayoutSet.Params::class.java.getDeclaredField("mEditorInfo").apply { isAccessible = true }
+            .set(layoutParams, EditorInfo())
+        val subtype = SubtypeUtilsAdditional.createEmojiCapableAdditionalSubtype(Locale.US, "qwerty", true)
+        KeyboardLayoutSet.Params::class.java.getDeclaredField("mSubtype").apply { isAccessible = true }
+            .set(layoutParams, RichInputMethodSubtype.get(subtype))
+        KeyboardLayoutSet.Params::class.java.getDeclaredField("mKeyboardWidth").apply { isAccessible = true }
+            .setInt(layoutParams, 1080)
+        KeyboardLayoutSet.Params::class.java.getDeclaredField("mKeyboardHeight").apply { isAccessible = true }
+            .setInt(layoutParams, 700)
+        val builder = KeyboardBuilder(latinIME, KeyboardParams(UniqueKeysCache.NO_CACHE))
+        builder.load(KeyboardId(KeyboardId.ELEMENT_ALPHABET, layoutParams))
+        return builder.build()
+    }
+
+    private class Result {
+        private var durations = LongArray(1024)
+        private var allocations = LongArray(1024)
+        private var count = 0
+
+        fun add(durationNanos: Long, allocatedBytes: Long) {
+            if (count == durations.size) {
+                durations = durations.copyOf(count * 2)
+                allocations = allocations.copyOf(count * 2)
+            }
+            durations[count] = durationNanos
+            allocations[count++] = allocatedBytes
+        }
+
+        fun percentile(p: Int): Long {
+            val sorted = durations.copyOf(count).apply { sort() }
+            return sorted[(count - 1) * p / 100]
+        }
+
+        fun toJson(): String {
+            val sortedAllocations = allocations.copyOf(count).apply { sort() }
+            return "{\"keystrokes\":$count,\"p50Nanos\":${percentile(50)},\"p95Nanos\":${percentile(95)}," +
+                    "\"p99Nanos\":${percentile(99)},\"meanAllocatedBytes\":${sortedAllocations.sum() / count}," +
+                    "\"p95AllocatedBytes\":${sortedAllocations[(count - 1) * 95 / 100]}}"
+        }
+    }
+}
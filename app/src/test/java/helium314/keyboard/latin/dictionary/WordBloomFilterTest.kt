@@ -0,0 +1,30 @@
+// SPDX-License-Identifier: GPL-3.0-only
+package helium314.keyboard.latin.dictionary
+
+import kotlin.test.Test
+import kotlin.test.assertTrue
+
+class WordBloomFilterTest {
+    private val words = (0 until 5000).map { "word$it" } + listOf("a", "Ä", "straße", "😀", "한국어", "don't")
+
+    @Test fun `added words are always found`() {
+        val filter = WordBloomFilter(words.size)
+        words.forEach { filter.add(it) }
+        words.forEach { assertTrue(filter.mightContain(it), "missing $it") }
+    }
+
+    @Test fun `added words are found when capacity is exceeded`() {
+        val filter = WordBloomFilter(0)
+        words.forEach { filter.add(it) }
+        assertTrue(filter.isFull())
+        words.forEach { assertTrue(filter.mightContain(it), "missing $it") }
+    }
+
+    @Test fun `most other words are rejected`() {
+        val filter = WordBloomFilter(words.size)
+        words.forEach { filter.add(it) }
+        val falsePositives = (0 until 10000).count { filter.mightContain("other$it") }
+        assertTrue(falsePositives < 300, "$falsePositives false positives")
+        assertTrue(!filter.mightContain("Word1")) // case sensitive, like the dictionary lookup
+    }
+}
@@ -0,0 +1,119 @@
+// SPDX-License-Identifier: GPL-3.0-only
+package helium314.keyboard.latin.personalization
+
+import androidx.test.core.app.ApplicationProvider
+import com.android.inputmethod.latin.BinaryDictionary
+import helium314.keyboard.latin.App
+import helium314.keyboard.latin.NgramContext
+import helium314.keyboard.latin.utils.ExecutorUtils
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+import org.robolectric.annotation.Implementation
+import org.robolectric.annotation.Implements
+import java.util.Collections
+import java.util.Locale
+import java.util.concurrent.Delayed
+import java.util.concurrent.ScheduledThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.test.AfterTest
+import kotlin.test.BeforeTest
+import kotlin.test.Test
+import kotlin.test.assertEquals
+
+@RunWith(RobolectricTestRunner::class)
+@Config(shadows = [
+    ShadowNativeBinaryDictionary::class,
+])
+class UserHistoryDictionaryTest {
+    private val executor = ScheduledThreadPoolExecutor(1)
+    private lateinit var dictionary: UserHistoryDictionary
+
+    @BeforeTest fun setUp() {
+        ShadowNativeBinaryDictionary.updatedWords.clear()
+        ShadowNativeBinaryDictionary.flushCount.set(0)
+        ExecutorUtils.setExecutorServiceForTests(executor)
+        dictionary = UserHistoryDictionary(ApplicationProvider.getApplicationContext<App>(), Locale.ENGLISH)
+        runTasks() // creates the dictionary
+    }
+
+    @AfterTest fun tearDown() {
+        ExecutorUtils.setExecutorServiceForTests(null)
+        executor.shutdownNow()
+    }
+
+    @Test fun `updates are applied when enough are pending`() {
+        repeat(49) { addWord("word$it") }
+        runTasks()
+        assertEquals(0, ShadowNativeBinaryDictionary.updatedWords.size)
+
+        addWord("word49")
+        runTasks()
+        assertEquals((0 until 50).map { "word$it" }, ShadowNativeBinaryDictionary.updatedWords)
+        assertEquals(0, ShadowNativeBinaryDictionary.flushCount.get()) // only flushed when input is finished
+    }
+
+    @Test fun `pending updates are applied and flushed when input is finished`() {
+        addWord("a")
+        addWord("b")
+        addWord("a") // not coalesced, every occurrence is a separate update
+        dictionary.onFinishInput()
+        runTasks()
+        assertEquals(listOf("a", "b", "a"), ShadowNativeBinaryDictionary.updatedWords)
+        assertEquals(1, ShadowNativeBinaryDictionary.flushCount.get())
+    }
+
+    @Test fun `no updates after closing`() {
+        addWord("a")
+        dictionary.close()
+        addWord("b")
+        runTasks()
+        assertEquals(listOf("a"), ShadowNativeBinaryDictionary.updatedWords)
+    }
+
+    private fun addWord(word: String) {
+        UserHistoryDictionary.addToDictionary(dictionary, NgramContext.BEGINNING_OF_SENTENCE, word, true, 0)
+    }
+
+    // tasks may add other tasks, so run until no more tasks are due (the delayed batch is not)
+    private fun runTasks() {
+        do {
+            executor.submit { }.get()
+        } while (executor.queue.any { (it as Delayed).getDelay(TimeUnit.MILLISECONDS) <= 0 })
+    }
+}
+
+// native dictionary that only records the updates
+@Implements(BinaryDictionary::class)
+object ShadowNativeBinaryDictionary {
+    val updatedWords: MutableList<String> = Collections.synchronizedList(mutableListOf())
+    val flushCount = AtomicInteger()
+
+    @Implementation
+    @JvmStatic
+    fun __staticInitializer__() { } // don't load the native library
+
+    @Implementation
+    @JvmStatic
+    fun createOnMemoryNative(formatVersion: Long, locale: String, keys: Array<String>, values: Array<String>) = 1L
+
+    @Implementation
+    @JvmStatic
+    fun openNative(sourceDir: String, dictOffset: Long, dictSize: Long, isUpdatable: Boolean) = 1L
+
+    @Implementation
+    @JvmStatic
+    fun flushNative(dict: Long, filePath: String): Boolean {
+        flushCount.incrementAndGet()
+        return true
+    }
+
+    @Implementation
+    @JvmStatic
+    fun updateEntriesForWordWithNgramContextNative(dict: Long, prevWordCodePointArrays: Array<IntArray>,
+            isBeginningOfSentenceArray: BooleanArray, word: IntArray, isValidWord: Boolean, count: Int, timestamp: Int): Boolean {
+        updatedWords.add(String(word, 0, word.size))
+        return true
+    }
+}
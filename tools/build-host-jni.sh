@@ -0,0 +1,24 @@
+#!/bin/bash
+# SPDX-License-Identifier: GPL-3.0-only
+#
+# Builds the native library for the host (Linux), so unit tests and the typing benchmark can use
+# real dictionaries. Output is app/build/host-jni/libjni_latinime.so
+# Usage: tools/build-host-jni.sh [extra compiler flags, e.g. -DFLAG_DBG]
+
+set -e
+cd "$(dirname "$0")/../app/src/main/jni"
+
+if [ -z "$JAVA_HOME" ]; then
+    JAVA_HOME=$(dirname "$(dirname "$(readlink -f "$(command -v javac)")")")
+fi
+CXX=${CXX:-g++}
+OUT_DIR=../../../build/host-jni
+mkdir -p "$OUT_DIR"
+
+# get the file lists from NativeFileList.mk, so they are the same as for the Android build
+SOURCES=$(printf 'include NativeFileList.mk\nall:\n\t@echo $(LATIN_IME_JNI_SRC_FILES) $(addprefix src/, $(LATIN_IME_CORE_SRC_FILES))\n' | make -s -f -)
+
+$CXX -shared -fPIC -O2 -std=c++11 -w \
+    -I src -I "$JAVA_HOME/include" -I "$JAVA_HOME/include/linux" \
+    "$@" $SOURCES -o "$OUT_DIR/libjni_latinime.so"
+echo "built $(readlink -f "$OUT_DIR/libjni_latinime.so")"